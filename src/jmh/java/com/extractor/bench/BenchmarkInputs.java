@@ -0,0 +1,121 @@
+package com.extractor.bench;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Benchmark inputs built from the test resources under {@code languages/}.
+ * <ul>
+ *   <li>{@code small}: the language's {@code valid.*} sample as-is.</li>
+ *   <li>{@code medium}: the well-formed samples repeated to {@value #MEDIUM_BYTES} bytes.</li>
+ *   <li>{@code large}: the same, repeated to {@value #LARGE_BYTES} bytes.</li>
+ * </ul>
+ * Invalid and malformed samples are left out of the generated inputs so that repeating them
+ * does not leave scopes open across the whole file.
+ */
+public final class BenchmarkInputs {
+    public static final int MEDIUM_BYTES = 64 * 1024;
+    public static final int LARGE_BYTES = 4 * 1024 * 1024;
+
+    /** Parser class name to resource directory and file extension. */
+    static final Map<String, String[]> PARSERS = Map.ofEntries(
+            Map.entry("JavaParser", new String[] {"java", "java"}),
+            Map.entry("HTMLParser", new String[] {"html", "html"}),
+            Map.entry("CSSParser", new String[] {"css", "css"}),
+            Map.entry("JSParser", new String[] {"javascript", "js"}),
+            Map.entry("JavaScriptParser", new String[] {"javascript", "js"}),
+            Map.entry("TSParser", new String[] {"typescript", "ts"}),
+            Map.entry("PythonParser", new String[] {"python", "py"}),
+            Map.entry("GoParser", new String[] {"go", "go"}),
+            Map.entry("RustParser", new String[] {"rust", "rs"}),
+            Map.entry("CSharpParser", new String[] {"csharp", "cs"}),
+            Map.entry("SqlParser", new String[] {"sql", "sql"}),
+            Map.entry("CParser", new String[] {"c", "c"}),
+            Map.entry("CppParser", new String[] {"cpp", "cpp"}),
+            Map.entry("RubyParser", new String[] {"ruby", "rb"}),
+            Map.entry("PHPParser", new String[] {"php", "php"}),
+            Map.entry("KotlinParser", new String[] {"kotlin", "kt"}),
+            Map.entry("DartParser", new String[] {"dart", "dart"}),
+            Map.entry("ShellParser", new String[] {"shell", "sh"}),
+            Map.entry("ZigParser", new String[] {"zig", "zig"}),
+            Map.entry("GDScriptParser", new String[] {"gdscript", "gd"}),
+            Map.entry("ScalaParser", new String[] {"scala", "scala"}),
+            Map.entry("ElixirParser", new String[] {"elixir", "ex"}),
+            Map.entry("SwiftParser", new String[] {"swift", "swift"}),
+            Map.entry("ObjectiveCParser", new String[] {"objectivec", "m"})
+    );
+
+    private static final String[] WELL_FORMED = {"valid", "comprehensive", "large"};
+
+    private BenchmarkInputs() {
+    }
+
+    public static String load(String parser, String size) {
+        String[] resource = PARSERS.get(parser);
+        if (resource == null) {
+            throw new IllegalArgumentException("No benchmark input for parser: " + parser);
+        }
+        switch (size) {
+            case "small":
+                return read(resource[0] + "/valid." + resource[1]);
+            case "medium":
+                return repeat(wellFormed(resource), MEDIUM_BYTES);
+            case "large":
+                return repeat(wellFormed(resource), LARGE_BYTES);
+            default:
+                throw new IllegalArgumentException("Unknown input size: " + size);
+        }
+    }
+
+    /** File name to hand to the engine so that it picks the same parser. */
+    public static String fileName(String parser) {
+        return "input." + PARSERS.get(parser)[1];
+    }
+
+    public static int utf8Length(String source) {
+        return source.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static String wellFormed(String[] resource) {
+        StringBuilder sb = new StringBuilder();
+        for (String name : WELL_FORMED) {
+            String content = readIfPresent(resource[0] + "/" + name + "." + resource[1]);
+            if (content != null) {
+                sb.append(content).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String repeat(String unit, int targetBytes) {
+        int unitBytes = Math.max(1, utf8Length(unit));
+        return unit.repeat((targetBytes + unitBytes - 1) / unitBytes);
+    }
+
+    public static List<String> parserNames() {
+        List<String> names = new ArrayList<>(PARSERS.keySet());
+        names.sort(null);
+        return names;
+    }
+
+    private static String read(String path) {
+        String content = readIfPresent(path);
+        if (content == null) {
+            throw new IllegalStateException("Missing benchmark resource: " + path);
+        }
+        return content;
+    }
+
+    private static String readIfPresent(String path) {
+        try (InputStream in = BenchmarkInputs.class.getResourceAsStream("/languages/" + path)) {
+            return in == null ? null : new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
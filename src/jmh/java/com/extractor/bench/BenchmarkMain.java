@@ -0,0 +1,93 @@
+package com.extractor.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs the benchmarks with the GC profiler and writes two machine-readable files to the
+ * output directory (first argument, default {@code build/reports/jmh}):
+ * <ul>
+ *   <li>{@code results.json}: the raw JMH results.</li>
+ *   <li>{@code summary.csv}: one row per benchmark and parameter set with source throughput
+ *   in MB/s and allocation in bytes per source byte.</li>
+ * </ul>
+ * Any further arguments are passed to JMH, e.g. {@code ParserBenchmark -p parser=JavaParser}.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path outDir = Paths.get(args.length > 0 ? args[0] : "build/reports/jmh");
+        String[] jmhArgs = args.length > 0 ? Arrays.copyOfRange(args, 1, args.length) : new String[0];
+        Files.createDirectories(outDir);
+
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(jmhArgs))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(outDir.resolve("results.json").toString())
+                .build();
+
+        Collection<RunResult> results = new Runner(options).run();
+        writeSummary(results, outDir.resolve("summary.csv"));
+    }
+
+    private static void writeSummary(Collection<RunResult> results, Path file) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file))) {
+            out.println("benchmark,params,ops_per_s,mb_per_s,source_bytes_per_op,alloc_bytes_per_op,alloc_bytes_per_source_byte");
+            for (RunResult run : results) {
+                double opsPerSecond = run.getPrimaryResult().getScore();
+                Map<String, Result> secondary = run.getSecondaryResults();
+                double bytesPerSecond = score(secondary, "bytes");
+                double allocPerOp = score(secondary, "gc.alloc.rate.norm");
+                double bytesPerOp = opsPerSecond > 0 ? bytesPerSecond / opsPerSecond : Double.NaN;
+
+                out.printf(Locale.ROOT, "%s,%s,%.3f,%.3f,%.0f,%.1f,%.3f%n",
+                        run.getParams().getBenchmark(),
+                        params(run),
+                        opsPerSecond,
+                        bytesPerSecond / 1_000_000.0,
+                        bytesPerOp,
+                        allocPerOp,
+                        bytesPerOp > 0 ? allocPerOp / bytesPerOp : Double.NaN);
+            }
+        }
+    }
+
+    private static String params(RunResult run) {
+        StringBuilder sb = new StringBuilder();
+        for (String key : run.getParams().getParamsKeys()) {
+            if (sb.length() > 0) sb.append(';');
+            sb.append(key).append('=').append(run.getParams().getParam(key));
+        }
+        return sb.toString();
+    }
+
+    // GC profiler labels carry a separator prefix that differs between JMH versions.
+    private static double score(Map<String, Result> results, String label) {
+        for (Map.Entry<String, Result> entry : results.entrySet()) {
+            if (entry.getKey().replaceFirst("^[^A-Za-z]+", "").equals(label)) {
+                return entry.getValue().getScore();
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,70 @@
+package com.extractor.bench;
+
+import com.extractor.ExtractionEngine;
+import com.extractor.model.CodeNode;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a mixed-language corpus through {@link ExtractionEngine}, including language
+ * detection and parser lookup. One operation extracts every file in the corpus once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EngineBenchmark {
+
+    @Param({"small", "medium"})
+    public String size;
+
+    private ExtractionEngine engine;
+    private String[] fileNames;
+    private String[] sources;
+    private int corpusBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new ExtractionEngine();
+        List<String> parsers = BenchmarkInputs.parserNames();
+        fileNames = new String[parsers.size()];
+        sources = new String[parsers.size()];
+        for (int i = 0; i < parsers.size(); i++) {
+            fileNames[i] = BenchmarkInputs.fileName(parsers.get(i));
+            sources[i] = BenchmarkInputs.load(parsers.get(i), size);
+            corpusBytes += BenchmarkInputs.utf8Length(sources[i]);
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long bytes;
+    }
+
+    @Benchmark
+    public void extractCorpus(Throughput counters, Blackhole bh) {
+        for (int i = 0; i < sources.length; i++) {
+            CodeNode root = engine.extract(fileNames[i], sources[i]);
+            bh.consume(root);
+        }
+        counters.bytes += corpusBytes;
+    }
+}
@@ -0,0 +1,76 @@
+package com.extractor.bench;
+
+import com.extractor.ExtractionEngine;
+import com.extractor.core.SourceReader;
+import com.extractor.model.CodeTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link Files#readString} with {@link SourceReader} on a generated Java file,
+ * and decoding before parsing with parsing the raw UTF-8 bytes. A non-ASCII comment is
+ * prepended so the input cannot be stored as Latin-1. Run with {@code -prof gc} to compare
+ * allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IngestionBenchmark {
+
+    @Param({"medium", "large"})
+    public String size;
+
+    private Path file;
+    private final SourceReader reader = new SourceReader();
+    private final ExtractionEngine engine = new ExtractionEngine();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("ingestion", ".java");
+        Files.writeString(file, "// \u00fcber\n" + BenchmarkInputs.load("JavaParser", size));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String readString() throws IOException {
+        return Files.readString(file);
+    }
+
+    @Benchmark
+    public String sourceReader() throws IOException {
+        return reader.read(file);
+    }
+
+    @Benchmark
+    public CodeTree decodeAndParse() throws IOException {
+        return engine.extractTree("Input.java", reader.read(file));
+    }
+
+    @Benchmark
+    public CodeTree parseUtf8() throws IOException {
+        return engine.extractTree("Input.java", reader.readUtf8(file));
+    }
+}
@@ -0,0 +1,65 @@
+package com.extractor.bench;
+
+import com.extractor.core.CodeParser;
+import com.extractor.model.CodeNode;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses each language's inputs with its parser directly, bypassing language detection.
+ * The {@code bytes} counter reports source throughput in bytes per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParserBenchmark {
+
+    @Param({"CParser", "CppParser", "CSharpParser", "CSSParser", "DartParser", "ElixirParser",
+            "GDScriptParser", "GoParser", "HTMLParser", "JavaParser", "JavaScriptParser", "JSParser",
+            "KotlinParser", "ObjectiveCParser", "PHPParser", "PythonParser", "RubyParser", "RustParser",
+            "ScalaParser", "ShellParser", "SqlParser", "SwiftParser", "TSParser", "ZigParser"})
+    public String parser;
+
+    @Param({"small", "medium", "large"})
+    public String size;
+
+    private CodeParser instance;
+    private String source;
+    private int sourceBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        instance = (CodeParser) Class.forName("com.extractor.languages." + parser)
+                .getDeclaredConstructor().newInstance();
+        source = BenchmarkInputs.load(parser, size);
+        sourceBytes = BenchmarkInputs.utf8Length(source);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long bytes;
+    }
+
+    @Benchmark
+    public CodeNode parse(Throughput counters) {
+        counters.bytes += sourceBytes;
+        return instance.parse(source);
+    }
+}
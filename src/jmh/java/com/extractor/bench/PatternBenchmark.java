@@ -0,0 +1,75 @@
+package com.extractor.bench;
+
+import com.extractor.core.BaseParser;
+import com.extractor.languages.JavaParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares identifier extraction with a pattern compiled on every call against the cached
+ * keyword patterns in {@link BaseParser}. Each operation runs every keyword over every
+ * declaration, as the parser rules do for each brace.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PatternBenchmark {
+
+    private static final String[] KEYWORDS = {"class", "interface", "enum", "record", "@interface", "struct", "fn"};
+
+    private static final String[] DECLARATIONS = {
+            "public final class OrderService extends AbstractService implements Closeable",
+            "\n    @Override\n    public void close() throws IOException",
+            "public interface Repository<T>",
+            "enum Status",
+            "    private static int counter = 0;\n    public record Point(int x, int y)",
+            "public @interface Audited",
+            "if (value != null && value.isEmpty())",
+            "for (int i = 0; i < items.size(); i++)",
+    };
+
+    private final Extractor extractor = new Extractor();
+
+    @Benchmark
+    public void compilePerCall(Blackhole bh) {
+        for (String keyword : KEYWORDS) {
+            for (String text : DECLARATIONS) {
+                String boundary = keyword.startsWith("@") ? "(?<!\\w)" : "\\b";
+                Pattern pattern = Pattern.compile(boundary + Pattern.quote(keyword) + "\\s+([a-zA-Z0-9_$.]+)");
+                Matcher matcher = pattern.matcher(text);
+                bh.consume(matcher.find() ? matcher.group(1) : null);
+            }
+        }
+    }
+
+    @Benchmark
+    public void cached(Blackhole bh) {
+        for (String keyword : KEYWORDS) {
+            for (String text : DECLARATIONS) {
+                bh.consume(extractor.extract(text, keyword));
+            }
+        }
+    }
+
+    /** Exposes the protected helper under test, as a real parser calls it. */
+    private static final class Extractor extends JavaParser {
+        String extract(String text, String keyword) {
+            return extractIdentifierAfterKeyword(text, keyword);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.extractor.bench;
+
+import com.extractor.core.SourceScanner;
+import com.extractor.core.StructuralIndex;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link SourceScanner} primitives that every parser loop is built from.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SourceScannerBenchmark {
+
+    private static final SourceScanner.CharSet STRUCTURAL = SourceScanner.CharSet.of("{}\"'/");
+
+    @Param({"medium", "large"})
+    public String size;
+
+    private String source;
+    private int sourceBytes;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        source = BenchmarkInputs.load("JavaParser", size);
+        sourceBytes = BenchmarkInputs.utf8Length(source);
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Throughput {
+        public long bytes;
+    }
+
+    /** Single-character stepping, as done by every parse loop. */
+    @Benchmark
+    public int peekAdvance(Throughput counters) {
+        SourceScanner scanner = new SourceScanner(source);
+        int braces = 0;
+        while (!scanner.isAtEnd()) {
+            if (scanner.advance() == '{') braces++;
+        }
+        counters.bytes += sourceBytes;
+        return braces;
+    }
+
+    /** Two-character lookahead at every position through a copied string. */
+    @Benchmark
+    public int lookahead(Throughput counters) {
+        SourceScanner scanner = new SourceScanner(source);
+        int hits = 0;
+        while (!scanner.isAtEnd()) {
+            if (scanner.peek(2).equals("*/")) hits++;
+            scanner.advance();
+        }
+        counters.bytes += sourceBytes;
+        return hits;
+    }
+
+    /** Same lookahead as {@link #lookahead}, compared in place. */
+    @Benchmark
+    public int lookingAt(Throughput counters) {
+        SourceScanner scanner = new SourceScanner(source);
+        int hits = 0;
+        while (!scanner.isAtEnd()) {
+            if (scanner.lookingAt("*/")) hits++;
+            scanner.advance();
+        }
+        counters.bytes += sourceBytes;
+        return hits;
+    }
+
+    /** Jumping between delimiters instead of stepping over every character. */
+    @Benchmark
+    public int skipPast(Throughput counters) {
+        SourceScanner scanner = new SourceScanner(source);
+        int hits = 0;
+        while (scanner.skipPast("*/")) hits++;
+        counters.bytes += sourceBytes;
+        return hits;
+    }
+
+    /** Jumping to the next structural character. */
+    @Benchmark
+    public int skipToAny(Throughput counters) {
+        SourceScanner scanner = new SourceScanner(source);
+        int braces = 0;
+        while (!scanner.isAtEnd()) {
+            if (scanner.skipToAny(STRUCTURAL) == '{') braces++;
+            scanner.advance();
+        }
+        counters.bytes += sourceBytes;
+        return braces;
+    }
+
+    /**
+     * Builds a {@link StructuralIndex} and walks it, the alternative to {@link #skipToAny}.
+     * Vectorized when the JVM runs with {@code --add-modules jdk.incubator.vector}.
+     */
+    @Benchmark
+    public int structuralIndex(Throughput counters) {
+        StructuralIndex index = StructuralIndex.build(source, STRUCTURAL);
+        int braces = 0;
+        for (int pos = index.next(0); pos < source.length(); pos = index.next(pos + 1)) {
+            if (source.charAt(pos) == '{') braces++;
+        }
+        counters.bytes += sourceBytes;
+        return braces;
+    }
+
+    /** Keyword matching at every position. */
+    @Benchmark
+    public int match(Throughput counters) {
+        SourceScanner scanner = new SourceScanner(source);
+        int hits = 0;
+        while (!scanner.isAtEnd()) {
+            if (scanner.match("class ")) {
+                hits++;
+            } else {
+                scanner.advance();
+            }
+        }
+        counters.bytes += sourceBytes;
+        return hits;
+    }
+}
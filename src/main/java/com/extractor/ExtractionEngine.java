@@ -1,50 +1,151 @@
 package com.extractor;
 
 import com.extractor.core.CodeParser;
+import com.extractor.core.ExtractionOptions;
 import com.extractor.core.LanguageDetector;
+import com.extractor.core.ParseCache;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ParserRegistry;
+import com.extractor.core.Utf8Source;
 import com.extractor.languages.*;
 import com.extractor.model.CodeNode;
-
-import java.util.ArrayList;
-import java.util.List;
+import com.extractor.model.CodeTree;
+import com.extractor.model.NodeType;
 
 public class ExtractionEngine {
-    private final List<CodeParser> parsers = new ArrayList<>();
+    private final ParserRegistry registry;
+    private final ParseCache cache;
 
     public ExtractionEngine() {
-        parsers.add(new JavaParser());
-        parsers.add(new HTMLParser());
-        parsers.add(new CSSParser());
-        parsers.add(new JSParser());
-        parsers.add(new TSParser());
-        parsers.add(new PythonParser());
-        parsers.add(new GoParser());
-        parsers.add(new RustParser());
-        parsers.add(new CSharpParser());
-        parsers.add(new SqlParser());
-        parsers.add(new CParser());
-        parsers.add(new CppParser());
-        parsers.add(new RubyParser());
-        parsers.add(new PHPParser());
-        parsers.add(new KotlinParser());
-        parsers.add(new DartParser());
-        parsers.add(new ShellParser());
-        parsers.add(new ZigParser());
-        parsers.add(new GDScriptParser());
-        parsers.add(new ScalaParser());
-        parsers.add(new ElixirParser());
-        parsers.add(new SwiftParser());
-        parsers.add(new ObjectiveCParser());
+        this(defaultRegistry());
+    }
+
+    public ExtractionEngine(ParserRegistry registry) {
+        this(registry, null);
+    }
+
+    /**
+     * Creates an engine that serves repeated sources from {@code cache}, or parses every
+     * call when it is {@code null}.
+     */
+    public ExtractionEngine(ParserRegistry registry, ParseCache cache) {
+        this.registry = registry;
+        this.cache = cache;
+    }
+
+    /**
+     * Returns a registry with every built-in parser plus any
+     * {@link com.extractor.core.ParserProvider} on the class path. No parser is created
+     * until its language is first extracted.
+     */
+    public static ParserRegistry defaultRegistry() {
+        ParserRegistry registry = new ParserRegistry();
+        registry.register("java", JavaParser::new);
+        registry.register("html", HTMLParser::new);
+        registry.register("css", CSSParser::new);
+        registry.register("javascript", JSParser::new);
+        registry.register("typescript", TSParser::new);
+        registry.register("python", PythonParser::new);
+        registry.register("go", GoParser::new);
+        registry.register("rust", RustParser::new);
+        registry.register("csharp", CSharpParser::new);
+        registry.register("sql", SqlParser::new);
+        registry.register("c", CParser::new);
+        registry.register("cpp", CppParser::new);
+        registry.register("ruby", RubyParser::new);
+        registry.register("php", PHPParser::new);
+        registry.register("kotlin", KotlinParser::new);
+        registry.register("dart", DartParser::new);
+        registry.register("bash", ShellParser::new);
+        registry.register("zig", ZigParser::new);
+        registry.register("gdscript", GDScriptParser::new);
+        registry.register("scala", ScalaParser::new);
+        registry.register("elixir", ElixirParser::new);
+        registry.register("swift", SwiftParser::new);
+        registry.register("objectivec", ObjectiveCParser::new);
+        registry.loadProviders(ExtractionEngine.class.getClassLoader());
+        return registry;
+    }
+
+    public ParserRegistry getRegistry() {
+        return registry;
+    }
+
+    public ParseCache getCache() {
+        return cache;
     }
 
     public CodeNode extract(String fileName, String source) {
+        return extract(fileName, source, ExtractionOptions.DEFAULT);
+    }
+
+    /**
+     * Extracts {@code source} as configured by {@code options}. Only default options are
+     * served from the cache; any other options always parse.
+     */
+    public CodeNode extract(String fileName, String source, ExtractionOptions options) {
+        String language = LanguageDetector.detect(fileName, source);
+        CodeParser parser = registry.resolve(language);
+        if (parser == null) {
+            return unparsed(source);
+        }
+        if (cache != null && source != null && options.isDefault()) {
+            // Cached trees are shared, so every caller gets its own CodeNode copy.
+            return cache.get(language, parser, source).toCodeNode();
+        }
+        return parser.parse(source, options);
+    }
+
+    /**
+     * Reports the structure of {@code source} to {@code listener} as it is parsed, without
+     * building a tree. Never uses the cache.
+     */
+    public void extract(String fileName, String source, ExtractionOptions options, ParseListener listener) {
+        String language = LanguageDetector.detect(fileName, source);
+        CodeParser parser = registry.resolve(language);
+        if (parser == null) {
+            ParseListener.replay(unparsed(source), listener);
+            return;
+        }
+        parser.parse(source, options, listener);
+    }
+
+    public CodeTree extractTree(String fileName, String source) {
+        return extractTree(fileName, source, ExtractionOptions.DEFAULT);
+    }
+
+    public CodeTree extractTree(String fileName, String source, ExtractionOptions options) {
         String language = LanguageDetector.detect(fileName, source);
-        for (CodeParser parser : parsers) {
-            if (parser.supports(language)) {
-                return parser.parse(source);
-            }
+        CodeParser parser = registry.resolve(language);
+        if (parser == null) {
+            return CodeTree.from(unparsed(source));
+        }
+        if (cache != null && source != null && options.isDefault()) {
+            return cache.get(language, parser, source);
+        }
+        return parser.parseTree(source, options);
+    }
+
+    /**
+     * Parses UTF-8 bytes without decoding them first. The tree's offsets are byte offsets,
+     * and names and content are decoded when read; see {@link CodeTree#isUtf8()}.
+     */
+    public CodeTree extractTree(String fileName, Utf8Source source) {
+        return extractTree(fileName, source, ExtractionOptions.DEFAULT);
+    }
+
+    public CodeTree extractTree(String fileName, Utf8Source source, ExtractionOptions options) {
+        CodeTree tree = extractTree(fileName, source.bytes(), options);
+        return source.isAscii() ? tree : tree.withUtf8Source();
+    }
+
+    // With no fallback parser configured, unknown languages yield a root with no children.
+    private static CodeNode unparsed(String source) {
+        CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
+        if (source != null) {
+            root.setEndOffset(source.length());
+            root.setContent(source);
         }
-        // Fallback to a generic parser or return root with no children
-        return new JavaParser().parse(source); 
+        return root;
     }
 }
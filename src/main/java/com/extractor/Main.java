@@ -1,8 +1,12 @@
 package com.extractor;
 
 import com.extractor.model.CodeNode;
+import com.extractor.model.McpJsonWriter;
 import com.extractor.model.NodeType;
 import com.extractor.query.CodeQuery;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
 
@@ -30,7 +34,14 @@ public class Main {
         System.out.println("\n--- MCP Context Representation ---");
         Map<String, Object> mcpContext = javaRoot.toMcpContext();
         System.out.println("MCP Context Map generated for " + javaRoot.getName());
-        // In a real MCP server, this map would be serialized to JSON
+        // In a real MCP server, the tree would be streamed as JSON instead of building the map
+        StringWriter json = new StringWriter();
+        try (McpJsonWriter writer = new McpJsonWriter(json)) {
+            writer.write(javaRoot);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.out.println("MCP Context JSON: " + json.toString().length() + " chars");
 
         // 3. Python Extraction Example
         String pythonCode = "class Controller:\n" +
@@ -1,11 +1,13 @@
 package com.extractor.core;
 
 import com.extractor.model.CodeNode;
+import com.extractor.model.CodeTree;
 import com.extractor.model.NodeType;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -13,6 +15,21 @@ import java.util.regex.Pattern;
  * Base class for all language parsers, providing common utilities for node extraction.
  */
 public abstract class BaseParser implements CodeParser {
+    private static final Pattern COMMENT_PATTERN = Pattern.compile("(?d)//.*|(?s:/\\*.*?\\*/)");
+
+    // Shared by all parsers so that patterns built from a keyword are compiled once per JVM.
+    private static final Map<String, Pattern> PATTERN_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * Regex word boundaries for parser patterns, in place of {@code \b}. Java's {@code \b}
+     * classifies chars by Unicode category, so it would treat the bytes of a UTF-8 sequence
+     * in a {@link Utf8Source} differently from the char they decode to. These count every
+     * non-ASCII char as part of a word, which holds for each of its bytes as well. For the
+     * same reason, patterns using {@code .} set {@code (?d)}, so only {@code \n} ends a line.
+     */
+    protected static final String WORD_START = "(?<![A-Za-z0-9_\\u0080-\\uFFFF])";
+    protected static final String WORD_END = "(?![A-Za-z0-9_\\u0080-\\uFFFF])";
+
     protected final String language;
 
     protected BaseParser(String language) {
@@ -24,6 +41,46 @@ public abstract class BaseParser implements CodeParser {
         return this.language.equalsIgnoreCase(language);
     }
 
+    @Override
+    public CodeNode parse(String source) {
+        return parse(source, ExtractionOptions.DEFAULT);
+    }
+
+    @Override
+    public CodeNode parse(String source, ExtractionOptions options) {
+        return buildTree(source, options);
+    }
+
+    /**
+     * Reports the structure of {@code source}; every other parse method is built on this
+     * one. Abstract here, because the default replays
+     * {@link #parse(String, ExtractionOptions)}, which would call back into it.
+     */
+    @Override
+    public abstract void parse(String source, ExtractionOptions options, ParseListener listener);
+
+    /**
+     * Builds the tree for a parser that reports its structure through
+     * {@link #parse(String, ExtractionOptions, ParseListener)}, by passing it a
+     * {@link TreeBuilder}.
+     */
+    protected CodeNode buildTree(String source, ExtractionOptions options) {
+        TreeBuilder tree = new TreeBuilder();
+        parse(source, options, tree);
+        return tree.getRoot();
+    }
+
+    /**
+     * Builds the array-backed tree straight from the parse events, through a
+     * {@link CodeTreeBuilder}, without a {@link CodeNode} tree in between.
+     */
+    @Override
+    public CodeTree parseTree(String source, ExtractionOptions options) {
+        CodeTreeBuilder tree = new CodeTreeBuilder(source);
+        parse(source, options, tree);
+        return tree.build();
+    }
+
     /**
      * Applies a list of rules to the given context and returns the first matching node.
      */
@@ -41,9 +98,8 @@ public abstract class BaseParser implements CodeParser {
      * Extracts the identifier immediately following a keyword (e.g., class Name, function name).
      */
     protected String extractIdentifierAfterKeyword(String text, String keyword) {
-        String boundary = keyword.startsWith("@") ? "(?<!\\w)" : "\\b";
-        Pattern pattern = Pattern.compile(boundary + Pattern.quote(keyword) + "\\s+([a-zA-Z0-9_$.]+)");
-        Matcher matcher = pattern.matcher(text);
+        if (text.indexOf(keyword) < 0) return null;
+        Matcher matcher = keywordPattern(keyword).matcher(text);
         if (matcher.find()) {
             return matcher.group(1);
         }
@@ -51,18 +107,37 @@ public abstract class BaseParser implements CodeParser {
     }
 
     /**
-     * Removes single-line and multi-line comments from the text.
+     * Returns the pattern matching {@code keyword} followed by an identifier in group 1.
+     */
+    protected static Pattern keywordPattern(String keyword) {
+        String boundary = keyword.startsWith("@") ? "(?<!\\w)" : WORD_START;
+        return cachedPattern(boundary + Pattern.quote(keyword) + "\\s+([a-zA-Z0-9_$.]+)");
+    }
+
+    /**
+     * Returns the compiled form of {@code regex}, compiling it only on first use. Intended
+     * for patterns assembled at runtime; fixed patterns belong in a static final field.
+     */
+    protected static Pattern cachedPattern(String regex) {
+        return PATTERN_CACHE.computeIfAbsent(regex, Pattern::compile);
+    }
+
+    /**
+     * Removes single-line and multi-line comments from the text. Inside a parse loop, prefer
+     * {@link SourceScanner#codeText}, which drops the comments the scanner has already seen.
      */
     protected String stripComments(String text) {
         if (text == null) return "";
         // Updated to handle multi-line comments correctly using DOTALL flag (?s) for the block comment part
-        return text.replaceAll("//.*|(?s:/\\*.*?\\*/)", "");
+        if (text.indexOf('/') < 0) return text;
+        return COMMENT_PATTERN.matcher(text).replaceAll("");
     }
 
     /**
      * Skips a string literal in the scanner.
      */
     protected void skipString(SourceScanner scanner) {
+        int start = scanner.getPos();
         char quote = scanner.peek();
         scanner.advance();
         while (!scanner.isAtEnd()) {
@@ -75,6 +150,7 @@ public abstract class BaseParser implements CodeParser {
                 scanner.advance();
             }
         }
+        scanner.markString(start, scanner.getPos());
     }
 
     protected CodeNode extractLineComment(SourceScanner scanner) {
@@ -82,40 +158,108 @@ public abstract class BaseParser implements CodeParser {
     }
 
     protected CodeNode extractLineComment(SourceScanner scanner, String delimiter) {
-        int start = scanner.getPos();
-        scanner.advance(delimiter.length());
-        while (!scanner.isAtEnd() && scanner.peek() != '\n') {
-            scanner.advance();
-        }
-        String content = scanner.substring(start, scanner.getPos());
+        int start = skipLineComment(scanner, delimiter);
         CodeNode node = new CodeNode(NodeType.COMMENT, "line_comment", start);
         node.setEndOffset(scanner.getPos());
-        node.setContent(content);
+        node.setContent(scanner.getSource(), start, scanner.getPos());
         return node;
     }
 
     protected CodeNode extractBlockComment(SourceScanner scanner, String endDelimiter) {
-        int start = scanner.getPos();
-        scanner.advance(2); // Skip /* or similar
-        while (!scanner.isAtEnd() && !scanner.peek(endDelimiter.length()).equals(endDelimiter)) {
-            scanner.advance();
-        }
-        if (!scanner.isAtEnd()) {
-            scanner.advance(endDelimiter.length());
-        }
-        String content = scanner.substring(start, scanner.getPos());
+        int start = skipBlockComment(scanner, endDelimiter);
         CodeNode node = new CodeNode(NodeType.COMMENT, "block_comment", start);
         node.setEndOffset(scanner.getPos());
-        node.setContent(content);
+        node.setContent(scanner.getSource(), start, scanner.getPos());
         return node;
     }
 
-    protected void finalizeScope(Stack<CodeNode> scopeStack, int endPos, String source) {
-        while (scopeStack.size() > 1) {
-            CodeNode node = scopeStack.pop();
-            node.setEndOffset(endPos);
-            node.setContent(source.substring(node.getStartOffset(), endPos));
+    /**
+     * Skips a line comment and adds it to {@code scopes}. A node is created only when
+     * comments are kept and a tree is being built.
+     */
+    protected void addLineComment(SourceScanner scanner, ScopeStack scopes) {
+        addLineComment(scanner, scopes, "//");
+    }
+
+    protected void addLineComment(SourceScanner scanner, ScopeStack scopes, String delimiter) {
+        if (scopes.buildsTree() && scopes.accepts(NodeType.COMMENT)) {
+            scopes.add(extractLineComment(scanner, delimiter));
+        } else {
+            scopes.comment(skipLineComment(scanner, delimiter), scanner.getPos());
+        }
+    }
+
+    protected void addBlockComment(SourceScanner scanner, ScopeStack scopes, String endDelimiter) {
+        if (scopes.buildsTree() && scopes.accepts(NodeType.COMMENT)) {
+            scopes.add(extractBlockComment(scanner, endDelimiter));
+        } else {
+            scopes.comment(skipBlockComment(scanner, endDelimiter), scanner.getPos());
+        }
+    }
+
+    // Both skip helpers record the comment in the scanner's mask and return its start.
+    private int skipLineComment(SourceScanner scanner, String delimiter) {
+        int start = scanner.getPos();
+        scanner.advance(delimiter.length());
+        scanner.skipTo('\n');
+        scanner.markComment(start, scanner.getPos());
+        return start;
+    }
+
+    private int skipBlockComment(SourceScanner scanner, String endDelimiter) {
+        int start = scanner.getPos();
+        scanner.advance(2); // Skip /* or similar
+        scanner.skipPast(endDelimiter);
+        scanner.markComment(start, scanner.getPos());
+        return start;
+    }
+
+    /**
+     * Returns the node the first matching rule builds for the scope opening after
+     * {@code context}, or an anonymous block from {@code scopes} if none matches.
+     */
+    protected CodeNode identifyBlock(List<ParserRule> rules, String context, int pos, ScopeStack scopes) {
+        Optional<CodeNode> node = applyRules(rules, context, pos);
+        return node.isPresent() ? node.get() : scopes.block(pos);
+    }
+
+    /**
+     * Sets the node content to {@code source[start, end)} with surrounding whitespace
+     * removed, matching {@link String#trim()} without copying the text.
+     */
+    protected void setTrimmedContent(CodeNode node, String source, int start, int end) {
+        while (start < end && source.charAt(start) <= ' ') start++;
+        while (end > start && source.charAt(end - 1) <= ' ') end--;
+        node.setContent(source, start, end);
+    }
+
+    /**
+     * Closes {@code node} at the '}' matching the '{' under the scanner, leaving the
+     * scanner after the body, when nothing inside the body is wanted: in outline mode for
+     * methods, constructors and functions, or when the depth limit leaves no room for
+     * children. Returns {@code false}, without moving the scanner, when the body should
+     * be parsed.
+     *
+     * @param quotes the chars that open a string literal in this language
+     */
+    protected boolean skipBody(SourceScanner scanner, CodeNode node, ScopeStack scopes, String quotes) {
+        NodeType type = node.getType();
+        boolean callable = type == NodeType.METHOD || type == NodeType.CONSTRUCTOR || type == NodeType.FUNCTION;
+        if (!(callable && scopes.getOptions().isOutline()) && scopes.acceptsWithin(node)) {
+            return false;
         }
+        int end = scanner.findBlockEnd(quotes);
+        node.setEndOffset(end);
+        scopes.setContent(node, node.getStartOffset(), end);
+        scanner.setPos(end);
+        return true;
+    }
+
+    /**
+     * Whether {@code c} can be part of a word, by the rule of {@link #WORD_START}.
+     */
+    protected static boolean isWordChar(char c) {
+        return c >= 0x80 || c == '_' || (c >= '0' && c <= '9') || ((c | 0x20) >= 'a' && (c | 0x20) <= 'z');
     }
 
     protected boolean isMethodDeclaration(String text) {
@@ -0,0 +1,49 @@
+package com.extractor.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The files an {@link IncrementalExtractor} run found added, modified or deleted since the
+ * previous run, as absolute paths, and the files it could not read.
+ */
+public class ChangeSet {
+    private final List<String> added = new ArrayList<>();
+    private final List<String> modified = new ArrayList<>();
+    private final List<String> deleted = new ArrayList<>();
+    private final List<String> failed = new ArrayList<>();
+    private int unchanged;
+
+    void added(String path) { added.add(path); }
+    void modified(String path) { modified.add(path); }
+    void deleted(String path) { deleted.add(path); }
+    void failed(String path) { failed.add(path); }
+    void unchanged() { unchanged++; }
+
+    public List<String> getAdded() { return Collections.unmodifiableList(added); }
+    public List<String> getModified() { return Collections.unmodifiableList(modified); }
+    public List<String> getDeleted() { return Collections.unmodifiableList(deleted); }
+
+    /**
+     * Files that exist but could not be read this run. They are not counted as deleted, and
+     * their results from the previous run stand.
+     */
+    public List<String> getFailed() { return Collections.unmodifiableList(failed); }
+
+    /**
+     * Number of files whose content was not re-parsed.
+     */
+    public int getUnchangedCount() { return unchanged; }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && modified.isEmpty() && deleted.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        String summary = String.format("%d added, %d modified, %d deleted, %d unchanged",
+                added.size(), modified.size(), deleted.size(), unchanged);
+        return failed.isEmpty() ? summary : summary + ", " + failed.size() + " failed";
+    }
+}
@@ -3,46 +3,112 @@ package com.extractor.core;
 import com.extractor.ExtractionEngine;
 import com.extractor.model.CodeNode;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.*;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Stream;
 
 public class CodeExtractor {
     private final ExtractionEngine engine;
 
     public CodeExtractor() {
-        this.engine = new ExtractionEngine();
+        this(new ExtractionEngine());
+    }
+
+    /**
+     * Uses {@code engine} for every file, for example one backed by a
+     * {@link PersistentParseCache} so repeated scans skip unchanged files.
+     */
+    public CodeExtractor(ExtractionEngine engine) {
+        this.engine = engine;
     }
 
     public Map<String, CodeNode> extractFromDirectory(String directoryPath) throws IOException {
         Map<String, CodeNode> results = new HashMap<>();
-        Path root = Paths.get(directoryPath);
+        extractFromDirectory(directoryPath, results::put);
+        return results;
+    }
 
-        if (!Files.exists(root)) {
-            throw new IOException("Directory does not exist: " + directoryPath);
-        }
+    /**
+     * Extracts every file under {@code directoryPath} using an {@link ExtractionPipeline}
+     * with {@code parallelism} parser threads.
+     */
+    public Map<String, CodeNode> extractFromDirectory(String directoryPath, int parallelism) throws IOException {
+        Map<String, CodeNode> results = new ConcurrentHashMap<>();
+        extractFromDirectory(directoryPath, parallelism, results::put);
+        return results;
+    }
+
+    /**
+     * Streaming variant of {@link #extractFromDirectory(String)}: each file's tree is handed
+     * to {@code sink} as soon as it is parsed and is not retained afterwards.
+     */
+    public void extractFromDirectory(String directoryPath, ExtractionSink sink) throws IOException {
+        Path root = resolveDirectory(directoryPath);
+        SourceReader reader = new SourceReader();
 
         try (Stream<Path> paths = Files.walk(root)) {
-            paths.filter(Files::isRegularFile)
-                 .forEach(path -> {
-                     try {
-                         String content = Files.readString(path);
-                         String fileName = path.getFileName().toString();
-                         CodeNode node = engine.extract(fileName, content);
-                         results.put(path.toAbsolutePath().toString(), node);
-                     } catch (IOException e) {
-                         System.err.println("Failed to read file: " + path + " - " + e.getMessage());
-                     }
-                 });
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                if (!Files.isRegularFile(path)) continue;
+
+                String content;
+                try {
+                    content = reader.read(path);
+                } catch (IOException e) {
+                    System.err.println("Failed to read file: " + path + " - " + e.getMessage());
+                    continue;
+                }
+                CodeNode node = engine.extract(path.getFileName().toString(), content);
+                sink.accept(path.toAbsolutePath().toString(), node);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-        return results;
+    }
+
+    /**
+     * Streaming variant of {@link #extractFromDirectory(String, int)}. The sink is called
+     * concurrently from the parser threads and must be thread-safe.
+     */
+    public void extractFromDirectory(String directoryPath, int parallelism, ExtractionSink sink) throws IOException {
+        Path root = resolveDirectory(directoryPath);
+        new ExtractionPipeline(engine, parallelism).run(root, sink);
+    }
+
+    /**
+     * Returns an extractor that re-parses only the files changed since the run that wrote
+     * {@code manifestFile}.
+     */
+    public IncrementalExtractor incremental(Path manifestFile) {
+        return new IncrementalExtractor(engine, manifestFile);
+    }
+
+    /**
+     * Scans {@code directoryPath} and keeps watching it. The returned index must be closed
+     * to stop the watcher thread.
+     */
+    public LiveIndex watch(String directoryPath, IndexListener... listeners) throws IOException {
+        LiveIndex index = new LiveIndex(engine, resolveDirectory(directoryPath));
+        for (IndexListener listener : listeners) {
+            index.addListener(listener);
+        }
+        return index.start();
     }
 
     public CodeNode extractFromFile(String filePath) throws IOException {
         Path path = Paths.get(filePath);
-        String content = Files.readString(path);
+        String content = new SourceReader().read(path);
         String fileName = path.getFileName().toString();
         return engine.extract(fileName, content);
     }
+
+    private Path resolveDirectory(String directoryPath) throws IOException {
+        Path root = Paths.get(directoryPath);
+        if (!Files.exists(root)) {
+            throw new IOException("Directory does not exist: " + directoryPath);
+        }
+        return root;
+    }
 }
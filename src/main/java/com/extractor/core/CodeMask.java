@@ -0,0 +1,113 @@
+package com.extractor.core;
+
+import java.util.Arrays;
+
+/**
+ * The comment and string spans of a source file, recorded by {@link SourceScanner} as the
+ * parse loop skips over them. Spans arrive in source order, so lookups are binary searches
+ * over two parallel offset arrays and no text is copied to answer them.
+ */
+public final class CodeMask {
+    private static final byte COMMENT = 1;
+    private static final byte STRING = 2;
+
+    private int size;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private byte[] kinds = new byte[16];
+
+    public void addComment(int start, int end) {
+        add(start, end, COMMENT);
+    }
+
+    public void addString(int start, int end) {
+        add(start, end, STRING);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether {@code offset} lies outside every comment and string.
+     */
+    public boolean isCode(int offset) {
+        return spanAt(offset) < 0;
+    }
+
+    public boolean isComment(int offset) {
+        int span = spanAt(offset);
+        return span >= 0 && kinds[span] == COMMENT;
+    }
+
+    public boolean isString(int offset) {
+        int span = spanAt(offset);
+        return span >= 0 && kinds[span] == STRING;
+    }
+
+    /**
+     * Returns whether any comment overlaps {@code [start, end)}.
+     */
+    public boolean hasComment(int start, int end) {
+        for (int i = firstEndingAfter(start); i < size && starts[i] < end; i++) {
+            if (kinds[i] == COMMENT) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns {@code source[start, end)} with every recorded comment removed. When the range
+     * contains no comment this is a plain substring.
+     */
+    public String stripComments(String source, int start, int end) {
+        int i = firstEndingAfter(start);
+        StringBuilder sb = null;
+        int copied = start;
+        for (; i < size && starts[i] < end; i++) {
+            if (kinds[i] != COMMENT) continue;
+            if (sb == null) sb = new StringBuilder(end - start);
+            int from = Math.max(starts[i], start);
+            if (from > copied) sb.append(source, copied, from);
+            copied = Math.min(ends[i], end);
+        }
+        if (sb == null) return source.substring(start, end);
+        if (copied < end) sb.append(source, copied, end);
+        return sb.toString();
+    }
+
+    private void add(int start, int end, byte kind) {
+        if (end <= start) return;
+        // The scanner only moves forward; anything behind the last span was already recorded.
+        if (size > 0 && start < ends[size - 1]) return;
+        if (size == starts.length) {
+            int n = size * 2;
+            starts = Arrays.copyOf(starts, n);
+            ends = Arrays.copyOf(ends, n);
+            kinds = Arrays.copyOf(kinds, n);
+        }
+        starts[size] = start;
+        ends[size] = end;
+        kinds[size] = kind;
+        size++;
+    }
+
+    private int spanAt(int offset) {
+        int i = firstEndingAfter(offset);
+        return i < size && starts[i] <= offset ? i : -1;
+    }
+
+    // Index of the first span whose end is greater than offset, or size if there is none.
+    private int firstEndingAfter(int offset) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ends[mid] <= offset) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
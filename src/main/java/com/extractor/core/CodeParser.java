@@ -1,8 +1,45 @@
 package com.extractor.core;
 
 import com.extractor.model.CodeNode;
+import com.extractor.model.CodeTree;
 
 public interface CodeParser {
     CodeNode parse(String source);
     boolean supports(String language);
+
+    /**
+     * Parses {@code source} as configured by {@code options}. Parsers that do not support
+     * an option ignore it, so the default parses as {@link #parse(String)} does.
+     */
+    default CodeNode parse(String source, ExtractionOptions options) {
+        return parse(source);
+    }
+
+    /**
+     * Parses {@code source} and reports its structure to {@code listener} instead of
+     * returning a tree. The built-in parsers report nodes as they find them and retain none;
+     * the default builds the tree first and replays it.
+     */
+    default void parse(String source, ExtractionOptions options, ParseListener listener) {
+        ParseListener.replay(parse(source, options), listener);
+    }
+
+    /**
+     * Version of this parser's output, part of every cache key. Bump it whenever the parser
+     * starts producing a different tree for the same input.
+     */
+    default int version() {
+        return 1;
+    }
+
+    /**
+     * Parses {@code source} into the compact array-backed representation.
+     */
+    default CodeTree parseTree(String source) {
+        return parseTree(source, ExtractionOptions.DEFAULT);
+    }
+
+    default CodeTree parseTree(String source, ExtractionOptions options) {
+        return CodeTree.from(parse(source, options), source);
+    }
 }
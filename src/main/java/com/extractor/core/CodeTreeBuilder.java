@@ -0,0 +1,71 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeNode;
+import com.extractor.model.CodeTree;
+import com.extractor.model.NodeType;
+
+import java.util.List;
+
+/**
+ * The listener that turns parse events into a {@link CodeTree}; this is how
+ * {@link BaseParser#parseTree(String, ExtractionOptions)} builds its result without an
+ * intermediate {@link CodeNode} tree.
+ * <p>
+ * When driven by a {@link ScopeStack}, the builder copies each node the parser created as
+ * it closes, and content over the parsed source is kept as a range into it. The parser's
+ * nodes are not retained. Fed plain events from anywhere else, it records offsets but no
+ * content.
+ */
+public final class CodeTreeBuilder implements NodeListener {
+    private final CodeTree.Builder builder;
+
+    public CodeTreeBuilder(String source) {
+        this.builder = CodeTree.builder(source);
+    }
+
+    /**
+     * The tree built so far; complete once the root has been exited.
+     */
+    public CodeTree build() {
+        return builder.build();
+    }
+
+    @Override
+    public void onEnter(NodeType type, String name, int start) {
+        builder.enter(type, name, start);
+    }
+
+    @Override
+    public void onExit(int end) {
+        builder.exit(end);
+    }
+
+    @Override
+    public void onComment(int start, int end) {
+        builder.leaf(NodeType.COMMENT, "comment", start, end);
+    }
+
+    @Override
+    public void enter(CodeNode node) {
+        builder.enter(node.getType(), node.getName(), node.getStartOffset());
+    }
+
+    @Override
+    public void add(CodeNode node) {
+        add(builder.currentNode(), node);
+    }
+
+    @Override
+    public void exit(CodeNode node) {
+        builder.copyFrom(builder.exit(node.getEndOffset()), node);
+    }
+
+    private void add(int parent, CodeNode node) {
+        int id = builder.add(parent, node.getType(), node.getName(), node.getStartOffset(), node.getEndOffset());
+        builder.copyFrom(id, node);
+        List<CodeNode> children = node.getChildren();
+        for (int i = 0; i < children.size(); i++) {
+            add(id, children.get(i));
+        }
+    }
+}
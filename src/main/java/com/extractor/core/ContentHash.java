@@ -0,0 +1,97 @@
+package com.extractor.core;
+
+/**
+ * 64-bit content hashing for cache keys.
+ * <p>
+ * {@link #xxHash64(CharSequence)} computes XXH64 over the UTF-16LE encoding of the text,
+ * reading four chars per 64-bit lane straight from the sequence, so nothing is encoded
+ * or copied.
+ */
+public final class ContentHash {
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long P3 = 0x165667B19E3779F9L;
+    private static final long P4 = 0x85EBCA77C2B2AE63L;
+    private static final long P5 = 0x27D4EB2F165667C5L;
+
+    private ContentHash() {
+    }
+
+    public static long xxHash64(CharSequence text) {
+        return xxHash64(text, 0L);
+    }
+
+    public static long xxHash64(CharSequence text, long seed) {
+        int n = text.length();
+        int i = 0;
+        long h;
+
+        if (n >= 16) {
+            long v1 = seed + P1 + P2;
+            long v2 = seed + P2;
+            long v3 = seed;
+            long v4 = seed - P1;
+            int limit = n - 16;
+            while (i <= limit) {
+                v1 = round(v1, lane(text, i));
+                v2 = round(v2, lane(text, i + 4));
+                v3 = round(v3, lane(text, i + 8));
+                v4 = round(v4, lane(text, i + 12));
+                i += 16;
+            }
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = seed + P5;
+        }
+
+        h += 2L * n;
+
+        while (i + 4 <= n) {
+            h ^= round(0, lane(text, i));
+            h = Long.rotateLeft(h, 27) * P1 + P4;
+            i += 4;
+        }
+        if (i + 2 <= n) {
+            long word = (text.charAt(i) | (long) text.charAt(i + 1) << 16) & 0xFFFFFFFFL;
+            h ^= word * P1;
+            h = Long.rotateLeft(h, 23) * P2 + P3;
+            i += 2;
+        }
+        if (i < n) {
+            char c = text.charAt(i);
+            h ^= (c & 0xFF) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+            h ^= (c >>> 8) * P5;
+            h = Long.rotateLeft(h, 11) * P1;
+        }
+
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        h *= P3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    private static long lane(CharSequence text, int i) {
+        return text.charAt(i)
+                | (long) text.charAt(i + 1) << 16
+                | (long) text.charAt(i + 2) << 32
+                | (long) text.charAt(i + 3) << 48;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * P2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * P1;
+    }
+
+    private static long mergeRound(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * P1 + P4;
+    }
+}
@@ -0,0 +1,147 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeTree;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory cache of parse results keyed by language, parser version and an XXH64 hash of
+ * the source. Results are stored as immutable {@link CodeTree}s, so callers can never see
+ * each other's modifications. Entries are evicted least-recently-used first once either the
+ * entry limit or the estimated retained bytes limit is exceeded.
+ * <p>
+ * The cache is safe for concurrent use. Parsing happens outside the lock, so two threads
+ * missing on the same source at once may both parse it.
+ */
+public class ExtractionCache implements ParseCache {
+    public static final int DEFAULT_MAX_ENTRIES = 10_000;
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private final int maxEntries;
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long retainedBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ExtractionCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+    }
+
+    public ExtractionCache(int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Cache limits must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public CodeTree get(String language, CodeParser parser, String source) {
+        Key key = new Key(language, parser.getClass().getName(), parser.version(),
+                ContentHash.xxHash64(source), source.length());
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            // Guard against hash collisions; the tree keeps a reference to its source anyway.
+            if (entry != null && source.equals(entry.tree.getSource())) {
+                hits.incrementAndGet();
+                return entry.tree;
+            }
+        }
+
+        misses.incrementAndGet();
+        CodeTree tree = parser.parseTree(source);
+        put(key, new Entry(tree, tree.estimatedBytes()));
+        return tree;
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long retainedBytes() {
+        return retainedBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        retainedBytes = 0;
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        if (entry.bytes > maxBytes) {
+            return; // Would evict everything else and still not fit.
+        }
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            retainedBytes -= previous.bytes;
+        }
+        retainedBytes += entry.bytes;
+
+        Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || retainedBytes > maxBytes) && eldest.hasNext()) {
+            Map.Entry<Key, Entry> victim = eldest.next();
+            if (victim.getKey().equals(key)) break;
+            retainedBytes -= victim.getValue().bytes;
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static final class Key {
+        final String language;
+        final String parser;
+        final int version;
+        final long hash;
+        final int length;
+
+        Key(String language, String parser, int version, long hash, int length) {
+            this.language = language;
+            this.parser = parser;
+            this.version = version;
+            this.hash = hash;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return hash == other.hash && length == other.length && version == other.version
+                    && language.equals(other.language) && parser.equals(other.parser);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + length;
+        }
+    }
+
+    private static final class Entry {
+        final CodeTree tree;
+        final long bytes;
+
+        Entry(CodeTree tree, long bytes) {
+            this.tree = tree;
+            this.bytes = bytes;
+        }
+    }
+}
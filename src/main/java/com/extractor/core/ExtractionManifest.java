@@ -0,0 +1,129 @@
+package com.extractor.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The size, modification time and content hash of every file seen by the last
+ * {@link IncrementalExtractor} run, keyed by absolute path.
+ */
+public class ExtractionManifest {
+    private static final int MAGIC = 0x43584D31; // "CXM1"
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Loads a manifest saved with {@link #save}. A missing file yields an empty manifest;
+     * an unreadable one is reported to stderr and also treated as empty, which makes the
+     * next run a full extraction.
+     */
+    public static ExtractionManifest load(Path file) {
+        ExtractionManifest manifest = new ExtractionManifest();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            DataInputStream data = new DataInputStream(in);
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not an extraction manifest");
+            }
+            int count = data.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = data.readUTF();
+                manifest.entries.put(path, new Entry(data.readLong(), data.readLong(), data.readLong()));
+            }
+        } catch (NoSuchFileException e) {
+            return manifest;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable manifest: " + file + " - " + e.getMessage());
+            manifest.entries.clear();
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest to a temporary file next to {@code file} and atomically renames it
+     * into place.
+     */
+    public void save(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path tmp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeInt(MAGIC);
+                data.writeInt(entries.size());
+                for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                    data.writeUTF(e.getKey());
+                    data.writeLong(e.getValue().size);
+                    data.writeLong(e.getValue().modifiedMillis);
+                    data.writeLong(e.getValue().hash);
+                }
+                data.flush();
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    public Entry get(String path) {
+        return entries.get(path);
+    }
+
+    public void put(String path, Entry entry) {
+        entries.put(path, entry);
+    }
+
+    public Entry remove(String path) {
+        return entries.remove(path);
+    }
+
+    public Set<String> paths() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * What is known about one file. Size and modification time are compared first; the
+     * hash is only consulted when they differ, to tell real edits from touched files.
+     */
+    public static final class Entry {
+        private final long size;
+        private final long modifiedMillis;
+        private final long hash;
+
+        public Entry(long size, long modifiedMillis, long hash) {
+            this.size = size;
+            this.modifiedMillis = modifiedMillis;
+            this.hash = hash;
+        }
+
+        public long getSize() { return size; }
+        public long getModifiedMillis() { return modifiedMillis; }
+        public long getHash() { return hash; }
+
+        public boolean matches(long size, long modifiedMillis) {
+            return this.size == size && this.modifiedMillis == modifiedMillis;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.extractor.core;
+
+import com.extractor.model.NodeType;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Settings that change what a parser extracts from a source. Parsers apply them while
+ * parsing through a {@link ScopeStack}, so excluded nodes are never attached to the tree
+ * and, where the parser can tell in advance, never created. Instances are immutable and
+ * may be shared between threads.
+ */
+public final class ExtractionOptions {
+    /** Extracts everything the parser recognises. */
+    public static final ExtractionOptions DEFAULT = builder().build();
+
+    /**
+     * Extracts declarations only. Method and function bodies are skipped with a brace
+     * matcher, so nothing inside them becomes a node.
+     */
+    public static final ExtractionOptions OUTLINE = builder().outline(true).build();
+
+    private final EnumSet<NodeType> types;
+    private final int maxDepth;
+    private final boolean content;
+    private final boolean comments;
+    private final boolean outline;
+
+    private ExtractionOptions(Builder b) {
+        this.types = b.types == null ? null : EnumSet.copyOf(b.types);
+        this.maxDepth = b.maxDepth;
+        this.content = b.content;
+        this.comments = b.comments;
+        this.outline = b.outline;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Returns whether nodes of {@code type} are kept. The root is always kept, and comments
+     * only when {@link #includesComments()} is also true.
+     */
+    public boolean keeps(NodeType type) {
+        if (type == NodeType.ROOT) return true;
+        if (type == NodeType.COMMENT && !comments) return false;
+        return types == null || types.contains(type);
+    }
+
+    /**
+     * The deepest level at which nodes are kept; children of the root are at depth 1.
+     */
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public boolean includesContent() {
+        return content;
+    }
+
+    public boolean includesComments() {
+        return comments;
+    }
+
+    public boolean isOutline() {
+        return outline;
+    }
+
+    /**
+     * Returns whether these options produce the same tree as {@link #DEFAULT}, so the
+     * result may be shared through a {@link ParseCache}.
+     */
+    public boolean isDefault() {
+        return types == null && maxDepth == Integer.MAX_VALUE && content && comments && !outline;
+    }
+
+    @Override
+    public String toString() {
+        return "ExtractionOptions{types=" + (types == null ? "all" : types)
+                + ", maxDepth=" + maxDepth + ", content=" + content
+                + ", comments=" + comments + ", outline=" + outline + "}";
+    }
+
+    public static final class Builder {
+        private Set<NodeType> types;
+        private int maxDepth = Integer.MAX_VALUE;
+        private boolean content = true;
+        private boolean comments = true;
+        private boolean outline;
+
+        private Builder() {
+        }
+
+        /**
+         * Keeps only nodes of the given types. A kept node whose ancestors are dropped is
+         * attached to its nearest kept ancestor.
+         */
+        public Builder types(NodeType first, NodeType... rest) {
+            this.types = EnumSet.of(first, rest);
+            return this;
+        }
+
+        public Builder types(Set<NodeType> types) {
+            this.types = types.isEmpty() ? EnumSet.noneOf(NodeType.class) : EnumSet.copyOf(types);
+            return this;
+        }
+
+        /**
+         * Drops every node deeper than {@code maxDepth} in the resulting tree.
+         */
+        public Builder maxDepth(int maxDepth) {
+            if (maxDepth < 0) {
+                throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+            }
+            this.maxDepth = maxDepth;
+            return this;
+        }
+
+        /**
+         * Whether nodes carry their source text. Offsets are kept either way.
+         */
+        public Builder content(boolean content) {
+            this.content = content;
+            return this;
+        }
+
+        public Builder comments(boolean comments) {
+            this.comments = comments;
+            return this;
+        }
+
+        /**
+         * Skips method and function bodies; see {@link ExtractionOptions#OUTLINE}.
+         */
+        public Builder outline(boolean outline) {
+            this.outline = outline;
+            return this;
+        }
+
+        public ExtractionOptions build() {
+            return new ExtractionOptions(this);
+        }
+    }
+}
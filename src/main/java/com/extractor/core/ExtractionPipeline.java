@@ -0,0 +1,163 @@
+package com.extractor.core;
+
+import com.extractor.ExtractionEngine;
+import com.extractor.model.CodeNode;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Multi-threaded directory extraction split into three stages: a single walker thread,
+ * a pool of reader threads and a pool of parser threads. Stages are joined by bounded
+ * queues, so a slow parse stage blocks the readers and the walker instead of letting
+ * file contents pile up on the heap.
+ * <p>
+ * Parsers keep all parse state on the stack, so one {@link ExtractionEngine} is shared
+ * by every parser thread.
+ */
+public class ExtractionPipeline {
+    public static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private static final Path END_OF_PATHS = Path.of("");
+    private static final SourceFile END_OF_SOURCES = new SourceFile(null, null);
+
+    private final ExtractionEngine engine;
+    private final int parserThreads;
+    private final int readerThreads;
+    private final int queueCapacity;
+
+    public ExtractionPipeline(ExtractionEngine engine, int parallelism) {
+        this(engine, parallelism, Math.max(1, parallelism / 2), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public ExtractionPipeline(ExtractionEngine engine, int parserThreads, int readerThreads, int queueCapacity) {
+        if (parserThreads < 1 || readerThreads < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Thread counts and queue capacity must be positive");
+        }
+        this.engine = engine;
+        this.parserThreads = parserThreads;
+        this.readerThreads = readerThreads;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Walks {@code root}, extracts every regular file and hands each result to {@code sink}
+     * keyed by its absolute path. The sink is called from the parser threads and must be
+     * thread-safe. Files that cannot be read are reported to stderr and skipped; any other
+     * failure stops the pipeline and is rethrown from this method.
+     */
+    public void run(Path root, ExtractionSink sink) throws IOException {
+        BlockingQueue<Path> paths = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<SourceFile> sources = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicInteger activeReaders = new AtomicInteger(readerThreads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(1 + readerThreads + parserThreads, r -> {
+            Thread thread = new Thread(r, "extraction-pipeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        pool.execute(guarded(pool, failure, () -> walk(root, paths)));
+        for (int i = 0; i < readerThreads; i++) {
+            pool.execute(guarded(pool, failure, () -> read(paths, sources, activeReaders)));
+        }
+        for (int i = 0; i < parserThreads; i++) {
+            pool.execute(guarded(pool, failure, () -> parse(sources, sink)));
+        }
+
+        pool.shutdown();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                // Keep waiting; workers stop on their own or when a stage fails.
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Directory extraction interrupted: " + root);
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof IOException) throw (IOException) t;
+        if (t instanceof UncheckedIOException) throw ((UncheckedIOException) t).getCause();
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error) throw (Error) t;
+        if (t != null) throw new IOException("Directory extraction failed: " + root, t);
+    }
+
+    private void walk(Path root, BlockingQueue<Path> paths) throws Exception {
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) walk::iterator) {
+                if (Files.isRegularFile(path)) {
+                    paths.put(path);
+                }
+            }
+        }
+        for (int i = 0; i < readerThreads; i++) {
+            paths.put(END_OF_PATHS);
+        }
+    }
+
+    private void read(BlockingQueue<Path> paths, BlockingQueue<SourceFile> sources, AtomicInteger activeReaders) throws Exception {
+        SourceReader reader = new SourceReader();
+        for (Path path = paths.take(); path != END_OF_PATHS; path = paths.take()) {
+            try {
+                sources.put(new SourceFile(path, reader.read(path)));
+            } catch (IOException e) {
+                System.err.println("Failed to read file: " + path + " - " + e.getMessage());
+            }
+        }
+        if (activeReaders.decrementAndGet() == 0) {
+            for (int i = 0; i < parserThreads; i++) {
+                sources.put(END_OF_SOURCES);
+            }
+        }
+    }
+
+    private void parse(BlockingQueue<SourceFile> sources, ExtractionSink sink) throws Exception {
+        for (SourceFile file = sources.take(); file != END_OF_SOURCES; file = sources.take()) {
+            CodeNode node = engine.extract(file.path.getFileName().toString(), file.content);
+            sink.accept(file.path.toAbsolutePath().toString(), node);
+        }
+    }
+
+    private static Runnable guarded(ExecutorService pool, AtomicReference<Throwable> failure, Stage stage) {
+        return () -> {
+            try {
+                stage.run();
+            } catch (InterruptedException e) {
+                // Cancelled because another stage failed or the caller was interrupted.
+            } catch (Throwable t) {
+                if (failure.compareAndSet(null, t)) {
+                    pool.shutdownNow();
+                }
+            }
+        };
+    }
+
+    @FunctionalInterface
+    private interface Stage {
+        void run() throws Exception;
+    }
+
+    private static final class SourceFile {
+        final Path path;
+        final String content;
+
+        SourceFile(Path path, String content) {
+            this.path = path;
+            this.content = content;
+        }
+    }
+}
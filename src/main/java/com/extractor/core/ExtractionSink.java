@@ -0,0 +1,14 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeNode;
+
+import java.io.IOException;
+
+/**
+ * Receives extraction results one file at a time. The extractor keeps no reference to a
+ * tree once it has been handed to the sink.
+ */
+@FunctionalInterface
+public interface ExtractionSink {
+    void accept(String path, CodeNode root) throws IOException;
+}
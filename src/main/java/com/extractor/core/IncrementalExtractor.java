@@ -0,0 +1,140 @@
+package com.extractor.core;
+
+import com.extractor.ExtractionEngine;
+import com.extractor.model.CodeNode;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Re-extracts a directory by comparing it against the {@link ExtractionManifest} saved by
+ * the previous run. Files whose size and modification time are unchanged are not opened;
+ * files that were only touched are read and hashed but not parsed. Only added and modified
+ * files are parsed and handed to the sink, and the returned {@link ChangeSet} lists the
+ * deleted paths so callers can drop their old results. A file that cannot be read is listed
+ * as failed rather than deleted, and keeps its manifest entry from the previous run.
+ */
+public class IncrementalExtractor {
+    /**
+     * Files modified this close to the start of a scan may be modified again within the same
+     * timestamp tick, so their modification time is not trusted on the next run.
+     */
+    private static final long RACY_WINDOW_MILLIS = 2_000;
+
+    private final ExtractionEngine engine;
+    private final Path manifestFile;
+    private final SourceReader reader = new SourceReader();
+
+    public IncrementalExtractor(ExtractionEngine engine, Path manifestFile) {
+        this.engine = engine;
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Updates {@code results}, keyed by absolute path, to reflect the current contents of
+     * {@code directoryPath}. Unchanged files are neither parsed nor put, so {@code results}
+     * must hold what the previous run against the same manifest left in it; after a restart
+     * with an empty map, use a fresh manifest file. The previous results of files that could
+     * not be read are kept.
+     */
+    public ChangeSet update(String directoryPath, Map<String, CodeNode> results) throws IOException {
+        ChangeSet changes = update(directoryPath, results::put);
+        for (String path : changes.getDeleted()) {
+            results.remove(path);
+        }
+        return changes;
+    }
+
+    /**
+     * Scans {@code directoryPath}, passes the tree of every added or modified file to
+     * {@code sink} and saves the new manifest.
+     */
+    public synchronized ChangeSet update(String directoryPath, ExtractionSink sink) throws IOException {
+        Path root = Paths.get(directoryPath).toAbsolutePath();
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Directory does not exist: " + directoryPath);
+        }
+
+        ExtractionManifest manifest = ExtractionManifest.load(manifestFile);
+        ChangeSet changes = new ChangeSet();
+        Set<String> seen = new HashSet<>();
+        long scanStart = System.currentTimeMillis();
+        Path manifestPath = manifestFile.toAbsolutePath();
+
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!attrs.isRegularFile() || file.startsWith(manifestPath)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String path = file.toString();
+                long size = attrs.size();
+                long modified = attrs.lastModifiedTime().toMillis();
+
+                ExtractionManifest.Entry previous = manifest.get(path);
+                if (previous != null && previous.matches(size, modified)) {
+                    seen.add(path);
+                    changes.unchanged();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                String content;
+                try {
+                    content = reader.read(file);
+                } catch (IOException e) {
+                    System.err.println("Failed to read file: " + file + " - " + e.getMessage());
+                    seen.add(path);
+                    changes.failed(path);
+                    return FileVisitResult.CONTINUE;
+                }
+                seen.add(path);
+
+                long hash = ContentHash.xxHash64(content);
+                long recorded = modified > scanStart - RACY_WINDOW_MILLIS ? -1 : modified;
+                manifest.put(path, new ExtractionManifest.Entry(size, recorded, hash));
+
+                if (previous != null && previous.getHash() == hash) {
+                    changes.unchanged();
+                    return FileVisitResult.CONTINUE;
+                }
+                sink.accept(path, engine.extract(file.getFileName().toString(), content));
+                if (previous == null) {
+                    changes.added(path);
+                } else {
+                    changes.modified(path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Failed to read file: " + file + " - " + e.getMessage());
+                seen.add(file.toString());
+                changes.failed(file.toString());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (String path : new HashSet<>(manifest.paths())) {
+            if (!seen.contains(path) && Paths.get(path).startsWith(root)) {
+                manifest.remove(path);
+                changes.deleted(path);
+            }
+        }
+
+        manifest.save(manifestFile);
+        return changes;
+    }
+
+    public Path getManifestFile() {
+        return manifestFile;
+    }
+}
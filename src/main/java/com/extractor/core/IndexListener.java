@@ -0,0 +1,20 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeNode;
+
+/**
+ * Receives per-file changes published by a {@link LiveIndex}. Callbacks run on the index's
+ * watcher thread after the change is visible in {@link LiveIndex#snapshot()}.
+ */
+public interface IndexListener {
+    /**
+     * A file was added or its content changed.
+     */
+    void updated(String path, CodeNode root);
+
+    /**
+     * A file was deleted, or its directory was.
+     */
+    default void removed(String path) {
+    }
+}
@@ -0,0 +1,345 @@
+package com.extractor.core;
+
+import com.extractor.ExtractionEngine;
+import com.extractor.model.CodeNode;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A continuously updated index of every file under a directory, keyed by absolute path.
+ * <p>
+ * After an initial scan, a background thread watches the tree with a {@link WatchService}.
+ * Events are collected until the tree has been quiet for the debounce interval (or ten
+ * intervals have passed, so a steady stream of writes cannot postpone updates forever),
+ * and then only the affected paths are re-read. Files whose content hash is unchanged are
+ * not re-parsed. A batch is read and parsed first and then applied to the sorted index in
+ * one step, so its cost follows the number of changed paths rather than the size of the
+ * index, and {@link #snapshot()} always returns a consistent view, never a half-applied
+ * batch.
+ * <p>
+ * Listeners are notified per file once the batch is visible. Listeners registered before
+ * {@link #start()} also receive every file found by the initial scan, and none is called
+ * after {@link #close()} has returned.
+ */
+public class LiveIndex implements Closeable {
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+    // How long close() waits for a batch in progress to finish.
+    private static final long CLOSE_TIMEOUT_MILLIS = 5000;
+
+    private final ExtractionEngine engine;
+    private final Path root;
+    private final long debounceMillis;
+    private final List<IndexListener> listeners = new CopyOnWriteArrayList<>();
+
+    // Written only by the thread that applies batches, a whole batch at a time while holding
+    // the map's lock; snapshot() copies it under the same lock at most once per batch.
+    private final ConcurrentSkipListMap<String, CodeNode> index = new ConcurrentSkipListMap<>();
+    private Map<String, CodeNode> snapshot = Collections.emptyMap();
+
+    // Only touched by the thread that applies batches.
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Map<String, Long> hashes = new HashMap<>();
+    private final SourceReader reader = new SourceReader();
+
+    private WatchService watcher;
+    private Thread thread;
+    private volatile boolean closed;
+
+    public LiveIndex(ExtractionEngine engine, Path root) {
+        this(engine, root, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    public LiveIndex(ExtractionEngine engine, Path root, long debounceMillis) {
+        if (debounceMillis < 1) {
+            throw new IllegalArgumentException("Debounce interval must be positive");
+        }
+        this.engine = engine;
+        this.root = root.toAbsolutePath().normalize();
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Scans the directory on the calling thread and then starts watching it.
+     */
+    public synchronized LiveIndex start() throws IOException {
+        if (thread != null) {
+            throw new IllegalStateException("Already started");
+        }
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Directory does not exist: " + root);
+        }
+        watcher = root.getFileSystem().newWatchService();
+        apply(Collections.singleton(root));
+
+        thread = new Thread(this::watch, "live-index");
+        thread.setDaemon(true);
+        thread.start();
+        return this;
+    }
+
+    /**
+     * Returns the current index. The map is immutable and never changes afterwards. The
+     * first call after a batch copies the index; later calls share that copy.
+     */
+    public Map<String, CodeNode> snapshot() {
+        synchronized (index) {
+            if (snapshot == null) {
+                snapshot = Collections.unmodifiableMap(new HashMap<>(index));
+            }
+            return snapshot;
+        }
+    }
+
+    /**
+     * Reads the index without copying it. While a batch is being applied, this may already
+     * see some of its files; use {@link #snapshot()} to read several files consistently.
+     */
+    public CodeNode get(String path) {
+        return index.get(path);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    public void addListener(IndexListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(IndexListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Stops watching and waits, for a few seconds at most, for the batch in progress to
+     * finish. A batch still running afterwards is not published.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread watching;
+        synchronized (this) {
+            closed = true;
+            if (watcher != null) {
+                watcher.close();
+            }
+            watching = thread;
+        }
+        if (watching != null && watching != Thread.currentThread()) {
+            try {
+                watching.join(CLOSE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void watch() {
+        Set<Path> pending = new LinkedHashSet<>();
+        try {
+            while (!closed) {
+                WatchKey key = watcher.take();
+                long deadline = System.currentTimeMillis() + debounceMillis * 10;
+                collect(key, pending);
+
+                long wait;
+                while ((wait = Math.min(debounceMillis, deadline - System.currentTimeMillis())) > 0
+                        && (key = watcher.poll(wait, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, pending);
+                }
+
+                apply(pending);
+                pending.clear();
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Closed.
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> pending) {
+        Path dir = keys.get(key);
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                // Events were lost; fall back to a full rescan.
+                pending.add(root);
+            } else {
+                pending.add(dir.resolve((Path) event.context()));
+            }
+        }
+        if (!key.reset()) {
+            keys.remove(key);
+        }
+    }
+
+    private void apply(Set<Path> paths) {
+        Batch batch = new Batch();
+        for (Path path : paths) {
+            try {
+                if (Files.isDirectory(path)) {
+                    rescan(path, batch);
+                } else if (Files.isRegularFile(path)) {
+                    refresh(path, batch);
+                } else {
+                    removeUnder(path, Collections.emptySet(), batch);
+                }
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Failed to update index for: " + path + " - " + e.getMessage());
+            }
+        }
+
+        if (batch.updated.isEmpty() && batch.removed.isEmpty()) return;
+        synchronized (index) {
+            for (String path : batch.removed) {
+                index.remove(path);
+            }
+            index.putAll(batch.updated);
+            snapshot = null;
+        }
+        publish(batch.updated, new ArrayList<>(batch.removed));
+    }
+
+    private void rescan(Path dir, Batch batch) throws IOException {
+        Set<String> seen = new HashSet<>();
+        Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                // Register before listing so files created during the walk are not missed.
+                try {
+                    keys.put(d.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), d);
+                } catch (NoSuchFileException e) {
+                    // Deleted since it was listed; its parent's events cover the removal.
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile()) {
+                    seen.add(file.toString());
+                    refresh(file, batch);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                System.err.println("Failed to read file: " + file + " - " + e.getMessage());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        removeUnder(dir, seen, batch);
+    }
+
+    private void refresh(Path file, Batch batch) {
+        String path = file.toString();
+        String content;
+        try {
+            content = reader.read(file);
+        } catch (IOException e) {
+            System.err.println("Failed to read file: " + file + " - " + e.getMessage());
+            return;
+        }
+        long hash = ContentHash.xxHash64(content);
+        Long previous = hashes.put(path, hash);
+        if (previous != null && previous == hash && batch.contains(path, index)) {
+            return;
+        }
+        CodeNode node;
+        try {
+            node = engine.extract(file.getFileName().toString(), content);
+        } catch (RuntimeException e) {
+            // Forget the hash so the next change to the file is parsed again.
+            hashes.remove(path);
+            System.err.println("Failed to update index for: " + path + " - " + e.getMessage());
+            return;
+        }
+        batch.removed.remove(path);
+        batch.updated.put(path, node);
+    }
+
+    /**
+     * Drops {@code path} and every indexed file below it that is not in {@code keep}. Paths
+     * below a directory share its path and a separator as a prefix, so they form one range of
+     * the sorted index.
+     */
+    private void removeUnder(Path path, Set<String> keep, Batch batch) {
+        String exact = path.toString();
+        String prefix = exact.endsWith(path.getFileSystem().getSeparator())
+                ? exact : exact + path.getFileSystem().getSeparator();
+        List<String> under = new ArrayList<>();
+        if (index.containsKey(exact)) under.add(exact);
+        for (String indexed : index.tailMap(prefix).keySet()) {
+            if (!indexed.startsWith(prefix)) break;
+            under.add(indexed);
+        }
+        Iterator<String> staged = batch.updated.keySet().iterator();
+        while (staged.hasNext()) {
+            String indexed = staged.next();
+            if (!keep.contains(indexed) && (indexed.equals(exact) || indexed.startsWith(prefix))) {
+                staged.remove();
+                hashes.remove(indexed);
+                batch.removed.add(indexed);
+            }
+        }
+        for (String indexed : under) {
+            if (!keep.contains(indexed)) {
+                hashes.remove(indexed);
+                batch.removed.add(indexed);
+            }
+        }
+    }
+
+    // Holds the lock close() sets the flag under, so no callback starts once close() has.
+    private synchronized void publish(Map<String, CodeNode> updated, List<String> removed) {
+        for (IndexListener listener : listeners) {
+            if (closed) return;
+            try {
+                for (Map.Entry<String, CodeNode> e : updated.entrySet()) {
+                    listener.updated(e.getKey(), e.getValue());
+                }
+                for (String path : removed) {
+                    listener.removed(path);
+                }
+            } catch (RuntimeException e) {
+                System.err.println("Index listener failed: " + e);
+            }
+        }
+    }
+
+    // The changes of one batch, staged until they are applied to the index together.
+    private static final class Batch {
+        final Map<String, CodeNode> updated = new LinkedHashMap<>();
+        final Set<String> removed = new LinkedHashSet<>();
+
+        // Whether path is in the index once this batch is applied.
+        boolean contains(String path, Map<String, CodeNode> index) {
+            return updated.containsKey(path) || (index.containsKey(path) && !removed.contains(path));
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeNode;
+
+/**
+ * A listener that builds a tree. A {@link ScopeStack} hands it the nodes the parser created
+ * instead of plain events, so it also sees their content and metadata.
+ */
+public interface NodeListener extends ParseListener {
+
+    /**
+     * Opens {@code node} under the innermost open node, or as the root.
+     */
+    void enter(CodeNode node);
+
+    /**
+     * Adds {@code node}, whose end offset is set, under the innermost open node.
+     */
+    void add(CodeNode node);
+
+    /**
+     * Closes the innermost open node, which is {@code node}; its end offset and content are
+     * final by now.
+     */
+    void exit(CodeNode node);
+}
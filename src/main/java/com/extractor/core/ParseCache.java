@@ -0,0 +1,15 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeTree;
+
+/**
+ * A cache of parse results consulted by {@link com.extractor.ExtractionEngine}.
+ * Implementations must be safe for concurrent use.
+ */
+public interface ParseCache {
+
+    /**
+     * Returns the tree for {@code source} as parsed by {@code parser}, parsing it on a miss.
+     */
+    CodeTree get(String language, CodeParser parser, String source);
+}
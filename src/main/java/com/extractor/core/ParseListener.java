@@ -0,0 +1,66 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeNode;
+import com.extractor.model.NodeType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Receives the structure of a source as a parser finds it, without a tree being built.
+ * Every {@link #onEnter} is matched by one {@link #onExit}, nested like the nodes of the
+ * tree the same parse would return; the first event enters the root and the last one
+ * exits it. Comments are reported through {@link #onComment} only.
+ * <p>
+ * Events already reflect the {@link ExtractionOptions} of the parse, so a node that the
+ * options drop produces no events, and its kept descendants are reported under the
+ * nearest kept ancestor.
+ */
+public interface ParseListener {
+
+    /**
+     * A node of {@code type} starts at {@code start}. Nodes without children are entered
+     * and exited in turn.
+     */
+    void onEnter(NodeType type, String name, int start);
+
+    /**
+     * The most recently entered node that has not been exited yet ends at {@code end}.
+     */
+    void onExit(int end);
+
+    /**
+     * A comment spans {@code [start, end)}. Not called when comments are excluded.
+     */
+    default void onComment(int start, int end) {
+    }
+
+    /**
+     * Reports an existing tree to {@code listener} as a parse of it would. Used for parsers
+     * that only build trees.
+     */
+    static void replay(CodeNode root, ParseListener listener) {
+        Deque<CodeNode> open = new ArrayDeque<>();
+        Deque<Iterator<CodeNode>> pending = new ArrayDeque<>();
+        listener.onEnter(root.getType(), root.getName(), root.getStartOffset());
+        open.push(root);
+        pending.push(root.getChildren().iterator());
+        while (!open.isEmpty()) {
+            Iterator<CodeNode> children = pending.peek();
+            if (!children.hasNext()) {
+                listener.onExit(open.pop().getEndOffset());
+                pending.pop();
+                continue;
+            }
+            CodeNode child = children.next();
+            if (child.getType() == NodeType.COMMENT && child.getChildren().isEmpty()) {
+                listener.onComment(child.getStartOffset(), child.getEndOffset());
+            } else {
+                listener.onEnter(child.getType(), child.getName(), child.getStartOffset());
+                open.push(child);
+                pending.push(child.getChildren().iterator());
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.extractor.core;
+
+/**
+ * Service-provider interface for plugging additional parsers into {@link ParserRegistry}.
+ * <p>
+ * Implementations are discovered with {@link java.util.ServiceLoader}: list the class name
+ * in {@code META-INF/services/com.extractor.core.ParserProvider}. The provider itself is
+ * created at registry construction, but {@link #create()} is only called the first time
+ * its language is extracted, so keep provider constructors trivial.
+ */
+public interface ParserProvider {
+
+    /**
+     * The language id this provider handles, as returned by {@link LanguageDetector}.
+     * Providers override built-in parsers for the same id.
+     */
+    String language();
+
+    /**
+     * Creates the parser. The instance is shared by all threads using the registry.
+     */
+    CodeParser create();
+}
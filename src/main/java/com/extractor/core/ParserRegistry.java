@@ -0,0 +1,101 @@
+package com.extractor.core;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Maps normalized language ids to parsers. Parsers are created on first lookup and shared
+ * afterwards, so a registry only pays for the languages it actually sees. Lookups are a
+ * single hash probe and are safe from any number of threads.
+ * <p>
+ * A new registry is empty and falls back to {@link #DEFAULT_FALLBACK};
+ * {@link com.extractor.ExtractionEngine#defaultRegistry()} returns one with the built-in
+ * parsers registered.
+ */
+public class ParserRegistry {
+    public static final String DEFAULT_FALLBACK = "java";
+
+    private final Map<String, Supplier<? extends CodeParser>> factories = new ConcurrentHashMap<>();
+    private final Map<String, CodeParser> parsers = new ConcurrentHashMap<>();
+    private volatile String fallback = DEFAULT_FALLBACK;
+
+    /**
+     * Registers {@code factory} for {@code language}, replacing any previous registration and
+     * discarding a parser already created for it.
+     */
+    public ParserRegistry register(String language, Supplier<? extends CodeParser> factory) {
+        String id = normalize(language);
+        factories.put(id, factory);
+        parsers.remove(id);
+        return this;
+    }
+
+    /**
+     * Registers every {@link ParserProvider} visible to {@code loader}.
+     */
+    public ParserRegistry loadProviders(ClassLoader loader) {
+        for (ParserProvider provider : ServiceLoader.load(ParserProvider.class, loader)) {
+            register(provider.language(), provider::create);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the language whose parser handles unknown languages, or {@code null} to leave
+     * them unparsed.
+     */
+    public ParserRegistry setFallback(String language) {
+        this.fallback = language == null ? null : normalize(language);
+        return this;
+    }
+
+    public String getFallback() {
+        return fallback;
+    }
+
+    /**
+     * Returns the parser registered for {@code language}, creating it on first use, or
+     * {@code null} if there is none.
+     */
+    public CodeParser get(String language) {
+        if (language == null) return null;
+        String id = normalize(language);
+        CodeParser parser = parsers.get(id);
+        if (parser != null) return parser;
+        Supplier<? extends CodeParser> factory = factories.get(id);
+        if (factory == null) return null;
+        return parsers.computeIfAbsent(id, key -> factory.get());
+    }
+
+    /**
+     * Returns the parser for {@code language}, or the fallback parser if there is none.
+     * Returns {@code null} only when the fallback is unset or unregistered.
+     */
+    public CodeParser resolve(String language) {
+        CodeParser parser = get(language);
+        return parser != null ? parser : get(fallback);
+    }
+
+    public boolean isRegistered(String language) {
+        return language != null && factories.containsKey(normalize(language));
+    }
+
+    /**
+     * Returns whether the parser for {@code language} has been created yet.
+     */
+    public boolean isLoaded(String language) {
+        return language != null && parsers.containsKey(normalize(language));
+    }
+
+    public Set<String> languages() {
+        return Set.copyOf(factories.keySet());
+    }
+
+    private static String normalize(String language) {
+        return language.trim().toLowerCase(Locale.ROOT);
+    }
+}
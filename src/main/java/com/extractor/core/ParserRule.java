@@ -3,6 +3,11 @@ package com.extractor.core;
 import com.extractor.model.CodeNode;
 import java.util.Optional;
 
+/**
+ * Identifies the construct introduced by {@code context}, the text between the previous
+ * boundary and the current one. Parsers pass it through {@link SourceScanner#codeText}, so
+ * it is already free of comments; {@code position} is its offset in the source.
+ */
 @FunctionalInterface
 public interface ParserRule {
     Optional<CodeNode> apply(String context, int position);
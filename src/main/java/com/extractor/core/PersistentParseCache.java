@@ -0,0 +1,228 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeTree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * On-disk cache of parse results that survives JVM restarts. Each tree is stored in its
+ * own file, named after the XXH64 hash of the source and of the parser identity (language,
+ * parser class and {@link CodeParser#version()}), using the {@link CodeTree#write} binary
+ * encoding. The source itself is not stored; the caller supplies it again on lookup, and
+ * an entry is only accepted if it was written for a source of the same length.
+ * <p>
+ * Files are written to a temporary name and atomically renamed into place, so concurrent
+ * writers and crashed runs never leave a partial entry behind. A hit refreshes the file's
+ * modification time, and {@link #cleanup()} deletes the least recently used files once the
+ * directory exceeds its byte budget. Cleanup also runs automatically after roughly a tenth
+ * of the budget has been written.
+ * <p>
+ * I/O failures never fail extraction: the source is parsed normally and the problem is
+ * reported to stderr.
+ */
+public class PersistentParseCache implements ParseCache {
+    public static final long DEFAULT_MAX_BYTES = 1024L * 1024 * 1024;
+
+    private static final String SUFFIX = ".cxt";
+
+    private final Path directory;
+    private final long maxBytes;
+    private final AtomicLong writtenSinceCleanup = new AtomicLong();
+    private final AtomicBoolean cleaning = new AtomicBoolean();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public PersistentParseCache(Path directory) throws IOException {
+        this(directory, DEFAULT_MAX_BYTES);
+    }
+
+    public PersistentParseCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("Cache size must be positive");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public CodeTree get(String language, CodeParser parser, String source) {
+        Path file = fileFor(language, parser, source);
+
+        CodeTree cached = load(file, source);
+        if (cached != null) {
+            hits.incrementAndGet();
+            return cached;
+        }
+
+        misses.incrementAndGet();
+        CodeTree tree = parser.parseTree(source);
+        // Trees over a derived source (e.g. normalized line endings) must carry it along.
+        store(file, tree, tree.getSource() != null && !tree.getSource().equals(source));
+        return tree;
+    }
+
+    /**
+     * Deletes least recently used entries until the directory is at most 90% of its budget.
+     * Leftover temporary files from interrupted writes are removed as well.
+     */
+    public void cleanup() throws IOException {
+        if (!cleaning.compareAndSet(false, true)) return;
+        try {
+            writtenSinceCleanup.set(0);
+            List<CacheFile> files = new ArrayList<>();
+            long total = 0;
+            try (Stream<Path> walk = Files.walk(directory)) {
+                for (Path path : (Iterable<Path>) walk::iterator) {
+                    String name = path.getFileName().toString();
+                    try {
+                        BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+                        if (!attrs.isRegularFile()) continue;
+                        if (name.endsWith(".tmp")) {
+                            // Only sweep temporaries old enough not to belong to a live write.
+                            if (attrs.lastModifiedTime().toMillis() < System.currentTimeMillis() - 60_000) {
+                                Files.deleteIfExists(path);
+                            }
+                        } else if (name.endsWith(SUFFIX)) {
+                            files.add(new CacheFile(path, attrs.size(), attrs.lastModifiedTime()));
+                            total += attrs.size();
+                        }
+                    } catch (NoSuchFileException e) {
+                        // Removed concurrently.
+                    }
+                }
+            }
+
+            long target = maxBytes - maxBytes / 10;
+            if (total <= maxBytes) return;
+            files.sort(Comparator.comparing(f -> f.lastUsed));
+            for (CacheFile f : files) {
+                if (total <= target) break;
+                if (Files.deleteIfExists(f.path)) {
+                    evictions.incrementAndGet();
+                }
+                total -= f.size;
+            }
+        } finally {
+            cleaning.set(false);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long hitCount() {
+        return hits.get();
+    }
+
+    public long missCount() {
+        return misses.get();
+    }
+
+    public long evictionCount() {
+        return evictions.get();
+    }
+
+    private Path fileFor(String language, CodeParser parser, String source) {
+        String identity = language + '\0' + parser.getClass().getName() + '\0' + parser.version();
+        String contentHash = hex(ContentHash.xxHash64(source));
+        // Spread entries over 256 subdirectories to keep directory listings short.
+        return directory.resolve(contentHash.substring(0, 2))
+                .resolve(contentHash + '-' + hex(ContentHash.xxHash64(identity)) + SUFFIX);
+    }
+
+    private CodeTree load(Path file, String source) {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            CodeTree tree = CodeTree.read(new DataInputStream(in), source);
+            touch(file);
+            return tree;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.err.println("Discarding unreadable cache entry: " + file + " - " + e.getMessage());
+            deleteQuietly(file);
+            return null;
+        }
+    }
+
+    private void store(Path file, CodeTree tree, boolean embedSource) {
+        Path tmp = null;
+        try {
+            Files.createDirectories(file.getParent());
+            tmp = Files.createTempFile(file.getParent(), "entry", ".tmp");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                DataOutputStream data = new DataOutputStream(out);
+                tree.write(data, embedSource);
+                data.flush();
+            }
+            long size = Files.size(tmp);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            tmp = null;
+            if (writtenSinceCleanup.addAndGet(size) > maxBytes / 10) {
+                cleanup();
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to write cache entry: " + file + " - " + e.getMessage());
+        } finally {
+            if (tmp != null) deleteQuietly(tmp);
+        }
+    }
+
+    private static void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only affects eviction order.
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Best effort.
+        }
+    }
+
+    private static String hex(long value) {
+        String s = Long.toHexString(value);
+        return "0".repeat(16 - s.length()) + s;
+    }
+
+    private static final class CacheFile {
+        final Path path;
+        final long size;
+        final FileTime lastUsed;
+
+        CacheFile(Path path, long size, FileTime lastUsed) {
+            this.path = path;
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeNode;
+import com.extractor.model.NodeType;
+
+import java.util.Arrays;
+
+/**
+ * The scopes a parser currently has open, innermost last, and the single place where
+ * parsers report what they find. Every node goes through {@link #add} or {@link #open},
+ * which apply the {@link ExtractionOptions} and pass the kept nodes on to a
+ * {@link ParseListener}. A node that is filtered out produces no events, and nodes found
+ * inside it are reported under the nearest scope that was kept.
+ * <p>
+ * A {@link NodeListener}, such as a {@link TreeBuilder}, is handed the kept nodes
+ * themselves. Any other listener receives only events; the stack drops its nodes as their
+ * scopes close, so nothing the parser creates outlives the parse.
+ * <p>
+ * {@link #peek()} still returns the innermost scope whether or not it was kept, so parsers
+ * can make the same decisions as in a full parse.
+ */
+public final class ScopeStack {
+    private final CodeNode root;
+    private final String source;
+    private final ExtractionOptions options;
+    private final ParseListener listener;
+    // The listener when it builds a tree, so it can be handed the parser's own nodes.
+    private final NodeListener tree;
+
+    private CodeNode[] scopes = new CodeNode[16];
+    // For each open scope: whether it was kept, and the depth of its nearest kept scope.
+    private boolean[] kept = new boolean[16];
+    private int[] depths = new int[16];
+    private int size;
+    private CodeNode placeholder;
+
+    /**
+     * Opens {@code root} and reports it to {@code listener}.
+     */
+    public ScopeStack(CodeNode root, String source, ExtractionOptions options, ParseListener listener) {
+        this.root = root;
+        this.source = source;
+        this.options = options;
+        this.listener = listener;
+        this.tree = listener instanceof NodeListener ? (NodeListener) listener : null;
+        scopes[0] = root;
+        kept[0] = true;
+        size = 1;
+        if (tree != null) {
+            tree.enter(root);
+        } else {
+            listener.onEnter(root.getType(), root.getName(), root.getStartOffset());
+        }
+    }
+
+    public ExtractionOptions getOptions() {
+        return options;
+    }
+
+    public CodeNode getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns whether the parse builds a tree, rather than only reporting events. Parsers
+     * need not create nodes whose sole purpose is to be reported.
+     */
+    public boolean buildsTree() {
+        return tree != null;
+    }
+
+    /**
+     * The innermost open scope.
+     */
+    public CodeNode peek() {
+        return scopes[size - 1];
+    }
+
+    /**
+     * The open scope at {@code index}, where 0 is the root.
+     */
+    public CodeNode get(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        return scopes[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether a node of {@code type} added now would be kept. Parsers check this
+     * before building a node that may be dropped.
+     */
+    public boolean accepts(NodeType type) {
+        return options.keeps(type) && depths[size - 1] < options.getMaxDepth();
+    }
+
+    /**
+     * Reports {@code node}, which has no children and whose end offset is set, under the
+     * innermost kept scope if the options keep it. Returns whether it was kept.
+     */
+    public boolean add(CodeNode node) {
+        if (!keep(node)) return false;
+        if (tree != null) {
+            tree.add(node);
+        } else if (node.getType() == NodeType.COMMENT) {
+            listener.onComment(node.getStartOffset(), node.getEndOffset());
+        } else {
+            listener.onEnter(node.getType(), node.getName(), node.getStartOffset());
+            listener.onExit(node.getEndOffset());
+        }
+        return true;
+    }
+
+    /**
+     * Reports a comment spanning {@code [start, end)} without a node for it, if comments
+     * are kept here.
+     */
+    public void comment(int start, int end) {
+        if (accepts(NodeType.COMMENT)) {
+            listener.onComment(start, end);
+        }
+    }
+
+    /**
+     * Opens {@code node} as the innermost scope, even if it was not kept, and reports it if
+     * it was. Its type and name must be final by now.
+     */
+    public void open(CodeNode node) {
+        boolean keep = keep(node);
+        if (keep) {
+            if (tree != null) {
+                tree.enter(node);
+            } else {
+                listener.onEnter(node.getType(), node.getName(), node.getStartOffset());
+            }
+        }
+        if (size == scopes.length) {
+            int capacity = size * 2;
+            scopes = Arrays.copyOf(scopes, capacity);
+            kept = Arrays.copyOf(kept, capacity);
+            depths = Arrays.copyOf(depths, capacity);
+        }
+        scopes[size] = node;
+        kept[size] = keep;
+        depths[size] = keep ? depths[size - 1] + 1 : depths[size - 1];
+        size++;
+    }
+
+    private boolean keep(CodeNode node) {
+        if (node == null || !accepts(node.getType())) return false;
+        if (!options.includesContent()) node.setContent(null);
+        return true;
+    }
+
+    /**
+     * Returns whether a node opened now could have kept descendants, that is whether the
+     * parser needs to look inside it at all.
+     */
+    public boolean acceptsWithin(CodeNode node) {
+        int depth = depths[size - 1] + (accepts(node.getType()) ? 1 : 0);
+        return depth < options.getMaxDepth();
+    }
+
+    public CodeNode block(int start) {
+        return block("anonymous", start);
+    }
+
+    /**
+     * Returns a new {@link NodeType#BLOCK} node starting at {@code start}, or, when no tree
+     * is built or blocks are not kept here, a scratch node that is never attached.
+     */
+    public CodeNode block(String name, int start) {
+        if (tree != null && accepts(NodeType.BLOCK)) {
+            return new CodeNode(NodeType.BLOCK, name, start);
+        }
+        if (placeholder == null) {
+            placeholder = new CodeNode(NodeType.BLOCK, name, start);
+        }
+        placeholder.setName(name);
+        placeholder.setStartOffset(start);
+        return placeholder;
+    }
+
+    /**
+     * Removes the innermost scope and returns it, without touching its offsets, and reports
+     * its end. The root is never removed.
+     */
+    public CodeNode pop() {
+        if (size == 1) throw new IllegalStateException("Cannot pop the root scope");
+        CodeNode node = scopes[--size];
+        scopes[size] = null;
+        if (kept[size]) {
+            exit(node);
+        }
+        return node;
+    }
+
+    /**
+     * Removes the innermost scope and sets its end offset, and its content up to
+     * {@code end} when content is included. Returns the closed node.
+     */
+    public CodeNode close(int end) {
+        CodeNode node = peek();
+        node.setEndOffset(end);
+        setContent(node, node.getStartOffset(), end);
+        return pop();
+    }
+
+    /**
+     * Sets {@code source[start, end)} as the content of {@code node} unless content is
+     * excluded or no tree is built.
+     */
+    public void setContent(CodeNode node, int start, int end) {
+        if (tree != null && options.includesContent()) {
+            node.setContent(source, start, Math.min(end, source.length()));
+        }
+    }
+
+    /**
+     * Closes every scope still open, except the root, at {@code end}.
+     */
+    public void closeAll(int end) {
+        while (size > 1) {
+            close(end);
+        }
+    }
+
+    /**
+     * Closes every scope still open at {@code end}, then ends the root there, and returns
+     * the root.
+     */
+    public CodeNode finish(int end) {
+        closeAll(end);
+        root.setEndOffset(end);
+        setContent(root, 0, end);
+        return complete();
+    }
+
+    /**
+     * Reports the end of the root at its current end offset and returns the root. For
+     * parsers that close their scopes and set up the root themselves; {@link #finish} is
+     * the usual way to end a parse.
+     */
+    public CodeNode complete() {
+        if (size != 1) throw new IllegalStateException(size - 1 + " scopes are still open");
+        exit(root);
+        return root;
+    }
+
+    private void exit(CodeNode node) {
+        if (tree != null) {
+            tree.exit(node);
+        } else {
+            listener.onExit(node.getEndOffset());
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.extractor.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads source files into Strings without giving up on files that are not valid UTF-8.
+ * <p>
+ * Small files are read into a reused heap buffer, and files of at least the map threshold
+ * are memory-mapped. Pure ASCII content, which is most source code, is checked eight
+ * bytes at a time and copied straight into a compact Latin-1 String. Other content goes
+ * through reused {@link CharsetDecoder}s. UTF-8 is tried first, then any configured
+ * fallbacks, and finally ISO-8859-1, which accepts every byte sequence. A UTF-8 byte order
+ * mark is dropped, and a UTF-16 one selects the matching decoder. A file without a UTF-16
+ * byte order mark that has a NUL byte in its first 8 KB is taken to be binary and fails
+ * with an {@link IOException}, so that directory runs skip it like any unreadable file.
+ * <p>
+ * Instances keep their buffers between calls and are not thread-safe; use one per thread.
+ */
+public final class SourceReader {
+    public static final long DEFAULT_MAP_THRESHOLD = 1024 * 1024;
+
+    /** Buffers larger than this are released after use instead of being kept for reuse. */
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024 * 1024;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final int BINARY_PROBE = 8192;
+
+    private final long mapThreshold;
+    private final List<CharsetDecoder> decoders = new ArrayList<>();
+    private byte[] bytes = new byte[8192];
+    private char[] chars = new char[8192];
+    private Charset lastCharset;
+
+    public SourceReader() {
+        this(DEFAULT_MAP_THRESHOLD);
+    }
+
+    /**
+     * @param fallbacks charsets to try, in order, after UTF-8 fails and before ISO-8859-1
+     */
+    public SourceReader(long mapThreshold, Charset... fallbacks) {
+        this.mapThreshold = mapThreshold;
+        decoders.add(decoder(StandardCharsets.UTF_8));
+        for (Charset charset : fallbacks) {
+            decoders.add(decoder(charset));
+        }
+    }
+
+    public String read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return decode(file, load(file, channel));
+        } finally {
+            releaseLargeBuffers();
+        }
+    }
+
+    /**
+     * Reads {@code file} as raw UTF-8 without decoding it, for
+     * {@link com.extractor.ExtractionEngine#extractTree(String, Utf8Source)}. A UTF-8 byte
+     * order mark is dropped. Content that is not valid UTF-8 is not detected here and ends
+     * up as U+FFFD when decoded. A binary file fails as it does in {@link #read}.
+     */
+    public Utf8Source readUtf8(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = load(file, channel);
+            int start = in.position();
+            if (in.remaining() >= 3 && (in.get(start) & 0xFF) == 0xEF
+                    && (in.get(start + 1) & 0xFF) == 0xBB && (in.get(start + 2) & 0xFF) == 0xBF) {
+                in.position(start + 3);
+            }
+            checkText(file, in);
+            lastCharset = StandardCharsets.UTF_8;
+            return Utf8Source.ofByteString(latin1(in), isAscii(in));
+        } finally {
+            releaseLargeBuffers();
+        }
+    }
+
+    private ByteBuffer load(Path file, FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE - 8) {
+            throw new IOException("File too large: " + file);
+        }
+        if (size >= mapThreshold) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        ByteBuffer in = ByteBuffer.wrap(byteBuffer((int) size), 0, (int) size);
+        while (in.hasRemaining() && channel.read(in) >= 0) {
+            // Keep reading until full or the file turns out shorter than reported.
+        }
+        in.flip();
+        return in;
+    }
+
+    private void releaseLargeBuffers() {
+        if (bytes.length > MAX_RETAINED_BUFFER) bytes = new byte[8192];
+        if (chars.length > MAX_RETAINED_BUFFER) chars = new char[8192];
+    }
+
+    /**
+     * The charset the last successful {@link #read} decoded with.
+     */
+    public Charset getLastCharset() {
+        return lastCharset;
+    }
+
+    private String decode(Path file, ByteBuffer in) throws IOException {
+        int start = in.position();
+        int n = in.remaining();
+
+        if (n >= 2) {
+            int b0 = in.get(start) & 0xFF;
+            int b1 = in.get(start + 1) & 0xFF;
+            if (b0 == 0xFE && b1 == 0xFF) {
+                return decodeReplacing(in.position(start + 2), StandardCharsets.UTF_16BE);
+            }
+            if (b0 == 0xFF && b1 == 0xFE) {
+                return decodeReplacing(in.position(start + 2), StandardCharsets.UTF_16LE);
+            }
+            if (n >= 3 && b0 == 0xEF && b1 == 0xBB && (in.get(start + 2) & 0xFF) == 0xBF) {
+                in.position(start + 3);
+            }
+        }
+        checkText(file, in);
+
+        if (isAscii(in)) {
+            lastCharset = StandardCharsets.US_ASCII;
+            return latin1(in);
+        }
+
+        for (CharsetDecoder decoder : decoders) {
+            String text = tryDecode(in, decoder);
+            if (text != null) {
+                lastCharset = decoder.charset();
+                return text;
+            }
+        }
+        lastCharset = StandardCharsets.ISO_8859_1;
+        return latin1(in);
+    }
+
+    private String tryDecode(ByteBuffer in, CharsetDecoder decoder) {
+        int start = in.position();
+        // None of the supported encodings yields more chars than input bytes.
+        CharBuffer out = CharBuffer.wrap(charBuffer(in.remaining()));
+        decoder.reset();
+        try {
+            CoderResult result = decoder.decode(in, out, true);
+            if (result.isUnderflow()) result = decoder.flush(out);
+            if (!result.isUnderflow()) return null;
+            return new String(chars, 0, out.position());
+        } finally {
+            in.position(start);
+        }
+    }
+
+    private String decodeReplacing(ByteBuffer in, Charset charset) throws IOException {
+        CharBuffer out = CharBuffer.wrap(charBuffer(in.remaining()));
+        CharsetDecoder decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        CoderResult result = decoder.decode(in, out, true);
+        if (result.isUnderflow()) result = decoder.flush(out);
+        if (!result.isUnderflow()) result.throwException();
+        lastCharset = charset;
+        return new String(chars, 0, out.position());
+    }
+
+    private String latin1(ByteBuffer in) {
+        int n = in.remaining();
+        if (in.hasArray()) {
+            return new String(in.array(), in.arrayOffset() + in.position(), n, StandardCharsets.ISO_8859_1);
+        }
+        byte[] copy = byteBuffer(n);
+        in.duplicate().get(copy, 0, n);
+        return new String(copy, 0, n, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void checkText(Path file, ByteBuffer in) throws IOException {
+        int end = Math.min(in.limit(), in.position() + BINARY_PROBE);
+        for (int i = in.position(); i < end; i++) {
+            if (in.get(i) == 0) throw new IOException("Binary file: " + file);
+        }
+    }
+
+    private static boolean isAscii(ByteBuffer in) {
+        int i = in.position();
+        int end = in.limit();
+        for (; i + 8 <= end; i += 8) {
+            if ((in.getLong(i) & HIGH_BITS) != 0) return false;
+        }
+        for (; i < end; i++) {
+            if (in.get(i) < 0) return false;
+        }
+        return true;
+    }
+
+    private byte[] byteBuffer(int size) {
+        if (bytes.length < size) bytes = new byte[Math.max(size, bytes.length * 2)];
+        return bytes;
+    }
+
+    private char[] charBuffer(int size) {
+        if (chars.length < size) chars = new char[Math.max(size, chars.length * 2)];
+        return chars;
+    }
+
+    private static CharsetDecoder decoder(Charset charset) {
+        return charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT);
+    }
+}
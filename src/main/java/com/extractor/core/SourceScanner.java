@@ -1,9 +1,25 @@
 package com.extractor.core;
 
+import java.nio.CharBuffer;
+
+/**
+ * Cursor over a source string. Lookahead, matching and delimiter search compare regions of
+ * the source in place and never allocate; only {@link #substring} and {@link #peek(int)}
+ * copy characters out.
+ * <p>
+ * Comments and strings skipped through {@link BaseParser} are recorded in a {@link CodeMask},
+ * so rules can get comment-free text for a range without re-scanning it.
+ * <p>
+ * The source may also be a {@link Utf8Source} byte string, in which case every position is
+ * a byte offset.
+ */
 public class SourceScanner {
     private final String source;
     private int pos = 0;
     private final int length;
+    private final CodeMask mask = new CodeMask();
+    private StructuralIndex index;
+    private CharSet indexedSet;
 
     public SourceScanner(String source) {
         this.source = source != null ? source : "";
@@ -24,6 +40,15 @@ public class SourceScanner {
         return source.charAt(pos + 1);
     }
 
+    /**
+     * Returns the character {@code offset} positions ahead, or {@code '\0'} past the end.
+     */
+    public char peekAt(int offset) {
+        int index = pos + offset;
+        if (index < 0 || index >= length) return '\0';
+        return source.charAt(index);
+    }
+
     public char advance() {
         if (isAtEnd()) return '\0';
         return source.charAt(pos++);
@@ -33,37 +58,240 @@ public class SourceScanner {
         pos = Math.min(pos + n, length);
     }
 
+    public String getSource() {
+        return source;
+    }
+
     public int getPos() {
         return pos;
     }
 
+    public int length() {
+        return length;
+    }
+
     public void setPos(int pos) {
         if (pos >= 0 && pos <= length) {
             this.pos = pos;
         }
     }
 
+    public CodeMask getMask() {
+        return mask;
+    }
+
+    public void markComment(int start, int end) {
+        mask.addComment(start, end);
+    }
+
+    public void markString(int start, int end) {
+        mask.addString(start, end);
+    }
+
+    /**
+     * Returns {@code source[start, end)} without the comments recorded so far.
+     */
+    public String codeText(int start, int end) {
+        return mask.stripComments(source, start, Math.min(end, length));
+    }
+
     public String substring(int start, int end) {
         return source.substring(start, Math.min(end, length));
     }
 
+    /**
+     * Zero-copy view of {@code source[start, end)}.
+     */
+    public CharSequence view(int start, int end) {
+        return CharBuffer.wrap(source, start, Math.min(end, length));
+    }
+
+    /**
+     * Returns up to {@code n} characters of lookahead as a new string. Prefer
+     * {@link #lookingAt(String)} for comparisons, which does not allocate.
+     */
     public String peek(int n) {
         int end = Math.min(pos + n, length);
         return source.substring(pos, end);
     }
 
     public void skipWhitespace() {
-        while (!isAtEnd() && Character.isWhitespace(peek())) {
+        while (!isAtEnd() && isWhitespace(peek())) {
             advance();
         }
     }
 
+    /**
+     * {@link Character#isWhitespace} restricted to ASCII, so that a UTF-8 byte string and
+     * its decoded text agree on every char outside ASCII.
+     */
+    public static boolean isWhitespace(char c) {
+        return c < 0x80 && Character.isWhitespace(c);
+    }
+
+    /**
+     * Returns whether the source continues with {@code expected} at the current position.
+     */
+    public boolean lookingAt(String expected) {
+        return source.startsWith(expected, pos);
+    }
+
     public boolean match(String expected) {
-        if (pos + expected.length() > length) return false;
-        if (source.substring(pos, pos + expected.length()).equals(expected)) {
+        if (source.startsWith(expected, pos)) {
             pos += expected.length();
             return true;
         }
         return false;
     }
+
+    /**
+     * Returns the index of the next {@code delimiter} at or after the current position,
+     * or -1 if there is none. The position does not change.
+     */
+    public int findDelimiter(String delimiter) {
+        return source.indexOf(delimiter, pos);
+    }
+
+    /**
+     * Advances to the next occurrence of {@code c}, or to the end of the source.
+     */
+    public void skipTo(char c) {
+        int index = source.indexOf(c, pos);
+        pos = index < 0 ? length : index;
+    }
+
+    /**
+     * Advances past the next occurrence of {@code delimiter}, or to the end of the source.
+     * Returns whether the delimiter was found.
+     */
+    public boolean skipPast(String delimiter) {
+        int index = source.indexOf(delimiter, pos);
+        if (index < 0) {
+            pos = length;
+            return false;
+        }
+        pos = index + delimiter.length();
+        return true;
+    }
+
+    /**
+     * Returns the position just past the '}' matching the '{' at the current position, or
+     * the source length if the block is never closed. Braces inside C-style line and block
+     * comments, or inside strings opened by any char of {@code quotes}, are not counted.
+     * The position does not change.
+     */
+    public int findBlockEnd(String quotes) {
+        int depth = 0;
+        int i = pos;
+        while (i < length) {
+            char c = source.charAt(i);
+            if (c == '{') {
+                depth++;
+            } else if (c == '}') {
+                if (--depth == 0) return i + 1;
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '/') {
+                i = source.indexOf('\n', i + 2);
+                if (i < 0) return length;
+            } else if (c == '/' && i + 1 < length && source.charAt(i + 1) == '*') {
+                i = source.indexOf("*/", i + 2);
+                if (i < 0) return length;
+                i++;
+            } else if (quotes.indexOf(c) >= 0) {
+                i = skipQuoted(i, c);
+                continue;
+            }
+            i++;
+        }
+        return length;
+    }
+
+    // Same escape handling as BaseParser.skipString, without moving the cursor.
+    private int skipQuoted(int start, char quote) {
+        int i = start + 1;
+        while (i < length) {
+            char c = source.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                return i + 1;
+            } else {
+                i++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Advances to the next character contained in {@code set}, or to the end of the source,
+     * and returns that character ({@code '\0'} at the end). Uses the structural index when
+     * one was built for {@code set}.
+     */
+    public char skipToAny(CharSet set) {
+        int i;
+        if (set == indexedSet) {
+            i = index.next(pos);
+        } else {
+            i = pos;
+            while (i < length && !set.contains(source.charAt(i))) {
+                i++;
+            }
+        }
+        pos = i;
+        return i < length ? source.charAt(i) : '\0';
+    }
+
+    /**
+     * Builds a {@link StructuralIndex} of {@code set} if {@link StructuralIndex#ENABLED}, so
+     * later {@link #skipToAny} calls with the same set jump straight to the next member.
+     */
+    public void indexStructural(CharSet set) {
+        if (StructuralIndex.ENABLED) {
+            index = StructuralIndex.build(source, set);
+            indexedSet = set;
+        }
+    }
+
+    /**
+     * An immutable set of characters with a table lookup for ASCII.
+     */
+    public static final class CharSet {
+        private final boolean[] ascii = new boolean[128];
+        private final String other;
+        private final short[] asciiMembers;
+
+        private CharSet(String chars) {
+            StringBuilder asciiChars = new StringBuilder();
+            StringBuilder nonAscii = new StringBuilder();
+            for (int i = 0; i < chars.length(); i++) {
+                char c = chars.charAt(i);
+                if (c >= 128) {
+                    nonAscii.append(c);
+                } else if (!ascii[c]) {
+                    ascii[c] = true;
+                    asciiChars.append(c);
+                }
+            }
+            this.other = nonAscii.toString();
+            this.asciiMembers = new short[asciiChars.length()];
+            for (int i = 0; i < asciiMembers.length; i++) {
+                asciiMembers[i] = (short) asciiChars.charAt(i);
+            }
+        }
+
+        public static CharSet of(String chars) {
+            return new CharSet(chars);
+        }
+
+        public boolean contains(char c) {
+            return c < 128 ? ascii[c] : other.indexOf(c) >= 0;
+        }
+
+        boolean isAscii() {
+            return other.isEmpty();
+        }
+
+        short[] asciiMembers() {
+            return asciiMembers;
+        }
+    }
 }
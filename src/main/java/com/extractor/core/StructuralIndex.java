@@ -0,0 +1,114 @@
+package com.extractor.core;
+
+/**
+ * A bitmap of the positions in a source that hold one of a small set of structural
+ * characters, such as braces, quotes and comment starts. It is built in one pass ahead of
+ * parsing, in the style of simdjson's structural index. Parse loops can then jump from one
+ * interesting position to the next with {@link #next(int)} instead of testing every char.
+ * <p>
+ * When the {@code jdk.incubator.vector} module is present (run with
+ * {@code --add-modules jdk.incubator.vector}) and the hardware has 256-bit vectors, the
+ * bitmap is built with the Vector API, comparing a full vector of chars per instruction.
+ * Otherwise a scalar loop builds the same bitmap.
+ * <p>
+ * Parsers only use the index when the {@code extractor.structuralIndex} system property is
+ * {@code true}. Without it, {@link SourceScanner#skipToAny} scans with a table lookup per
+ * char, which is the better choice for small files.
+ */
+public final class StructuralIndex {
+    /** Whether parsers build an index before scanning; see the class comment. */
+    public static final boolean ENABLED = Boolean.getBoolean("extractor.structuralIndex");
+
+    private static final Indexer VECTOR = loadVectorIndexer();
+    private static final Indexer SCALAR = new ScalarIndexer();
+
+    private final long[] words;
+    private final int length;
+
+    private StructuralIndex(long[] words, int length) {
+        this.words = words;
+        this.length = length;
+    }
+
+    /**
+     * Indexes every position of {@code source} whose char is in {@code set}, using the Vector
+     * API when it is available.
+     */
+    public static StructuralIndex build(String source, SourceScanner.CharSet set) {
+        Indexer indexer = VECTOR != null && set.isAscii() ? VECTOR : SCALAR;
+        return build(source, set, indexer);
+    }
+
+    static StructuralIndex build(String source, SourceScanner.CharSet set, Indexer indexer) {
+        long[] words = new long[(source.length() + 63) >>> 6];
+        indexer.index(source, set, words);
+        return new StructuralIndex(words, source.length());
+    }
+
+    /**
+     * Returns whether the vectorized indexer could be loaded.
+     */
+    public static boolean isVectorized() {
+        return VECTOR != null;
+    }
+
+    /**
+     * Returns the first indexed position at or after {@code from}, or the source length if
+     * there is none.
+     */
+    public int next(int from) {
+        if (from >= length) return length;
+        int word = from >>> 6;
+        long bits = words[word] & (-1L << (from & 63));
+        while (bits == 0) {
+            if (++word == words.length) return length;
+            bits = words[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(bits);
+    }
+
+    public boolean contains(int pos) {
+        return pos >= 0 && pos < length && (words[pos >>> 6] & (1L << (pos & 63))) != 0;
+    }
+
+    /**
+     * Number of indexed positions.
+     */
+    public int count() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    private static Indexer loadVectorIndexer() {
+        try {
+            return (Indexer) Class.forName("com.extractor.core.VectorStructuralIndexer")
+                    .getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // The incubator module is not in the module graph, or the vectors are too narrow
+            // (the constructor's exception arrives wrapped); use the scalar indexer.
+            return null;
+        }
+    }
+
+    /**
+     * Sets bit {@code i} of {@code words} for every position {@code i} holding a member of
+     * {@code set}.
+     */
+    interface Indexer {
+        void index(String source, SourceScanner.CharSet set, long[] words);
+    }
+
+    static final class ScalarIndexer implements Indexer {
+        @Override
+        public void index(String source, SourceScanner.CharSet set, long[] words) {
+            for (int i = 0, n = source.length(); i < n; i++) {
+                if (set.contains(source.charAt(i))) {
+                    words[i >>> 6] |= 1L << (i & 63);
+                }
+            }
+        }
+    }
+}
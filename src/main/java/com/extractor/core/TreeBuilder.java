@@ -0,0 +1,72 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeNode;
+import com.extractor.model.NodeType;
+
+import java.util.Arrays;
+
+/**
+ * The listener that turns parse events into a {@link CodeNode} tree; this is how
+ * {@link CodeParser#parse(String, ExtractionOptions)} builds its result.
+ * <p>
+ * When driven by a {@link ScopeStack}, the builder attaches the nodes the parser created,
+ * so they keep the content the parser gave them. Fed plain events from anywhere else, it
+ * creates the nodes itself, with offsets but no content.
+ */
+public final class TreeBuilder implements NodeListener {
+    private CodeNode[] open = new CodeNode[16];
+    private int size;
+    private CodeNode root;
+
+    /**
+     * The root of the tree, or {@code null} before the first event.
+     */
+    public CodeNode getRoot() {
+        return root;
+    }
+
+    @Override
+    public void onEnter(NodeType type, String name, int start) {
+        enter(new CodeNode(type, name, start));
+    }
+
+    @Override
+    public void onExit(int end) {
+        pop().setEndOffset(end);
+    }
+
+    @Override
+    public void onComment(int start, int end) {
+        add(new CodeNode(NodeType.COMMENT, "comment", start, end));
+    }
+
+    @Override
+    public void enter(CodeNode node) {
+        if (size == 0) {
+            root = node;
+        } else {
+            open[size - 1].addChild(node);
+        }
+        if (size == open.length) {
+            open = Arrays.copyOf(open, size * 2);
+        }
+        open[size++] = node;
+    }
+
+    @Override
+    public void add(CodeNode node) {
+        open[size - 1].addChild(node);
+    }
+
+    @Override
+    public void exit(CodeNode node) {
+        pop();
+    }
+
+    private CodeNode pop() {
+        if (size == 0) throw new IllegalStateException("No node is open");
+        CodeNode node = open[--size];
+        open[size] = null;
+        return node;
+    }
+}
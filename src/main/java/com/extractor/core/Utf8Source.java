@@ -0,0 +1,67 @@
+package com.extractor.core;
+
+import com.extractor.model.CodeTree;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Source text kept as UTF-8 bytes, one byte per char of a compact Latin-1 String.
+ * <p>
+ * Every delimiter and keyword the parsers look for is ASCII, and a multi-byte UTF-8
+ * sequence never contains an ASCII byte. The parsers treat every non-ASCII char alike, as
+ * part of a word and never as whitespace or a line break, so they run on this string
+ * unchanged and find the same structure as in the decoded text. The offsets they record are
+ * byte offsets.
+ * Building it copies the bytes once and skips the UTF-16 decoding pass. Trees parsed from it
+ * are marked with {@link CodeTree#withUtf8Source()} and decode names and content only when
+ * they are read.
+ */
+public final class Utf8Source {
+    private final String bytes;
+    private final boolean ascii;
+
+    private Utf8Source(String bytes, boolean ascii) {
+        this.bytes = bytes;
+        this.ascii = ascii;
+    }
+
+    public static Utf8Source of(byte[] utf8) {
+        return of(utf8, 0, utf8.length);
+    }
+
+    public static Utf8Source of(byte[] utf8, int offset, int length) {
+        boolean ascii = true;
+        for (int i = offset, end = offset + length; i < end && ascii; i++) {
+            ascii = utf8[i] >= 0;
+        }
+        return new Utf8Source(new String(utf8, offset, length, StandardCharsets.ISO_8859_1), ascii);
+    }
+
+    static Utf8Source ofByteString(String bytes, boolean ascii) {
+        return new Utf8Source(bytes, ascii);
+    }
+
+    /**
+     * Returns the bytes as a string with one char per byte. This is the text the parsers
+     * see.
+     */
+    public String bytes() {
+        return bytes;
+    }
+
+    /**
+     * Whether every byte is ASCII, in which case byte and char offsets coincide and nothing
+     * needs decoding.
+     */
+    public boolean isAscii() {
+        return ascii;
+    }
+
+    public int length() {
+        return bytes.length();
+    }
+
+    public String decode() {
+        return ascii ? bytes : CodeTree.decodeUtf8(bytes, 0, bytes.length());
+    }
+}
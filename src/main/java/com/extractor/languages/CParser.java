@@ -1,7 +1,10 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
@@ -9,7 +12,6 @@ import com.extractor.model.NodeType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -17,7 +19,8 @@ public class CParser extends BaseParser {
 
     protected final List<ParserRule> cRules;
     // Improved pattern to handle newlines, C++ qualified names, and various return types/modifiers
-    private static final Pattern METHOD_PATTERN = Pattern.compile("(?s)\\b(?:inline|static|virtual|void|int|double|float|char|auto|long|short|signed|unsigned|bool|[a-zA-Z_][a-zA-Z0-9_]*)\\s+([a-zA-Z_][a-zA-Z0-9_:]*)\\s*\\(");
+    private static final Pattern METHOD_PATTERN = Pattern.compile("(?s)" + WORD_START + "(?:inline|static|virtual|void|int|double|float|char|auto|long|short|signed|unsigned|bool|[a-zA-Z_][a-zA-Z0-9_]*)\\s+([a-zA-Z_][a-zA-Z0-9_:]*)\\s*\\(");
+    protected static final Pattern TYPE_DECLARATION_PATTERN = Pattern.compile("(?s).*" + WORD_START + "(class|struct|namespace)\\s+[a-zA-Z_].*");
 
     public CParser() {
         this("c");
@@ -30,12 +33,12 @@ public class CParser extends BaseParser {
 
     protected List<ParserRule> createRules() {
         List<ParserRule> rules = new ArrayList<>();
-        rules.add((ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "struct"))
+        rules.add((ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "struct"))
                 .map(name -> new CodeNode(NodeType.STRUCT, name, pos)));
-        rules.add((ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "enum"))
+        rules.add((ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "enum"))
                 .map(name -> new CodeNode(NodeType.ENUM, name, pos)));
         rules.add((ctx, pos) -> {
-            String clean = stripComments(ctx).trim();
+            String clean = ctx.trim();
             if (isMethodDeclaration(clean)) {
                 String name = extractMethodName(clean);
                 return Optional.of(new CodeNode(NodeType.FUNCTION, name, pos));
@@ -47,13 +50,13 @@ public class CParser extends BaseParser {
 
     @Override
     protected boolean isMethodDeclaration(String text) {
-        String clean = stripComments(text).trim();
+        String clean = text.trim();
         if (clean.isEmpty()) return false;
         // Avoid matching class/struct/namespace declarations as methods
         if (clean.contains("class ") || clean.contains("struct ") || clean.contains("namespace ")) {
             // But only if they are not just part of a larger name (though unlikely)
             // A better check would be seeing if 'class' is at the start or after a boundary
-            if (clean.matches("(?s).*\\b(class|struct|namespace)\\s+[a-zA-Z_].*")) {
+            if (TYPE_DECLARATION_PATTERN.matcher(clean).matches()) {
                 return false;
             }
         }
@@ -72,13 +75,15 @@ public class CParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
 
@@ -88,13 +93,12 @@ public class CParser extends BaseParser {
             if (c == '"' || c == '\'') {
                 skipString(scanner);
             } else if (c == '/' && scanner.peekNext() == '/') {
-                scopeStack.peek().addChild(extractLineComment(scanner));
+                addLineComment(scanner, scopeStack);
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
             } else if (c == '{') {
-                String lookback = source.substring(lastPos, scanner.getPos());
-                CodeNode node = applyRules(cRules, lookback, lastPos)
-                        .orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
+                String lookback = scanner.codeText(lastPos, scanner.getPos());
+                CodeNode node = identifyBlock(cRules, lookback, lastPos, scopeStack);
                 
                 // Adjust NodeType based on scope
                 if (node.getType() == NodeType.FUNCTION) {
@@ -103,15 +107,16 @@ public class CParser extends BaseParser {
                     }
                 }
                 
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
-                scanner.advance();
+                if (skipBody(scanner, node, scopeStack, "\"'")) {
+                    scopeStack.add(node);
+                } else {
+                    scopeStack.open(node);
+                    scanner.advance();
+                }
                 lastPos = scanner.getPos();
             } else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
@@ -123,13 +128,10 @@ public class CParser extends BaseParser {
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 
-    private boolean isInsideClass(Stack<CodeNode> scopeStack) {
+    private boolean isInsideClass(ScopeStack scopeStack) {
         for (int i = scopeStack.size() - 1; i >= 0; i--) {
             NodeType type = scopeStack.get(i).getType();
             if (type == NodeType.CLASS || type == NodeType.STRUCT) {
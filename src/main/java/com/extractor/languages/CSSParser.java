@@ -1,26 +1,33 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
-import java.util.Stack;
 
 public class CSSParser extends BaseParser {
 
+    private static final SourceScanner.CharSet STRUCTURAL_CHARS = SourceScanner.CharSet.of("{}/;");
+
     public CSSParser() {
         super("css");
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
+        scanner.indexStructural(STRUCTURAL_CHARS);
 
         int lastPos = 0;
 
@@ -30,38 +37,33 @@ public class CSSParser extends BaseParser {
             if (c == '{') {
                 String selector = source.substring(lastPos, scanner.getPos()).trim();
                 CodeNode node = new CodeNode(NodeType.SELECTOR, selector, lastPos);
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
+                scopeStack.open(node);
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
                 lastPos = scanner.getPos();
             } else if (c == ';') {
                 String property = source.substring(lastPos, scanner.getPos()).trim();
                 if (!property.isEmpty()) {
                     CodeNode node = new CodeNode(NodeType.PROPERTY, property, lastPos, scanner.getPos());
-                    node.setContent(property);
-                    scopeStack.peek().addChild(node);
+                    setTrimmedContent(node, source, lastPos, scanner.getPos());
+                    scopeStack.add(node);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else {
                 scanner.advance();
+                scanner.skipToAny(STRUCTURAL_CHARS);
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 }
@@ -1,45 +1,52 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
 
 public class CSharpParser extends BaseParser {
 
+    private static final SourceScanner.CharSet STRUCTURAL_CHARS = SourceScanner.CharSet.of("\"'@/{};");
+
     private final List<ParserRule> csharpRules;
 
     public CSharpParser() {
         super("csharp");
         this.csharpRules = List.of(
-            (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "namespace"))
+            (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "namespace"))
                     .map(name -> new CodeNode(NodeType.NAMESPACE, name, pos)),
-            (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "class"))
+            (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "class"))
                     .map(name -> new CodeNode(NodeType.CLASS, name, pos)),
-            (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "interface"))
+            (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "interface"))
                     .map(name -> new CodeNode(NodeType.INTERFACE, name, pos)),
-            (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "struct"))
+            (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "struct"))
                     .map(name -> new CodeNode(NodeType.STRUCT, name, pos)),
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 return isMethodDeclaration(clean) ? Optional.of(new CodeNode(NodeType.METHOD, extractMethodName(clean), pos)) : Optional.empty();
             }
         );
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
+        scanner.indexStructural(STRUCTURAL_CHARS);
 
         int lastPos = 0;
 
@@ -54,20 +61,20 @@ public class CSharpParser extends BaseParser {
             } else if (c == '/' && scanner.peekNext() == '/') {
                 extractLineComment(scanner);
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
             } else if (c == '{') {
-                String lookback = source.substring(lastPos, scanner.getPos());
-                CodeNode node = applyRules(csharpRules, lookback, lastPos)
-                        .orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
-                scanner.advance();
+                String lookback = scanner.codeText(lastPos, scanner.getPos());
+                CodeNode node = identifyBlock(csharpRules, lookback, lastPos, scopeStack);
+                if (skipBody(scanner, node, scopeStack, "\"'")) {
+                    scopeStack.add(node);
+                } else {
+                    scopeStack.open(node);
+                    scanner.advance();
+                }
                 lastPos = scanner.getPos();
             } else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
@@ -76,12 +83,10 @@ public class CSharpParser extends BaseParser {
                 lastPos = scanner.getPos();
             } else {
                 scanner.advance();
+                scanner.skipToAny(STRUCTURAL_CHARS);
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 }
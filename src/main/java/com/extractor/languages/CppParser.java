@@ -19,10 +19,10 @@ public class CppParser extends CParser {
         List<ParserRule> rules = new ArrayList<>();
         
         // C++ specific rules with high priority
-        rules.add((ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "namespace"))
+        rules.add((ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "namespace"))
                 .map(name -> new CodeNode(NodeType.NAMESPACE, name, pos)));
         
-        rules.add((ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "class"))
+        rules.add((ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "class"))
                 .map(name -> new CodeNode(NodeType.CLASS, name, pos)));
         
         // Add rules from CParser (struct, enum, method)
@@ -34,9 +34,9 @@ public class CppParser extends CParser {
     @Override
     protected boolean isMethodDeclaration(String text) {
         // C++ methods can have more complex markers
-        String clean = stripComments(text).trim();
+        String clean = text.trim();
         if (clean.contains("class ") || clean.contains("struct ") || clean.contains("namespace ")) {
-            if (clean.matches("(?s).*\\b(class|struct|namespace)\\s+[a-zA-Z_].*")) {
+            if (TYPE_DECLARATION_PATTERN.matcher(clean).matches()) {
                 return false;
             }
         }
@@ -1,11 +1,13 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -14,20 +16,23 @@ import java.util.regex.Pattern;
  */
 public class DartParser extends BaseParser {
 
-    private static final Pattern METHOD_NAME_PATTERN = Pattern.compile("\\b([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(");
+    private static final Pattern METHOD_NAME_PATTERN = Pattern.compile(WORD_START + "([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(");
+    private static final Pattern CONTROL_STATEMENT_PATTERN = Pattern.compile("(?s)^\\s*(?:if|for|while|switch|catch|new|return|try|finally)" + WORD_END + ".*");
 
     public DartParser() {
         super("dart");
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
 
@@ -36,10 +41,10 @@ public class DartParser extends BaseParser {
 
             // Handle comments
             if (c == '/' && scanner.peekNext() == '/') {
-                scopeStack.peek().addChild(extractLineComment(scanner));
+                addLineComment(scanner, scopeStack);
                 lastPos = scanner.getPos();
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
                 lastPos = scanner.getPos();
             } 
             // Handle strings to avoid misinterpreting content
@@ -48,31 +53,28 @@ public class DartParser extends BaseParser {
             } 
             // Handle scope start
             else if (c == '{') {
-                String lookback = source.substring(lastPos, scanner.getPos());
-                CodeNode node = identifyDartNode(lookback, lastPos);
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
+                String lookback = scanner.codeText(lastPos, scanner.getPos());
+                CodeNode node = identifyDartNode(lookback, lastPos, scopeStack);
+                scopeStack.open(node);
                 scanner.advance();
                 lastPos = scanner.getPos();
             } 
             // Handle scope end
             else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } 
             // Handle statements
             else if (c == ';') {
-                String statement = source.substring(lastPos, scanner.getPos());
+                String statement = scanner.codeText(lastPos, scanner.getPos());
                 CodeNode node = identifyDartStatement(statement, lastPos);
                 if (node != null) {
                     node.setEndOffset(scanner.getPos());
-                    node.setContent(statement.trim());
-                    scopeStack.peek().addChild(node);
+                    setTrimmedContent(node, source, lastPos, scanner.getPos());
+                    scopeStack.add(node);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
@@ -83,14 +85,11 @@ public class DartParser extends BaseParser {
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 
-    private CodeNode identifyDartNode(String lookback, int pos) {
-        String clean = stripComments(lookback).trim();
+    private CodeNode identifyDartNode(String lookback, int pos, ScopeStack scopes) {
+        String clean = lookback.trim();
         
         if (clean.contains("class ")) {
             return new CodeNode(NodeType.CLASS, extractIdentifierAfterKeyword(clean, "class"), pos);
@@ -104,11 +103,11 @@ public class DartParser extends BaseParser {
             return new CodeNode(NodeType.FUNCTION, extractMethodName(clean), pos);
         }
         
-        return new CodeNode(NodeType.BLOCK, "block", pos);
+        return scopes.block("block", pos);
     }
 
     private CodeNode identifyDartStatement(String statement, int pos) {
-        String clean = stripComments(statement).trim();
+        String clean = statement.trim();
         if (clean.startsWith("import ")) {
             return new CodeNode(NodeType.MODULE, extractIdentifierAfterKeyword(clean, "import"), pos);
         } else if (clean.startsWith("library ")) {
@@ -123,7 +122,7 @@ public class DartParser extends BaseParser {
 
     @Override
     protected boolean isMethodDeclaration(String text) {
-        String clean = stripComments(text).trim();
+        String clean = text.trim();
         if (clean.isEmpty()) return false;
 
         // Exclude class-level keywords that might be in the lookback
@@ -132,7 +131,7 @@ public class DartParser extends BaseParser {
         }
 
         // Avoid control structures
-        if (clean.matches("(?s)^\\s*(?:if|for|while|switch|catch|new|return|try|finally)\\b.*")) {
+        if (CONTROL_STATEMENT_PATTERN.matcher(clean).matches()) {
             return false;
         }
 
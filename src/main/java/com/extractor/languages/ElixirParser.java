@@ -1,12 +1,14 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
 import java.util.Optional;
-import java.util.Stack;
 
 public class ElixirParser extends BaseParser {
 
@@ -15,13 +17,15 @@ public class ElixirParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
 
@@ -33,19 +37,15 @@ public class ElixirParser extends BaseParser {
             } else if (c == '#') {
                 extractLineComment(scanner);
             } else {
-                String lookahead3 = scanner.peek(3);
-                if (lookahead3.equals("do ") || lookahead3.equals("do\n")) {
-                    String lookback = scanner.substring(lastPos, scanner.getPos());
-                    CodeNode node = identifyElixirNode(lookback, lastPos);
-                    scopeStack.peek().addChild(node);
-                    scopeStack.push(node);
+                if (scanner.lookingAt("do ") || scanner.lookingAt("do\n")) {
+                    String lookback = scanner.codeText(lastPos, scanner.getPos());
+                    CodeNode node = identifyElixirNode(lookback, lastPos, scopeStack);
+                    scopeStack.open(node);
                     scanner.advance(2);
                     lastPos = scanner.getPos();
-                } else if (scanner.peek(4).equals("end ") || scanner.peek(4).equals("end\n") || (scanner.peek(3).equals("end") && (scanner.getPos() + 3 == source.length()))) {
+                } else if (scanner.lookingAt("end ") || scanner.lookingAt("end\n") || (scanner.lookingAt("end") && (scanner.getPos() + 3 == source.length()))) {
                     if (scopeStack.size() > 1) {
-                        CodeNode closed = scopeStack.pop();
-                        closed.setEndOffset(scanner.getPos() + 3);
-                        closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                        scopeStack.close(scanner.getPos() + 3);
                     }
                     scanner.advance(3);
                     lastPos = scanner.getPos();
@@ -55,13 +55,17 @@ public class ElixirParser extends BaseParser {
             }
         }
 
+        // Blocks missing their "end" stay open-ended, as they always have
+        while (scopeStack.size() > 1) {
+            scopeStack.pop();
+        }
         root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.setContent(root, 0, source.length());
+        scopeStack.complete();
     }
 
-    private CodeNode identifyElixirNode(String lookback, int pos) {
-        lookback = stripComments(lookback).trim();
+    private CodeNode identifyElixirNode(String lookback, int pos, ScopeStack scopes) {
+        lookback = lookback.trim();
         if (lookback.contains("defmodule")) {
             return new CodeNode(NodeType.MODULE, extractIdentifierAfterKeyword(lookback, "defmodule"), pos);
         }
@@ -71,6 +75,6 @@ public class ElixirParser extends BaseParser {
         if (lookback.contains("def")) {
             return new CodeNode(NodeType.FUNCTION, extractIdentifierAfterKeyword(lookback, "def"), pos);
         }
-        return new CodeNode(NodeType.BLOCK, "do-block", pos);
+        return scopes.block("do-block", pos);
     }
 }
@@ -1,6 +1,9 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
@@ -40,15 +43,17 @@ public class GDScriptParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         String[] lines = source.split("\\r?\\n");
-        Stack<CodeNode> scopeStack = new Stack<>();
         Stack<Integer> indentStack = new Stack<>();
         
-        scopeStack.push(root);
         indentStack.push(-1);
 
         int currentOffset = 0;
@@ -65,30 +70,21 @@ public class GDScriptParser extends BaseParser {
             }
 
             while (indentStack.peek() >= indent && scopeStack.size() > 1) {
-                CodeNode closed = scopeStack.pop();
+                scopeStack.close(lineStartOffset);
                 indentStack.pop();
-                closed.setEndOffset(lineStartOffset);
-                closed.setContent(source.substring(closed.getStartOffset(), lineStartOffset));
             }
 
             CodeNode node = identifyGDScriptNode(line, lineStartOffset);
             if (node != null) {
-                scopeStack.peek().addChild(node);
                 if (line.trim().endsWith(":")) {
-                    scopeStack.push(node);
+                    scopeStack.open(node);
                     indentStack.push(indent);
+                } else {
+                    scopeStack.add(node);
                 }
             }
         }
 
-        while (scopeStack.size() > 1) {
-            CodeNode closed = scopeStack.pop();
-            closed.setEndOffset(source.length());
-            closed.setContent(source.substring(closed.getStartOffset(), source.length()));
-        }
-
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 }
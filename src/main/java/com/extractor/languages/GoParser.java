@@ -1,7 +1,10 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
@@ -9,24 +12,31 @@ import com.extractor.model.NodeType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class GoParser extends BaseParser {
 
+    private static final SourceScanner.CharSet STRUCTURAL_CHARS = SourceScanner.CharSet.of("{}\"`/\n");
+
+    private static final Pattern RECEIVER_PATTERN = Pattern.compile("(?d).*func\\s+\\([^)]+\\).*");
+    private static final Pattern FUNCTION_NAME_PATTERN = Pattern.compile("func\\s+(?:\\([^)]+\\)\\s*)?([a-zA-Z0-9_]+)");
+
     public GoParser() {
         super("go");
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
+        scanner.indexStructural(STRUCTURAL_CHARS);
 
         List<ParserRule> rules = createRules();
 
@@ -36,47 +46,46 @@ public class GoParser extends BaseParser {
 
             if (c == '{') {
                 String lookback = source.substring(lastPos, scanner.getPos()).trim();
-                CodeNode newNode = applyRules(rules, lookback, lastPos).orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
-                scopeStack.peek().addChild(newNode);
-                scopeStack.push(newNode);
-                scanner.advance();
+                CodeNode newNode = identifyBlock(rules, lookback, lastPos, scopeStack);
+                if (skipBody(scanner, newNode, scopeStack, "\"'`")) {
+                    scopeStack.add(newNode);
+                } else {
+                    scopeStack.open(newNode);
+                    scanner.advance();
+                }
                 lastPos = scanner.getPos();
             } else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else if (c == '"' || c == '`') {
                 skipString(scanner);
             } else if (c == '/' && scanner.peekNext() == '/') {
-                scopeStack.peek().addChild(extractLineComment(scanner));
+                addLineComment(scanner, scopeStack);
                 lastPos = scanner.getPos();
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
                 lastPos = scanner.getPos();
             } else if (c == '\n') {
                 String line = source.substring(lastPos, scanner.getPos()).trim();
                 if (!line.isEmpty()) {
                     applyRules(rules, line, lastPos).ifPresent(node -> {
                         node.setEndOffset(scanner.getPos());
-                        node.setContent(line);
-                        scopeStack.peek().addChild(node);
+                        setTrimmedContent(node, source, node.getStartOffset(), scanner.getPos());
+                        scopeStack.add(node);
                     });
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else {
                 scanner.advance();
+                scanner.skipToAny(STRUCTURAL_CHARS);
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 
     private List<ParserRule> createRules() {
@@ -107,7 +116,7 @@ public class GoParser extends BaseParser {
         // Functions and Methods
         rules.add((text, pos) -> {
             if (text.contains("func ")) {
-                NodeType type = text.matches(".*func\\s+\\([^)]+\\).*") ? NodeType.METHOD : NodeType.FUNCTION;
+                NodeType type = RECEIVER_PATTERN.matcher(text).matches() ? NodeType.METHOD : NodeType.FUNCTION;
                 String name = extractGoFunctionName(text);
                 if (name != null) {
                     return Optional.of(new CodeNode(type, name, pos));
@@ -143,8 +152,7 @@ public class GoParser extends BaseParser {
 
     private String extractGoFunctionName(String text) {
         // Handle both func Name() and func (r Receiver) Name()
-        Pattern pattern = Pattern.compile("func\\s+(?:\\([^)]+\\)\\s*)?([a-zA-Z0-9_]+)");
-        Matcher matcher = pattern.matcher(text);
+        Matcher matcher = FUNCTION_NAME_PATTERN.matcher(text);
         if (matcher.find()) {
             return matcher.group(1);
         }
@@ -153,8 +161,7 @@ public class GoParser extends BaseParser {
 
     private String extractGoTypeName(String text, String typeKeyword) {
         // Matches "type Name struct" or "Name struct" (inside a type block)
-        Pattern pattern = Pattern.compile("(?:type\\s+)?([a-zA-Z0-9_]+)\\s+" + typeKeyword);
-        Matcher matcher = pattern.matcher(text);
+        Matcher matcher = cachedPattern("(?:type\\s+)?([a-zA-Z0-9_]+)\\s+" + typeKeyword).matcher(text);
         if (matcher.find()) {
             return matcher.group(1);
         }
@@ -1,11 +1,16 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.List;
+
 
 public class HTMLParser extends BaseParser {
 
@@ -14,13 +19,15 @@ public class HTMLParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         while (!scanner.isAtEnd()) {
             char c = scanner.peek();
@@ -28,7 +35,7 @@ public class HTMLParser extends BaseParser {
             if (c == '<') {
                 if (scanner.peekNext() == '!') {
                     if (scanner.match("<!--")) {
-                        scopeStack.peek().addChild(extractBlockComment(scanner, "-->"));
+                        addBlockComment(scanner, scopeStack, "-->");
                     } else {
                         // Skip DocType or other <! tags
                         while (!scanner.isAtEnd() && scanner.peek() != '>') {
@@ -49,16 +56,9 @@ public class HTMLParser extends BaseParser {
                     }
                     
                     if (scopeStack.size() > 1 && scopeStack.peek().getName().equalsIgnoreCase(tagName)) {
-                        CodeNode closed = scopeStack.pop();
-                        closed.setEndOffset(scanner.getPos());
-                        closed.setContent(source.substring(closed.getStartOffset(), closed.getEndOffset()));
-                        
-                        // Handle embedded CSS or JS when the tag is closed
-                        if ("style".equalsIgnoreCase(tagName)) {
-                            parseEmbeddedContent(closed, new CSSParser());
-                        } else if ("script".equalsIgnoreCase(tagName)) {
-                            parseEmbeddedContent(closed, new JSParser());
-                        }
+                        // Handle embedded CSS or JS while the tag is still open, so its nodes go under it
+                        parseEmbeddedContent(scopeStack, source, scanner.getPos());
+                        scopeStack.close(scanner.getPos());
                     }
                 } else {
                     // Open tag
@@ -86,11 +86,10 @@ public class HTMLParser extends BaseParser {
 
                     if (selfClosing || isVoidElement(tagName)) {
                         node.setEndOffset(scanner.getPos());
-                        node.setContent(source.substring(node.getStartOffset(), node.getEndOffset()));
-                        scopeStack.peek().addChild(node);
+                        node.setContent(source, node.getStartOffset(), node.getEndOffset());
+                        scopeStack.add(node);
                     } else {
-                        scopeStack.peek().addChild(node);
-                        scopeStack.push(node);
+                        scopeStack.open(node);
                     }
                 }
             } else {
@@ -98,31 +97,52 @@ public class HTMLParser extends BaseParser {
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        closeOpenTags(scopeStack, source, source.length());
+        scopeStack.finish(source.length());
     }
 
-    private void parseEmbeddedContent(CodeNode node, BaseParser parser) {
-        String content = node.getContent();
-        if (content == null) return;
+    private void parseEmbeddedContent(ScopeStack scopeStack, String source, int end) {
+        CodeNode node = scopeStack.peek();
+        BaseParser parser;
+        if ("style".equalsIgnoreCase(node.getName())) {
+            parser = new CSSParser();
+        } else if ("script".equalsIgnoreCase(node.getName())) {
+            parser = new JSParser();
+        } else {
+            return;
+        }
+        String content = source.substring(node.getStartOffset(), end);
         
         int openTagEnd = content.indexOf('>') + 1;
         int closeTagStart = content.lastIndexOf('<');
         
         if (openTagEnd > 0 && closeTagStart > openTagEnd) {
             String embeddedCode = content.substring(openTagEnd, closeTagStart);
-            CodeNode embeddedRoot = parser.parse(embeddedCode);
+            CodeNode embeddedRoot = parser.parse(embeddedCode, scopeStack.getOptions());
             
             int offsetAdjustment = node.getStartOffset() + openTagEnd;
             for (CodeNode child : embeddedRoot.getChildren()) {
                 adjustOffsets(child, offsetAdjustment);
-                node.addChild(child);
+                graft(scopeStack, child);
             }
         }
     }
 
+    // Re-adds an embedded subtree through the stack, so the depth limit counts from the tag.
+    private void graft(ScopeStack scopeStack, CodeNode node) {
+        if (node.getChildren().isEmpty()) {
+            scopeStack.add(node);
+            return;
+        }
+        List<CodeNode> children = new ArrayList<>(node.getChildren());
+        node.getChildren().clear();
+        scopeStack.open(node);
+        for (CodeNode child : children) {
+            graft(scopeStack, child);
+        }
+        scopeStack.pop();
+    }
+
     private void adjustOffsets(CodeNode node, int adjustment) {
         node.setStartOffset(node.getStartOffset() + adjustment);
         node.setEndOffset(node.getEndOffset() + adjustment);
@@ -133,7 +153,7 @@ public class HTMLParser extends BaseParser {
 
     private String consumeIdentifier(SourceScanner scanner) {
         StringBuilder sb = new StringBuilder();
-        while (!scanner.isAtEnd() && (Character.isLetterOrDigit(scanner.peek()) || scanner.peek() == '-' || scanner.peek() == '_' || scanner.peek() == ':')) {
+        while (!scanner.isAtEnd() && (isWordChar(scanner.peek()) || scanner.peek() == '-' || scanner.peek() == ':')) {
             sb.append(scanner.advance());
         }
         return sb.toString();
@@ -146,19 +166,11 @@ public class HTMLParser extends BaseParser {
                "track".equalsIgnoreCase(tag) || "wbr".equalsIgnoreCase(tag);
     }
     
-    @Override
-    protected void finalizeScope(Stack<CodeNode> scopeStack, int endPos, String source) {
+    private void closeOpenTags(ScopeStack scopeStack, String source, int endPos) {
         while (scopeStack.size() > 1) {
-            CodeNode node = scopeStack.pop();
-            node.setEndOffset(endPos);
-            node.setContent(source.substring(node.getStartOffset(), endPos));
-            
             // Still try to parse embedded content if the file ends before the closing tag
-            if ("style".equalsIgnoreCase(node.getName())) {
-                parseEmbeddedContent(node, new CSSParser());
-            } else if ("script".equalsIgnoreCase(node.getName())) {
-                parseEmbeddedContent(node, new JSParser());
-            }
+            parseEmbeddedContent(scopeStack, source, endPos);
+            scopeStack.close(endPos);
         }
     }
 }
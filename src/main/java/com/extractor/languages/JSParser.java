@@ -1,7 +1,10 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
@@ -9,7 +12,6 @@ import com.extractor.model.NodeType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,6 +20,11 @@ import java.util.regex.Pattern;
  */
 public class JSParser extends BaseParser {
 
+    private static final Pattern FUNCTION_PATTERN = Pattern.compile("(?:async\\s+)?function\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)");
+    private static final Pattern ARROW_FUNCTION_PATTERN = Pattern.compile("(?:const|let|var)\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*=\\s*(?:async\\s*)?\\(");
+    private static final Pattern METHOD_DECLARATION_PATTERN = Pattern.compile("(?s).*(?:async\\s+|static\\s+|get\\s+|set\\s+)?(?:[a-zA-Z_$][a-zA-Z0-9_$]*)\\s*\\(.*\\).*");
+    private static final Pattern METHOD_NAME_PATTERN = Pattern.compile("(?:async\\s+|static\\s+|get\\s+|set\\s+)?([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*\\(");
+
     private final List<ParserRule> blockRules;
     private final List<ParserRule> statementRules;
 
@@ -31,14 +38,14 @@ public class JSParser extends BaseParser {
     private void initializeRules() {
         // Classes - Handle class declarations including exports
         blockRules.add((ctx, pos) -> {
-            String clean = stripComments(ctx).trim();
+            String clean = ctx.trim();
             String name = extractIdentifierAfterKeyword(clean, "class");
             return name != null ? Optional.of(new CodeNode(NodeType.CLASS, name, pos)) : Optional.empty();
         });
 
         // Control Structures - Avoid misidentifying them as functions
         blockRules.add((ctx, pos) -> {
-            String clean = stripComments(ctx).trim();
+            String clean = ctx.trim();
             for (String keyword : List.of("if", "for", "while", "switch", "try", "catch")) {
                 if (clean.startsWith(keyword)) {
                     return Optional.of(new CodeNode(NodeType.BLOCK, keyword, pos));
@@ -49,24 +56,22 @@ public class JSParser extends BaseParser {
 
         // Functions and Methods
         blockRules.add((ctx, pos) -> {
-            String clean = stripComments(ctx).trim();
+            String clean = ctx.trim();
             
             // Function declaration: function name(...) or async function name(...)
-            Pattern p = Pattern.compile("(?:async\\s+)?function\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)");
-            Matcher m = p.matcher(clean);
+            Matcher m = FUNCTION_PATTERN.matcher(clean);
             if (m.find()) {
                 return Optional.of(new CodeNode(NodeType.FUNCTION, m.group(1), pos));
             }
 
             // Arrow function assigned to variable: const name = (...) =>
-            p = Pattern.compile("(?:const|let|var)\\s+([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*=\\s*(?:async\\s*)?\\(");
-            m = p.matcher(clean);
+            m = ARROW_FUNCTION_PATTERN.matcher(clean);
             if (m.find() && clean.contains("=>")) {
                 return Optional.of(new CodeNode(NodeType.FUNCTION, m.group(1), pos));
             }
 
             // Method in class: name(...) { - Support multi-line declarations with (?s)
-            boolean isMethod = clean.matches("(?s).*(?:async\\s+|static\\s+|get\\s+|set\\s+)?(?:[a-zA-Z_$][a-zA-Z0-9_$]*)\\s*\\(.*\\).*");
+            boolean isMethod = METHOD_DECLARATION_PATTERN.matcher(clean).matches();
             if (isMethod) {
                 String name = extractMethodName(clean);
                 if (name != null && !isControlKeyword(name)) {
@@ -81,8 +86,7 @@ public class JSParser extends BaseParser {
     @Override
     protected String extractMethodName(String clean) {
         // Improved method name extraction to handle keywords and spacing
-        Pattern p = Pattern.compile("(?:async\\s+|static\\s+|get\\s+|set\\s+)?([a-zA-Z_$][a-zA-Z0-9_$]*)\\s*\\(");
-        Matcher m = p.matcher(clean);
+        Matcher m = METHOD_NAME_PATTERN.matcher(clean);
         // Find the LAST match in case there are multiple words that look like method calls in the context
         String lastMatch = null;
         while (m.find()) {
@@ -100,43 +104,45 @@ public class JSParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
-        if (source == null || source.isEmpty()) return new CodeNode(NodeType.ROOT, "root", 0);
-        
-        SourceScanner scanner = new SourceScanner(source);
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
+
+        SourceScanner scanner = new SourceScanner(source);
 
         int lastPos = 0;
         while (!scanner.isAtEnd()) {
             char c = scanner.peek();
 
             if (c == '/' && scanner.peekNext() == '/') {
-                scopeStack.peek().addChild(extractLineComment(scanner));
+                addLineComment(scanner, scopeStack);
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
             } else if (c == '"' || c == '\'' || c == '`') {
                 skipString(scanner);
             } else if (c == '{') {
-                String lookback = source.substring(lastPos, scanner.getPos());
-                CodeNode node = applyRules(blockRules, lookback, lastPos)
-                        .orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
+                String lookback = scanner.codeText(lastPos, scanner.getPos());
+                CodeNode node = identifyBlock(blockRules, lookback, lastPos, scopeStack);
                 
                 // Adjust node type if it is a method within a class
                 if (scopeStack.peek().getType() == NodeType.CLASS && node.getType() == NodeType.FUNCTION) {
                     node.setType(NodeType.METHOD);
                 }
 
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
-                scanner.advance();
+                if (skipBody(scanner, node, scopeStack, "\"'`")) {
+                    scopeStack.add(node);
+                } else {
+                    scopeStack.open(node);
+                    scanner.advance();
+                }
                 lastPos = scanner.getPos();
             } else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), closed.getEndOffset()));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
@@ -149,16 +155,13 @@ public class JSParser extends BaseParser {
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 
     @Override
     protected boolean isMethodDeclaration(String text) {
         // Not directly used in the current parse loop but good for consistency
         String clean = stripComments(text).trim();
-        return clean.matches("(?s).*(?:async\\s+|static\\s+|get\\s+|set\\s+)?(?:[a-zA-Z_$][a-zA-Z0-9_$]*)\\s*\\(.*\\).*");
+        return METHOD_DECLARATION_PATTERN.matcher(clean).matches();
     }
 }
@@ -1,14 +1,16 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,11 +20,15 @@ import java.util.regex.Pattern;
  */
 public class JavaParser extends BaseParser {
 
+    // Every character the parse loop below reacts to; all others are skipped in bulk.
+    private static final SourceScanner.CharSet STRUCTURAL_CHARS = SourceScanner.CharSet.of("/\"'@{};");
+
     private final List<ParserRule> blockRules;
     private final List<ParserRule> statementRules;
 
-    private static final Pattern METHOD_NAME_PATTERN = Pattern.compile("\\b([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(");
+    private static final Pattern METHOD_NAME_PATTERN = Pattern.compile(WORD_START + "([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(");
     private static final Pattern ANNOTATION_PATTERN = Pattern.compile("@([a-zA-Z_][a-zA-Z0-9_.]*)(\\s*\\([^\\)]*\\))?");
+    private static final Pattern CONTROL_STATEMENT_PATTERN = Pattern.compile("(?s)^\\s*(?:if|for|while|switch|catch|synchronized|static|new|return)" + WORD_END + ".*");
     private static final Pattern ANNOTATION_DEF_PATTERN = Pattern.compile("@interface\\s+([a-zA-Z0-9_$.]+)");
 
     public JavaParser() {
@@ -31,22 +37,22 @@ public class JavaParser extends BaseParser {
         // Rules for identifying the type of a block starting with '{'
         this.blockRules = List.of(
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 String name = extractIdentifierAfterKeyword(clean, "class");
                 return name != null ? Optional.of(new CodeNode(NodeType.CLASS, name, pos)) : Optional.empty();
             },
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 String name = extractIdentifierAfterKeyword(clean, "interface");
                 return name != null ? Optional.of(new CodeNode(NodeType.INTERFACE, name, pos)) : Optional.empty();
             },
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 String name = extractIdentifierAfterKeyword(clean, "enum");
                 return name != null ? Optional.of(new CodeNode(NodeType.ENUM, name, pos)) : Optional.empty();
             },
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 if (clean.contains("@interface")) {
                     Matcher m = ANNOTATION_DEF_PATTERN.matcher(clean);
                     if (m.find()) {
@@ -64,14 +70,14 @@ public class JavaParser extends BaseParser {
         // Rules for identifying statements ending with ';'
         this.statementRules = List.of(
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 if (clean.startsWith("package ")) {
                     return Optional.of(new CodeNode(NodeType.NAMESPACE, extractIdentifierAfterKeyword(clean, "package"), pos));
                 }
                 return Optional.empty();
             },
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 if (clean.startsWith("import ")) {
                     return Optional.of(new CodeNode(NodeType.IMPORT, extractIdentifierAfterKeyword(clean, "import"), pos));
                 }
@@ -82,7 +88,7 @@ public class JavaParser extends BaseParser {
 
     @Override
     protected boolean isMethodDeclaration(String text) {
-        String clean = stripComments(text).trim();
+        String clean = text.trim();
         if (clean.isEmpty()) return false;
 
         // Exclude class-level keywords
@@ -91,7 +97,7 @@ public class JavaParser extends BaseParser {
         }
         
         // Avoid control structures, initializers, and anonymous class creation
-        if (clean.matches("(?s)^\\s*(?:if|for|while|switch|catch|synchronized|static|new|return)\\b.*")) {
+        if (CONTROL_STATEMENT_PATTERN.matcher(clean).matches()) {
             return false;
         }
         
@@ -130,13 +136,16 @@ public class JavaParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
+        scanner.indexStructural(STRUCTURAL_CHARS);
 
         int lastPos = 0;
 
@@ -145,9 +154,9 @@ public class JavaParser extends BaseParser {
 
             // Handle comments
             if (c == '/' && scanner.peekNext() == '/') {
-                scopeStack.peek().addChild(extractLineComment(scanner));
+                addLineComment(scanner, scopeStack);
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
             } 
             // Handle strings to avoid misinterpreting content
             else if (c == '"' || c == '\'') {
@@ -155,14 +164,13 @@ public class JavaParser extends BaseParser {
             } 
             // Handle annotations
             else if (c == '@') {
-                String remaining = source.substring(scanner.getPos());
-                Matcher matcher = ANNOTATION_PATTERN.matcher(remaining);
-                if (matcher.find() && matcher.start() == 0) {
+                Matcher matcher = ANNOTATION_PATTERN.matcher(source).region(scanner.getPos(), source.length());
+                if (matcher.lookingAt()) {
                     String match = matcher.group();
                     CodeNode node = new CodeNode(NodeType.ANNOTATION, matcher.group(1), scanner.getPos());
                     node.setEndOffset(scanner.getPos() + match.length());
-                    node.setContent(match);
-                    scopeStack.peek().addChild(node);
+                    node.setContent(source, scanner.getPos(), scanner.getPos() + match.length());
+                    scopeStack.add(node);
                     scanner.advance(match.length());
                 } else {
                     scanner.advance();
@@ -170,31 +178,31 @@ public class JavaParser extends BaseParser {
             } 
             // Handle scope start
             else if (c == '{') {
-                String lookback = source.substring(lastPos, scanner.getPos());
-                CodeNode node = applyRules(blockRules, lookback, lastPos)
-                        .orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
-                scanner.advance();
+                String lookback = scanner.codeText(lastPos, scanner.getPos());
+                CodeNode node = identifyBlock(blockRules, lookback, lastPos, scopeStack);
+                if (skipBody(scanner, node, scopeStack, "\"'")) {
+                    scopeStack.add(node);
+                } else {
+                    scopeStack.open(node);
+                    scanner.advance();
+                }
                 lastPos = scanner.getPos();
             } 
             // Handle scope end
             else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } 
             // Handle statements
             else if (c == ';') {
-                String statement = source.substring(lastPos, scanner.getPos());
+                String statement = scanner.codeText(lastPos, scanner.getPos());
                 applyRules(statementRules, statement, lastPos).ifPresent(node -> {
                     node.setEndOffset(scanner.getPos());
-                    node.setContent(statement.trim());
-                    scopeStack.peek().addChild(node);
+                    setTrimmedContent(node, source, node.getStartOffset(), scanner.getPos());
+                    scopeStack.add(node);
                 });
                 scanner.advance();
                 lastPos = scanner.getPos();
@@ -202,12 +210,10 @@ public class JavaParser extends BaseParser {
             // Advance scanner
             else {
                 scanner.advance();
+                scanner.skipToAny(STRUCTURAL_CHARS);
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 }
@@ -1,19 +1,26 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class JavaScriptParser extends BaseParser {
 
+    private static final Pattern FUNCTION_PATTERN = Pattern.compile("function\\s+([a-zA-Z_][a-zA-Z0-9_]*)");
+    private static final Pattern ASYNC_FUNCTION_PATTERN = Pattern.compile("async\\s+function\\s+([a-zA-Z_][a-zA-Z0-9_]*)");
+    private static final Pattern METHOD_PATTERN = Pattern.compile("^\\s*(?:async\\s+)?([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(");
+    private static final Pattern ARROW_FUNCTION_PATTERN = Pattern.compile("(?:const|let|var)\\s+([a-zA-Z_][a-zA-Z0-9_]*)\\s*=\\s*(?:async\\s*)?\\([^\\)]*\\)\\s*=>");
+
     private final List<ParserRule> blockRules;
     private final List<ParserRule> statementRules;
 
@@ -21,33 +28,29 @@ public class JavaScriptParser extends BaseParser {
         super("javascript");
         this.blockRules = List.of(
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 String name = extractIdentifierAfterKeyword(clean, "class");
                 return name != null ? Optional.of(new CodeNode(NodeType.CLASS, name, pos)) : Optional.empty();
             },
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 // Function declaration: function name(...)
-                Pattern p = Pattern.compile("function\\s+([a-zA-Z_][a-zA-Z0-9_]*)");
-                Matcher m = p.matcher(clean);
+                Matcher m = FUNCTION_PATTERN.matcher(clean);
                 if (m.find()) {
                     return Optional.of(new CodeNode(NodeType.FUNCTION, m.group(1), pos));
                 }
                 // Async function
-                p = Pattern.compile("async\\s+function\\s+([a-zA-Z_][a-zA-Z0-9_]*)");
-                m = p.matcher(clean);
+                m = ASYNC_FUNCTION_PATTERN.matcher(clean);
                 if (m.find()) {
                     return Optional.of(new CodeNode(NodeType.FUNCTION, m.group(1), pos));
                 }
                 // Method in class
-                p = Pattern.compile("^\\s*(?:async\\s+)?([a-zA-Z_][a-zA-Z0-9_]*)\\s*\\(");
-                m = p.matcher(clean);
+                m = METHOD_PATTERN.matcher(clean);
                 if (m.find() && !isControlKeyword(m.group(1))) {
                     return Optional.of(new CodeNode(NodeType.METHOD, m.group(1), pos));
                 }
                 // Arrow function assigned to variable
-                p = Pattern.compile("(?:const|let|var)\\s+([a-zA-Z_][a-zA-Z0-9_]*)\\s*=\\s*(?:async\\s*)?\\([^\\)]*\\)\\s*=>");
-                m = p.matcher(clean);
+                m = ARROW_FUNCTION_PATTERN.matcher(clean);
                 if (m.find()) {
                     return Optional.of(new CodeNode(NodeType.FUNCTION, m.group(1), pos));
                 }
@@ -57,7 +60,7 @@ public class JavaScriptParser extends BaseParser {
 
         this.statementRules = List.of(
             (ctx, pos) -> {
-                String clean = stripComments(ctx).trim();
+                String clean = ctx.trim();
                 if (clean.startsWith("import ")) {
                     return Optional.of(new CodeNode(NodeType.MODULE, "import", pos));
                 }
@@ -76,13 +79,15 @@ public class JavaScriptParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
 
@@ -90,33 +95,33 @@ public class JavaScriptParser extends BaseParser {
             char c = scanner.peek();
 
             if (c == '/' && scanner.peekNext() == '/') {
-                scopeStack.peek().addChild(extractLineComment(scanner));
+                addLineComment(scanner, scopeStack);
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
             } else if (c == '"' || c == '\'' || c == '`') {
                 skipString(scanner);
             } else if (c == '{') {
-                String lookback = source.substring(lastPos, scanner.getPos());
-                CodeNode node = applyRules(blockRules, lookback, lastPos)
-                        .orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
-                scanner.advance();
+                String lookback = scanner.codeText(lastPos, scanner.getPos());
+                CodeNode node = identifyBlock(blockRules, lookback, lastPos, scopeStack);
+                if (skipBody(scanner, node, scopeStack, "\"'`")) {
+                    scopeStack.add(node);
+                } else {
+                    scopeStack.open(node);
+                    scanner.advance();
+                }
                 lastPos = scanner.getPos();
             } else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else if (c == ';') {
-                String statement = source.substring(lastPos, scanner.getPos());
+                String statement = scanner.codeText(lastPos, scanner.getPos());
                 applyRules(statementRules, statement, lastPos).ifPresent(node -> {
                     node.setEndOffset(scanner.getPos());
-                    node.setContent(statement.trim());
-                    scopeStack.peek().addChild(node);
+                    setTrimmedContent(node, source, node.getStartOffset(), scanner.getPos());
+                    scopeStack.add(node);
                 });
                 scanner.advance();
                 lastPos = scanner.getPos();
@@ -125,9 +130,6 @@ public class JavaScriptParser extends BaseParser {
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 }
@@ -1,25 +1,32 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
-import java.util.Stack;
 
 public class KotlinParser extends BaseParser {
+
+    private static final SourceScanner.CharSet STRUCTURAL_CHARS = SourceScanner.CharSet.of("{}\n;\"/");
     public KotlinParser() {
         super("kotlin");
     }
 
     @Override
-    public CodeNode parse(String source) {
-        if (source == null) return new CodeNode(NodeType.ROOT, "root", 0);
-
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null) {
+            scopeStack.complete();
+            return;
+        }
+
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
+        scanner.indexStructural(STRUCTURAL_CHARS);
 
         int lastPos = 0;
         try {
@@ -27,49 +34,49 @@ public class KotlinParser extends BaseParser {
                 char c = scanner.peek();
                 if (c == '{') {
                     String lookback = scanner.substring(lastPos, scanner.getPos()).trim();
-                    CodeNode newNode = identifyKotlinNode(lookback, lastPos, scopeStack.peek());
-                    scopeStack.peek().addChild(newNode);
-                    scopeStack.push(newNode);
-                    scanner.advance();
+                    CodeNode newNode = identifyKotlinNode(lookback, lastPos, scopeStack);
+                    if (skipBody(scanner, newNode, scopeStack, "\"'")) {
+                        scopeStack.add(newNode);
+                    } else {
+                        scopeStack.open(newNode);
+                        scanner.advance();
+                    }
                     lastPos = scanner.getPos();
                 } else if (c == '}') {
                     if (scopeStack.size() > 1) {
-                        CodeNode closed = scopeStack.pop();
-                        closed.setEndOffset(scanner.getPos() + 1);
-                        closed.setContent(source.substring(closed.getStartOffset(), closed.getEndOffset()));
+                        scopeStack.close(scanner.getPos() + 1);
                     }
                     scanner.advance();
                     lastPos = scanner.getPos();
                 } else if (c == '\n' || c == ';') {
                     String line = scanner.substring(lastPos, scanner.getPos()).trim();
                     if (!line.isEmpty()) {
-                        processLine(line, lastPos, scanner.getPos(), scopeStack.peek());
+                        processLine(line, lastPos, scanner.getPos(), scopeStack);
                     }
                     scanner.advance();
                     lastPos = scanner.getPos();
                 } else if (c == '"') {
                     skipString(scanner);
                 } else if (c == '/' && scanner.peekNext() == '/') {
-                    scopeStack.peek().addChild(extractLineComment(scanner));
+                    addLineComment(scanner, scopeStack);
                     lastPos = scanner.getPos();
                 } else if (c == '/' && scanner.peekNext() == '*') {
-                    scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                    addBlockComment(scanner, scopeStack, "*/");
                     lastPos = scanner.getPos();
                 } else {
                     scanner.advance();
+                    scanner.skipToAny(STRUCTURAL_CHARS);
                 }
             }
         } catch (Exception e) {
             // Log or handle exception
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 
-    private void processLine(String line, int start, int end, CodeNode parent) {
+    private void processLine(String line, int start, int end, ScopeStack scopes) {
+        CodeNode parent = scopes.peek();
         if (line.startsWith("package ") || line.startsWith("import ")) {
             String keyword = line.startsWith("package") ? "package" : "import";
             String name = extractIdentifierAfterKeyword(line, keyword);
@@ -77,7 +84,7 @@ public class KotlinParser extends BaseParser {
                 CodeNode node = new CodeNode(NodeType.MODULE, name, start);
                 node.setEndOffset(end);
                 node.setContent(line);
-                parent.addChild(node);
+                scopes.add(node);
             }
             return;
         }
@@ -85,43 +92,45 @@ public class KotlinParser extends BaseParser {
         // Check for bodyless declarations
         String className = extractIdentifierAfterKeyword(line, "class");
         if (className != null) {
-            addNode(parent, NodeType.CLASS, className, start, end, line);
+            addNode(scopes, NodeType.CLASS, className, start, end, line);
             return;
         }
 
         String interfaceName = extractIdentifierAfterKeyword(line, "interface");
         if (interfaceName != null) {
-            addNode(parent, NodeType.INTERFACE, interfaceName, start, end, line);
+            addNode(scopes, NodeType.INTERFACE, interfaceName, start, end, line);
             return;
         }
 
         String funName = extractIdentifierAfterKeyword(line, "fun");
         if (funName != null) {
             NodeType type = (parent.getType() == NodeType.ROOT) ? NodeType.FUNCTION : NodeType.METHOD;
-            addNode(parent, type, funName, start, end, line);
+            addNode(scopes, type, funName, start, end, line);
             return;
         }
 
         String valName = extractIdentifierAfterKeyword(line, "val");
         if (valName != null) {
-            addNode(parent, NodeType.VARIABLE, valName, start, end, line);
+            addNode(scopes, NodeType.VARIABLE, valName, start, end, line);
             return;
         }
 
         String varName = extractIdentifierAfterKeyword(line, "var");
         if (varName != null) {
-            addNode(parent, NodeType.VARIABLE, varName, start, end, line);
+            addNode(scopes, NodeType.VARIABLE, varName, start, end, line);
         }
     }
 
-    private void addNode(CodeNode parent, NodeType type, String name, int start, int end, String content) {
+    private void addNode(ScopeStack scopes, NodeType type, String name, int start, int end, String content) {
+        if (!scopes.accepts(type)) return;
         CodeNode node = new CodeNode(type, name, start);
         node.setEndOffset(end);
         node.setContent(content);
-        parent.addChild(node);
+        scopes.add(node);
     }
 
-    private CodeNode identifyKotlinNode(String lookback, int pos, CodeNode parent) {
+    private CodeNode identifyKotlinNode(String lookback, int pos, ScopeStack scopes) {
+        CodeNode parent = scopes.peek();
         String className = extractIdentifierAfterKeyword(lookback, "class");
         if (className != null) return new CodeNode(NodeType.CLASS, className, pos);
 
@@ -137,6 +146,6 @@ public class KotlinParser extends BaseParser {
             return new CodeNode(type, funName, pos);
         }
 
-        return new CodeNode(NodeType.BLOCK, "anonymous", pos);
+        return scopes.block(pos);
     }
 }
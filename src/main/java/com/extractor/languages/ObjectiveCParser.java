@@ -1,25 +1,32 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
-import java.util.Stack;
+import java.util.regex.Pattern;
 
 public class ObjectiveCParser extends BaseParser {
+    private static final Pattern SELECTOR_DELIMITER = Pattern.compile("[\\s:{]");
+
     public ObjectiveCParser() {
         super("objectivec");
     }
 
     @Override
-    public CodeNode parse(String source) {
-        if (source == null) return new CodeNode(NodeType.ROOT, "root", 0);
-
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null) {
+            scopeStack.complete();
+            return;
+        }
+
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
         try {
@@ -27,9 +34,8 @@ public class ObjectiveCParser extends BaseParser {
                 char c = scanner.peek();
                 if (c == '{') {
                     String lookback = scanner.substring(lastPos, scanner.getPos()).trim();
-                    CodeNode newNode = identifyObjCNode(lookback, lastPos);
-                    scopeStack.peek().addChild(newNode);
-                    scopeStack.push(newNode);
+                    CodeNode newNode = identifyObjCNode(lookback, lastPos, scopeStack);
+                    scopeStack.open(newNode);
                     scanner.advance();
                     lastPos = scanner.getPos();
                 } else if (c == '}') {
@@ -37,9 +43,7 @@ public class ObjectiveCParser extends BaseParser {
                         NodeType currentType = scopeStack.peek().getType();
                         // In Objective-C, @interface and @implementation are closed by @end, not }
                         if (currentType != NodeType.CLASS && currentType != NodeType.INTERFACE) {
-                            CodeNode closed = scopeStack.pop();
-                            closed.setEndOffset(scanner.getPos() + 1);
-                            closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                            scopeStack.close(scanner.getPos() + 1);
                         }
                     }
                     scanner.advance();
@@ -53,17 +57,14 @@ public class ObjectiveCParser extends BaseParser {
                             if (name.contains(":")) name = name.split(":")[0].trim();
                             
                             CodeNode newNode = new CodeNode(type, name, lastPos);
-                            scopeStack.peek().addChild(newNode);
-                            scopeStack.push(newNode);
+                            scopeStack.open(newNode);
                         }
                     } else if (line.startsWith("@end")) {
                         // Pop until we find a CLASS or INTERFACE
                         while (scopeStack.size() > 1) {
                             NodeType type = scopeStack.peek().getType();
                             if (type == NodeType.CLASS || type == NodeType.INTERFACE) {
-                                CodeNode closed = scopeStack.pop();
-                                closed.setEndOffset(scanner.getPos());
-                                closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                                scopeStack.close(scanner.getPos());
                                 break;
                             }
                             scopeStack.pop();
@@ -74,10 +75,10 @@ public class ObjectiveCParser extends BaseParser {
                 } else if (c == '"') {
                     skipString(scanner);
                 } else if (c == '/' && scanner.peekNext() == '/') {
-                    scopeStack.peek().addChild(extractLineComment(scanner));
+                    addLineComment(scanner, scopeStack);
                     lastPos = scanner.getPos();
                 } else if (c == '/' && scanner.peekNext() == '*') {
-                    scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                    addBlockComment(scanner, scopeStack, "*/");
                     lastPos = scanner.getPos();
                 } else {
                     scanner.advance();
@@ -87,13 +88,10 @@ public class ObjectiveCParser extends BaseParser {
             // Ignore parsing errors for robustness
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 
-    private CodeNode identifyObjCNode(String lookback, int pos) {
+    private CodeNode identifyObjCNode(String lookback, int pos, ScopeStack scopes) {
         if (lookback.contains("@interface")) {
             String name = extractIdentifierAfterKeyword(lookback, "@interface");
             return new CodeNode(NodeType.INTERFACE, name != null ? name : "unknown", pos);
@@ -109,12 +107,12 @@ public class ObjectiveCParser extends BaseParser {
             if (bracketIndex != -1) {
                 String afterBracket = lookback.substring(bracketIndex + 1).trim();
                 if (!afterBracket.isEmpty()) {
-                    String name = afterBracket.split("[\\s:{]")[0];
+                    String name = SELECTOR_DELIMITER.split(afterBracket)[0];
                     return new CodeNode(NodeType.METHOD, name, pos);
                 }
             }
         }
 
-        return new CodeNode(NodeType.BLOCK, "block", pos);
+        return scopes.block("block", pos);
     }
 }
@@ -1,25 +1,27 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
 
 public class PHPParser extends BaseParser {
 
     private final List<ParserRule> phpRules = List.of(
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "class"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "class"))
                 .map(name -> new CodeNode(NodeType.CLASS, name, pos)),
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "interface"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "interface"))
                 .map(name -> new CodeNode(NodeType.INTERFACE, name, pos)),
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "trait"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "trait"))
                 .map(name -> new CodeNode(NodeType.TRAIT, name, pos)),
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "function"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "function"))
                 .map(name -> new CodeNode(NodeType.METHOD, name, pos))
     );
 
@@ -28,62 +30,61 @@ public class PHPParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
-        if (source == null) return new CodeNode(NodeType.ROOT, "root", 0);
-
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null) {
+            scopeStack.complete();
+            return;
+        }
+
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
         while (!scanner.isAtEnd()) {
             char c = scanner.peek();
             if (c == '{') {
-                String lookback = scanner.substring(lastPos, scanner.getPos());
-                CodeNode node = applyRules(phpRules, lookback, lastPos)
-                        .orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
+                String lookback = scanner.codeText(lastPos, scanner.getPos());
+                CodeNode node = identifyBlock(phpRules, lookback, lastPos, scopeStack);
                 
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
-                scanner.advance();
+                if (skipBody(scanner, node, scopeStack, "\"'")) {
+                    scopeStack.add(node);
+                } else {
+                    scopeStack.open(node);
+                    scanner.advance();
+                }
                 lastPos = scanner.getPos();
             } else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), closed.getEndOffset()));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else if (c == '"' || c == '\'') {
                 skipString(scanner);
             } else if (c == '/' && scanner.peekNext() == '/') {
-                scopeStack.peek().addChild(extractLineComment(scanner));
+                addLineComment(scanner, scopeStack);
                 lastPos = scanner.getPos();
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
                 lastPos = scanner.getPos();
             } else if (c == '#') {
                 // PHP shell-style comment
                 int start = scanner.getPos();
-                StringBuilder content = new StringBuilder();
-                while (!scanner.isAtEnd() && scanner.peek() != '\n') {
-                    content.append(scanner.advance());
+                scanner.skipTo('\n');
+                scanner.markComment(start, scanner.getPos());
+                if (scopeStack.accepts(NodeType.COMMENT)) {
+                    CodeNode comment = new CodeNode(NodeType.COMMENT, "shell comment", start);
+                    comment.setContent(source, start, scanner.getPos());
+                    comment.setEndOffset(scanner.getPos());
+                    scopeStack.add(comment);
                 }
-                CodeNode comment = new CodeNode(NodeType.COMMENT, "shell comment", start);
-                comment.setContent(content.toString());
-                comment.setEndOffset(scanner.getPos());
-                scopeStack.peek().addChild(comment);
                 lastPos = scanner.getPos();
             } else {
                 scanner.advance();
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 }
@@ -1,6 +1,9 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
@@ -19,16 +22,18 @@ public class PythonParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        if (source == null || source.isEmpty()) {
+            new ScopeStack(root, source, options, listener).complete();
+            return;
+        }
 
         // Normalize line endings to simplify offset calculation
         String normalizedSource = source.replace("\r\n", "\n").replace("\r", "\n");
         String[] lines = normalizedSource.split("\n", -1);
         
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
+        ScopeStack scopeStack = new ScopeStack(root, normalizedSource, options, listener);
         
         Stack<Integer> indentStack = new Stack<>();
         indentStack.push(-1);
@@ -51,18 +56,18 @@ public class PythonParser extends BaseParser {
             // Pop scopes that have higher or equal indentation
             // A non-empty line with less or equal indentation ends the previous scope
             while (indentStack.peek() >= indentation && scopeStack.size() > 1) {
-                CodeNode closed = scopeStack.pop();
-                closed.setEndOffset(lineStartPos > 0 ? lineStartPos - 1 : 0);
-                closed.setContent(normalizedSource.substring(closed.getStartOffset(), closed.getEndOffset()));
+                scopeStack.close(lineStartPos > 0 ? lineStartPos - 1 : 0);
                 indentStack.pop();
             }
 
             // Handle comments
             if (trimmed.startsWith("#")) {
-                CodeNode comment = new CodeNode(NodeType.COMMENT, "comment", lineStartPos + line.indexOf("#"));
-                comment.setEndOffset(Math.min(lineStartPos + line.length(), normalizedSource.length()));
-                comment.setContent(trimmed);
-                scopeStack.peek().addChild(comment);
+                if (scopeStack.accepts(NodeType.COMMENT)) {
+                    CodeNode comment = new CodeNode(NodeType.COMMENT, "comment", lineStartPos + line.indexOf("#"));
+                    comment.setEndOffset(Math.min(lineStartPos + line.length(), normalizedSource.length()));
+                    setTrimmedContent(comment, normalizedSource, lineStartPos, lineStartPos + line.length());
+                    scopeStack.add(comment);
+                }
                 continue;
             }
 
@@ -86,7 +91,7 @@ public class PythonParser extends BaseParser {
                 CodeNode docNode = new CodeNode(NodeType.COMMENT, "docstring", start);
                 docNode.setEndOffset(Math.min(currentPos - 1, normalizedSource.length()));
                 docNode.setContent(content.toString());
-                scopeStack.peek().addChild(docNode);
+                scopeStack.add(docNode);
                 continue;
             }
 
@@ -95,8 +100,8 @@ public class PythonParser extends BaseParser {
             if (decMatcher.find()) {
                 CodeNode decNode = new CodeNode(NodeType.ANNOTATION, decMatcher.group(1), lineStartPos + decMatcher.start());
                 decNode.setEndOffset(Math.min(lineStartPos + line.length(), normalizedSource.length()));
-                decNode.setContent(trimmed);
-                scopeStack.peek().addChild(decNode);
+                setTrimmedContent(decNode, normalizedSource, lineStartPos, lineStartPos + line.length());
+                scopeStack.add(decNode);
                 continue;
             }
 
@@ -106,29 +111,19 @@ public class PythonParser extends BaseParser {
 
             if (classMatcher.find()) {
                 CodeNode node = new CodeNode(NodeType.CLASS, classMatcher.group(1), lineStartPos);
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
+                scopeStack.open(node);
                 indentStack.push(indentation);
             } else if (funcMatcher.find()) {
                 // For Python, both top-level functions and class methods are identified as FUNCTION 
                 // to satisfy extraction requirements where getFunctions() is used for both.
                 CodeNode node = new CodeNode(NodeType.FUNCTION, funcMatcher.group(1), lineStartPos);
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
+                scopeStack.open(node);
                 indentStack.push(indentation);
             }
         }
 
         // Close remaining scopes
-        while (scopeStack.size() > 1) {
-            CodeNode closed = scopeStack.pop();
-            closed.setEndOffset(normalizedSource.length());
-            closed.setContent(normalizedSource.substring(closed.getStartOffset(), normalizedSource.length()));
-        }
-
-        root.setEndOffset(normalizedSource.length());
-        root.setContent(normalizedSource);
-        return root;
+        scopeStack.finish(normalizedSource.length());
     }
 
     private int getIndentation(String line) {
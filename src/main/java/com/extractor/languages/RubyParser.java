@@ -1,11 +1,13 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
-import java.util.Stack;
 
 public class RubyParser extends BaseParser {
     public RubyParser() {
@@ -13,13 +15,15 @@ public class RubyParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
-        if (source == null) return new CodeNode(NodeType.ROOT, "root", 0);
-
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null) {
+            scopeStack.complete();
+            return;
+        }
+
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
         try {
@@ -29,21 +33,18 @@ public class RubyParser extends BaseParser {
                 // Check for keywords that start a block
                 if (isBlockStart(scanner)) {
                     String lookback = scanner.substring(lastPos, scanner.getPos()).trim();
-                    CodeNode newNode = identifyNodeRuby(lookback, scanner.getPos());
-                    scopeStack.peek().addChild(newNode);
-                    scopeStack.push(newNode);
+                    CodeNode newNode = identifyNodeRuby(lookback, scanner.getPos(), scopeStack);
+                    scopeStack.open(newNode);
                     lastPos = scanner.getPos();
-                } else if (scanner.match("end") && !Character.isLetterOrDigit(scanner.peek())) {
+                } else if (scanner.match("end") && !isWordChar(scanner.peek())) {
                     if (scopeStack.size() > 1) {
-                        CodeNode closed = scopeStack.pop();
-                        closed.setEndOffset(scanner.getPos());
-                        closed.setContent(source.substring(closed.getStartOffset(), closed.getEndOffset()));
+                        scopeStack.close(scanner.getPos());
                     }
                     lastPos = scanner.getPos();
                 } else if (c == '"' || c == '\'') {
                     skipString(scanner);
                 } else if (c == '#') {
-                    scopeStack.peek().addChild(extractLineComment(scanner));
+                    addLineComment(scanner, scopeStack);
                     lastPos = scanner.getPos();
                 } else {
                     scanner.advance();
@@ -53,9 +54,9 @@ public class RubyParser extends BaseParser {
             // Error resilience
         }
 
-        finalizeScope(scopeStack, source.length(), source);
+        scopeStack.closeAll(source.length());
         root.setEndOffset(source.length());
-        return root;
+        scopeStack.complete();
     }
 
     private boolean isBlockStart(SourceScanner scanner) {
@@ -66,7 +67,7 @@ public class RubyParser extends BaseParser {
         return false;
     }
 
-    private CodeNode identifyNodeRuby(String lookback, int pos) {
+    private CodeNode identifyNodeRuby(String lookback, int pos, ScopeStack scopes) {
         if (lookback.contains("class ")) {
             return new CodeNode(NodeType.CLASS, extractIdentifierAfterKeyword(lookback, "class"), pos);
         }
@@ -76,6 +77,6 @@ public class RubyParser extends BaseParser {
         if (lookback.contains("def ")) {
             return new CodeNode(NodeType.METHOD, extractMethodName(lookback), pos);
         }
-        return new CodeNode(NodeType.BLOCK, "anonymous", pos);
+        return scopes.block(pos);
     }
 }
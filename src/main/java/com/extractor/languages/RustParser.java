@@ -1,29 +1,33 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
 import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
 
 public class RustParser extends BaseParser {
 
+    private static final SourceScanner.CharSet STRUCTURAL_CHARS = SourceScanner.CharSet.of("{}\"/;");
+
     private final List<ParserRule> rustRules = List.of(
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "mod"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "mod"))
                 .map(name -> new CodeNode(NodeType.MODULE, name, pos)),
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "struct"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "struct"))
                 .map(name -> new CodeNode(NodeType.STRUCT, name, pos)),
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "enum"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "enum"))
                 .map(name -> new CodeNode(NodeType.ENUM, name, pos)),
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "trait"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "trait"))
                 .map(name -> new CodeNode(NodeType.INTERFACE, name, pos)),
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "fn"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "fn"))
                 .map(name -> new CodeNode(NodeType.FUNCTION, name, pos)),
-        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(stripComments(ctx).trim(), "impl"))
+        (ctx, pos) -> Optional.ofNullable(extractIdentifierAfterKeyword(ctx.trim(), "impl"))
                 .map(name -> new CodeNode(NodeType.CLASS, "impl " + name, pos))
     );
 
@@ -32,60 +36,61 @@ public class RustParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
-        if (source == null) return new CodeNode(NodeType.ROOT, "root", 0);
-
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null) {
+            scopeStack.complete();
+            return;
+        }
+
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
+        scanner.indexStructural(STRUCTURAL_CHARS);
 
         int lastPos = 0;
         while (!scanner.isAtEnd()) {
             char c = scanner.peek();
             if (c == '{') {
-                String lookback = scanner.substring(lastPos, scanner.getPos());
-                CodeNode node = applyRules(rustRules, lookback, lastPos)
-                        .orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
+                String lookback = scanner.codeText(lastPos, scanner.getPos());
+                CodeNode node = identifyBlock(rustRules, lookback, lastPos, scopeStack);
                 
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
-                scanner.advance();
+                if (skipBody(scanner, node, scopeStack, "\"")) {
+                    scopeStack.add(node);
+                } else {
+                    scopeStack.open(node);
+                    scanner.advance();
+                }
                 lastPos = scanner.getPos();
             } else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode closed = scopeStack.pop();
-                    closed.setEndOffset(scanner.getPos() + 1);
-                    closed.setContent(source.substring(closed.getStartOffset(), closed.getEndOffset()));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else if (c == '"') {
                 skipString(scanner);
             } else if (c == '/' && scanner.peekNext() == '/') {
-                scopeStack.peek().addChild(extractLineComment(scanner));
+                addLineComment(scanner, scopeStack);
                 lastPos = scanner.getPos();
             } else if (c == '/' && scanner.peekNext() == '*') {
-                scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                addBlockComment(scanner, scopeStack, "*/");
                 lastPos = scanner.getPos();
             } else if (c == ';') {
-                String statement = scanner.substring(lastPos, scanner.getPos()).trim();
+                String statement = scanner.codeText(lastPos, scanner.getPos()).trim();
                 if (statement.startsWith("use ")) {
                     CodeNode node = new CodeNode(NodeType.MODULE, extractIdentifierAfterKeyword(statement, "use"), lastPos);
                     node.setEndOffset(scanner.getPos());
-                    node.setContent(statement);
-                    scopeStack.peek().addChild(node);
+                    setTrimmedContent(node, source, lastPos, scanner.getPos());
+                    scopeStack.add(node);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else {
                 scanner.advance();
+                scanner.skipToAny(STRUCTURAL_CHARS);
             }
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 }
@@ -1,11 +1,13 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -15,18 +17,22 @@ import java.util.regex.Pattern;
  */
 public class ScalaParser extends BaseParser {
 
+    private static final Pattern METHOD_NAME_PATTERN = Pattern.compile(WORD_START + "def\\s+([^\\s\\(\\)\\[\\]\\{\\}:]+)");
+
     public ScalaParser() {
         super("scala");
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        if (source == null || source.isEmpty()) return root;
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null || source.isEmpty()) {
+            scopeStack.complete();
+            return;
+        }
 
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
 
@@ -35,39 +41,35 @@ public class ScalaParser extends BaseParser {
                 char c = scanner.peek();
 
                 if (c == '{') {
-                    String lookback = scanner.substring(lastPos, scanner.getPos());
-                    CodeNode newNode = identifyScalaNode(lookback, lastPos);
-                    scopeStack.peek().addChild(newNode);
-                    scopeStack.push(newNode);
+                    String lookback = scanner.codeText(lastPos, scanner.getPos());
+                    CodeNode newNode = identifyScalaNode(lookback, lastPos, scopeStack);
+                    scopeStack.open(newNode);
                     scanner.advance();
                     lastPos = scanner.getPos();
                 } else if (c == '}') {
                     if (scopeStack.size() > 1) {
-                        CodeNode closed = scopeStack.pop();
-                        closed.setEndOffset(Math.min(scanner.getPos() + 1, source.length()));
-                        closed.setContent(source.substring(closed.getStartOffset(), closed.getEndOffset()));
+                        scopeStack.close(Math.min(scanner.getPos() + 1, source.length()));
                     }
                     scanner.advance();
                     lastPos = scanner.getPos();
                 } else if (c == '"') {
+                    int start = scanner.getPos();
                     if (scanner.match("\"\"\"")) {
-                        while (!scanner.isAtEnd() && !scanner.match("\"\"\"")) {
-                            scanner.advance();
-                        }
+                        scanner.skipPast("\"\"\"");
+                        scanner.markString(start, scanner.getPos());
                     } else {
                         skipString(scanner);
                     }
                     // Note: We do NOT update lastPos here to maintain context for declarations
                     // that might include strings (e.g., default parameter values).
                 } else if (c == '/' && scanner.peekNext() == '/') {
-                    scopeStack.peek().addChild(extractLineComment(scanner));
+                    addLineComment(scanner, scopeStack);
                     // Note: We do NOT update lastPos here.
                 } else if (c == '/' && scanner.peekNext() == '*') {
-                    scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                    addBlockComment(scanner, scopeStack, "*/");
                     // Note: We do NOT update lastPos here.
                 } else if (c == '\n' || c == ';') {
-                    String rawLine = scanner.substring(lastPos, scanner.getPos());
-                    String line = stripComments(rawLine).trim();
+                    String line = scanner.codeText(lastPos, scanner.getPos()).trim();
                     
                     if (line.startsWith("package ") || line.startsWith("import ")) {
                         NodeType type = line.startsWith("package") ? NodeType.MODULE : NodeType.MODULE;
@@ -76,16 +78,16 @@ public class ScalaParser extends BaseParser {
                         if (name != null) {
                             CodeNode node = new CodeNode(type, name, lastPos);
                             node.setEndOffset(scanner.getPos());
-                            node.setContent(rawLine.trim());
-                            scopeStack.peek().addChild(node);
+                            setTrimmedContent(node, source, lastPos, scanner.getPos());
+                            scopeStack.add(node);
                         }
                     } else if (line.contains("def ") && !line.contains("{")) {
                         String name = extractScalaMethodName(line);
                         if (!"unknown".equals(name)) {
                             CodeNode node = new CodeNode(NodeType.METHOD, name, lastPos);
                             node.setEndOffset(scanner.getPos());
-                            node.setContent(rawLine.trim());
-                            scopeStack.peek().addChild(node);
+                            setTrimmedContent(node, source, lastPos, scanner.getPos());
+                            scopeStack.add(node);
                         }
                     }
                     scanner.advance();
@@ -98,27 +100,23 @@ public class ScalaParser extends BaseParser {
             // Fallback for unexpected errors during parsing
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 
-    private CodeNode identifyScalaNode(String lookback, int pos) {
-        String clean = stripComments(lookback);
+    private CodeNode identifyScalaNode(String lookback, int pos, ScopeStack scopes) {
+        String clean = lookback;
         if (clean.contains("class ")) return new CodeNode(NodeType.CLASS, extractIdentifierAfterKeyword(clean, "class"), pos);
         if (clean.contains("object ")) return new CodeNode(NodeType.CLASS, extractIdentifierAfterKeyword(clean, "object"), pos);
         if (clean.contains("trait ")) return new CodeNode(NodeType.TRAIT, extractIdentifierAfterKeyword(clean, "trait"), pos);
         if (clean.contains("def ")) return new CodeNode(NodeType.METHOD, extractScalaMethodName(clean), pos);
         
-        return new CodeNode(NodeType.BLOCK, "anonymous", pos);
+        return scopes.block(pos);
     }
 
     private String extractScalaMethodName(String text) {
         // Match def followed by whitespace, then the method name (identifier or operator)
         // Stops at whitespace, (, [, {, or :
-        Pattern pattern = Pattern.compile("\\bdef\\s+([^\\s\\(\\)\\[\\]\\{\\}:]+)");
-        Matcher matcher = pattern.matcher(text);
+        Matcher matcher = METHOD_NAME_PATTERN.matcher(text);
         if (matcher.find()) {
             return matcher.group(1);
         }
@@ -1,7 +1,10 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
@@ -9,9 +12,11 @@ import com.extractor.model.NodeType;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Stack;
+import java.util.regex.Pattern;
 
 public class ShellParser extends BaseParser {
+    private static final Pattern IDENTIFIER_PATTERN = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
     private final List<ParserRule> rules = new ArrayList<>();
 
     public ShellParser() {
@@ -35,7 +40,7 @@ public class ShellParser extends BaseParser {
         rules.add((text, pos) -> {
             if (text.contains("=") && !text.startsWith("if ") && !text.startsWith("while ")) {
                 String name = text.split("=")[0].trim();
-                if (name.matches("[a-zA-Z_][a-zA-Z0-9_]*")) {
+                if (IDENTIFIER_PATTERN.matcher(name).matches()) {
                     return Optional.of(new CodeNode(NodeType.VARIABLE, name, pos));
                 }
             }
@@ -44,12 +49,15 @@ public class ShellParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
-        if (source == null) return new CodeNode(NodeType.ROOT, "root", 0);
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null) {
+            scopeStack.complete();
+            return;
+        }
+
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
         try {
@@ -57,21 +65,18 @@ public class ShellParser extends BaseParser {
                 char c = scanner.peek();
                 if (c == '{') {
                     String lookback = scanner.substring(lastPos, scanner.getPos()).trim();
-                    CodeNode newNode = applyRules(rules, lookback, lastPos).orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
-                    scopeStack.peek().addChild(newNode);
-                    scopeStack.push(newNode);
+                    CodeNode newNode = identifyBlock(rules, lookback, lastPos, scopeStack);
+                    scopeStack.open(newNode);
                     scanner.advance();
                     lastPos = scanner.getPos();
                 } else if (c == '}') {
                     if (scopeStack.size() > 1) {
-                        CodeNode closed = scopeStack.pop();
-                        closed.setEndOffset(scanner.getPos() + 1);
-                        closed.setContent(source.substring(closed.getStartOffset(), closed.getEndOffset()));
+                        scopeStack.close(scanner.getPos() + 1);
                     }
                     scanner.advance();
                     lastPos = scanner.getPos();
                 } else if (c == '#') {
-                    scopeStack.peek().addChild(extractLineComment(scanner, "#"));
+                    addLineComment(scanner, scopeStack, "#");
                     lastPos = scanner.getPos();
                 } else if (c == '"' || c == '\'') {
                     skipString(scanner);
@@ -80,8 +85,8 @@ public class ShellParser extends BaseParser {
                     if (!line.isEmpty()) {
                         applyRules(rules, line, lastPos).ifPresent(node -> {
                             node.setEndOffset(scanner.getPos());
-                            node.setContent(source.substring(node.getStartOffset(), node.getEndOffset()));
-                            scopeStack.peek().addChild(node);
+                            node.setContent(source, node.getStartOffset(), node.getEndOffset());
+                            scopeStack.add(node);
                         });
                     }
                     scanner.advance();
@@ -92,9 +97,6 @@ public class ShellParser extends BaseParser {
             }
         } catch (Exception e) {}
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 }
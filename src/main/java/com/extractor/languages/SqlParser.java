@@ -1,6 +1,9 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
@@ -18,11 +21,11 @@ public class SqlParser extends BaseParser {
 
     // SQL specific patterns to handle optional clauses like IF EXISTS and multiple table/entity keywords
     private static final Pattern TABLE_PATTERN = Pattern.compile(
-            "\\b(TABLE|FROM|JOIN|UPDATE|INTO)\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?([a-zA-Z0-9_$.]+)", 
+            WORD_START + "(TABLE|FROM|JOIN|UPDATE|INTO)\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?([a-zA-Z0-9_$.]+)", 
             Pattern.CASE_INSENSITIVE);
     
     private static final Pattern PROC_PATTERN = Pattern.compile(
-            "\\b(PROCEDURE|FUNCTION)\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?([a-zA-Z0-9_$.]+)", 
+            WORD_START + "(PROCEDURE|FUNCTION)\\s+(?:IF\\s+(?:NOT\\s+)?EXISTS\\s+)?([a-zA-Z0-9_$.]+)", 
             Pattern.CASE_INSENSITIVE);
 
     public SqlParser() {
@@ -30,11 +33,12 @@ public class SqlParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "sql-root", 0);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
         if (source == null || source.isEmpty()) {
-            root.setEndOffset(0);
-            return root;
+            scopeStack.complete();
+            return;
         }
 
         SourceScanner scanner = new SourceScanner(source);
@@ -48,11 +52,9 @@ public class SqlParser extends BaseParser {
                 char c = scanner.peek();
                 
                 if (c == '-' && scanner.peekNext() == '-') {
-                    CodeNode comment = extractLineComment(scanner);
-                    root.addChild(comment);
+                    addLineComment(scanner, scopeStack);
                 } else if (c == '/' && scanner.peekNext() == '*') {
-                    CodeNode comment = extractBlockComment(scanner, "*/");
-                    root.addChild(comment);
+                    addBlockComment(scanner, scopeStack, "*/");
                 } else if (c == '\'' || c == '"') {
                     skipString(scanner);
                 } else {
@@ -66,10 +68,11 @@ public class SqlParser extends BaseParser {
                             String nodeName = "WITH".equals(firstWord) ? "SELECT" : firstWord;
                             CodeNode stmtNode = new CodeNode(NodeType.STATEMENT, nodeName, start);
                             stmtNode.setEndOffset(end);
-                            stmtNode.setContent(statementText);
+                            setTrimmedContent(stmtNode, source, start, end);
                             
-                            identifySqlEntities(stmtNode, statementText, start);
-                            root.addChild(stmtNode);
+                            scopeStack.open(stmtNode);
+                            identifySqlEntities(scopeStack, statementText, start);
+                            scopeStack.pop();
                         }
                     }
                     scanner.setPos(end);
@@ -82,20 +85,18 @@ public class SqlParser extends BaseParser {
             System.err.println("Error parsing SQL source: " + e.getMessage());
         }
 
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 
     private String getFirstWord(String text) {
         int i = 0;
-        while (i < text.length() && !Character.isWhitespace(text.charAt(i))) {
+        while (i < text.length() && !SourceScanner.isWhitespace(text.charAt(i))) {
             i++;
         }
         return text.substring(0, i);
     }
 
-    private void identifySqlEntities(CodeNode stmtNode, String text, int baseOffset) {
+    private void identifySqlEntities(ScopeStack scopes, String text, int baseOffset) {
         // Use regex to find table, procedure, or function names, handling IF EXISTS clauses
         // Changed to while loops and removed else to find all relevant entities in a statement
         Matcher tableMatcher = TABLE_PATTERN.matcher(text);
@@ -104,7 +105,7 @@ public class SqlParser extends BaseParser {
             int start = tableMatcher.start(2);
             CodeNode tableNode = new CodeNode(NodeType.TABLE, tableName, baseOffset + start);
             tableNode.setEndOffset(baseOffset + start + tableName.length());
-            stmtNode.addChild(tableNode);
+            scopes.add(tableNode);
         }
         
         Matcher procMatcher = PROC_PATTERN.matcher(text);
@@ -114,7 +115,7 @@ public class SqlParser extends BaseParser {
             // Use PROCEDURE type for both procedures and functions for consistency with original code
             CodeNode procNode = new CodeNode(NodeType.PROCEDURE, procName, baseOffset + start);
             procNode.setEndOffset(baseOffset + start + procName.length());
-            stmtNode.addChild(procNode);
+            scopes.add(procNode);
         }
     }
 
@@ -1,25 +1,32 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 
-import java.util.Stack;
+import java.util.regex.Pattern;
 
 public class SwiftParser extends BaseParser {
+    private static final Pattern INIT_PATTERN = Pattern.compile("(?s).*" + WORD_START + "init[!?]?\\s*\\(.*");
+
     public SwiftParser() {
         super("swift");
     }
 
     @Override
-    public CodeNode parse(String source) {
-        if (source == null) return new CodeNode(NodeType.ROOT, "root", 0);
-
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (source == null) {
+            scopeStack.complete();
+            return;
+        }
+
         SourceScanner scanner = new SourceScanner(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
 
         int lastPos = 0;
         try {
@@ -27,26 +34,23 @@ public class SwiftParser extends BaseParser {
                 char c = scanner.peek();
                 if (c == '{') {
                     String lookback = scanner.substring(lastPos, scanner.getPos()).trim();
-                    CodeNode newNode = identifySwiftNode(lookback, lastPos);
-                    scopeStack.peek().addChild(newNode);
-                    scopeStack.push(newNode);
+                    CodeNode newNode = identifySwiftNode(lookback, lastPos, scopeStack);
+                    scopeStack.open(newNode);
                     scanner.advance();
                     lastPos = scanner.getPos();
                 } else if (c == '}') {
                     if (scopeStack.size() > 1) {
-                        CodeNode closed = scopeStack.pop();
-                        closed.setEndOffset(scanner.getPos() + 1);
-                        closed.setContent(source.substring(closed.getStartOffset(), Math.min(closed.getEndOffset(), source.length())));
+                        scopeStack.close(scanner.getPos() + 1);
                     }
                     scanner.advance();
                     lastPos = scanner.getPos();
                 } else if (c == '"') {
                     skipString(scanner);
                 } else if (c == '/' && scanner.peekNext() == '/') {
-                    scopeStack.peek().addChild(extractLineComment(scanner));
+                    addLineComment(scanner, scopeStack);
                     lastPos = scanner.getPos();
                 } else if (c == '/' && scanner.peekNext() == '*') {
-                    scopeStack.peek().addChild(extractBlockComment(scanner, "*/"));
+                    addBlockComment(scanner, scopeStack, "*/");
                     lastPos = scanner.getPos();
                 } else {
                     scanner.advance();
@@ -56,13 +60,10 @@ public class SwiftParser extends BaseParser {
             // Ignore parsing errors for robustness
         }
 
-        finalizeScope(scopeStack, source.length(), source);
-        root.setEndOffset(source.length());
-        root.setContent(source);
-        return root;
+        scopeStack.finish(source.length());
     }
 
-    private CodeNode identifySwiftNode(String lookback, int pos) {
+    private CodeNode identifySwiftNode(String lookback, int pos, ScopeStack scopes) {
         if (lookback.contains("class ")) {
             String name = extractIdentifierAfterKeyword(lookback, "class");
             if (name != null) return new CodeNode(NodeType.CLASS, name, pos);
@@ -92,11 +93,11 @@ public class SwiftParser extends BaseParser {
         }
         if (lookback.contains("init")) {
             // Check for 'init' as a word, potentially followed by '(', '?', or '!'
-            if (lookback.matches("(?s).*\\binit[!?]?\\s*\\(.*")) {
+            if (INIT_PATTERN.matcher(lookback).matches()) {
                 return new CodeNode(NodeType.CONSTRUCTOR, "init", pos);
             }
         }
         
-        return new CodeNode(NodeType.BLOCK, "anonymous", pos);
+        return scopes.block(pos);
     }
 }
@@ -1,7 +1,10 @@
 package com.extractor.languages;
 
 import com.extractor.core.BaseParser;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
 import com.extractor.core.ParserRule;
+import com.extractor.core.ScopeStack;
 import com.extractor.core.SourceScanner;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
@@ -10,7 +13,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Stack;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -19,6 +21,10 @@ import java.util.regex.Pattern;
  */
 public class TSParser extends BaseParser {
 
+    private static final Pattern PROPERTY_PATTERN = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*)\\s*=");
+    private static final Pattern METHOD_DECLARATION_PATTERN = Pattern.compile("(?d)(?:^|.*\\s+)[a-zA-Z_][a-zA-Z0-9_]*\\s*(?:<.*>)?\\s*\\(.*\\).*");
+    private static final Pattern METHOD_NAME_PATTERN = Pattern.compile("(?d)([a-zA-Z_][a-zA-Z0-9_]*)\\s*(?:<.*>)?\\s*\\(");
+
     private static final Set<String> RESERVED_KEYWORDS = Set.of(
             "if", "else", "for", "while", "do", "switch", "case", "default",
             "break", "continue", "return", "throw", "try", "catch", "finally",
@@ -35,7 +41,7 @@ public class TSParser extends BaseParser {
         super("typescript");
         // Rules for blocks starting with '{'
         blockRules.add((ctx, pos) -> {
-            String clean = stripComments(ctx).trim();
+            String clean = ctx.trim();
             
             // 1. Classes, Interfaces, Enums
             if (clean.contains("class ")) {
@@ -63,8 +69,7 @@ public class TSParser extends BaseParser {
                     else if (clean.contains("var ")) name = extractIdentifierAfterKeyword(clean, "var");
                     else {
                         // Might be a class property: addUser = (user: T) => {
-                        Pattern p = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*)\\s*=");
-                        Matcher m = p.matcher(clean);
+                        Matcher m = PROPERTY_PATTERN.matcher(clean);
                         if (m.find()) name = m.group(1);
                     }
                 }
@@ -99,7 +104,7 @@ public class TSParser extends BaseParser {
 
         // Rules for statements ending with ';' or '\n'
         statementRules.add((ctx, pos) -> {
-            String clean = stripComments(ctx).trim();
+            String clean = ctx.trim();
             if (clean.startsWith("import ") || clean.startsWith("export ")) {
                 return Optional.of(new CodeNode(NodeType.IMPORT, "import/export", pos));
             }
@@ -107,7 +112,7 @@ public class TSParser extends BaseParser {
         });
 
         statementRules.add((ctx, pos) -> {
-            String clean = stripComments(ctx).trim();
+            String clean = ctx.trim();
             String keyword = null;
             if (clean.contains("const ")) keyword = "const ";
             else if (clean.contains("let ")) keyword = "let ";
@@ -124,11 +129,10 @@ public class TSParser extends BaseParser {
     }
 
     @Override
-    public CodeNode parse(String source) {
+    public void parse(String source, ExtractionOptions options, ParseListener listener) {
         CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
-        root.setContent(source);
-        Stack<CodeNode> scopeStack = new Stack<>();
-        scopeStack.push(root);
+        ScopeStack scopeStack = new ScopeStack(root, source, options, listener);
+        if (options.includesContent()) root.setContent(source);
 
         SourceScanner scanner = new SourceScanner(source);
         int lastPos = 0;
@@ -138,43 +142,40 @@ public class TSParser extends BaseParser {
 
             // Skip comments
             if (c == '/' && scanner.peekNext() == '/') {
+                int start = scanner.getPos();
                 scanner.advance(2);
-                while (!scanner.isAtEnd() && scanner.peek() != '\n') {
-                    scanner.advance();
-                }
+                scanner.skipTo('\n');
+                scanner.markComment(start, scanner.getPos());
             } else if (c == '/' && scanner.peekNext() == '*') {
+                int start = scanner.getPos();
                 scanner.advance(2);
-                while (!scanner.isAtEnd() && !(scanner.peek() == '*' && scanner.peekNext() == '/')) {
-                    scanner.advance();
-                }
-                if (!scanner.isAtEnd()) {
-                    scanner.advance(2);
-                }
+                scanner.skipPast("*/");
+                scanner.markComment(start, scanner.getPos());
             } else if (c == '"' || c == '\'' || c == '`') {
                 skipString(scanner);
             } else if (c == '{') {
-                String lookback = scanner.substring(lastPos, scanner.getPos());
-                CodeNode node = applyRules(blockRules, lookback, lastPos)
-                        .orElse(new CodeNode(NodeType.BLOCK, "anonymous", lastPos));
+                String lookback = scanner.codeText(lastPos, scanner.getPos());
+                CodeNode node = identifyBlock(blockRules, lookback, lastPos, scopeStack);
                 
-                scopeStack.peek().addChild(node);
-                scopeStack.push(node);
-                scanner.advance();
+                if (skipBody(scanner, node, scopeStack, "\"'`")) {
+                    scopeStack.add(node);
+                } else {
+                    scopeStack.open(node);
+                    scanner.advance();
+                }
                 lastPos = scanner.getPos();
             } else if (c == '}') {
                 if (scopeStack.size() > 1) {
-                    CodeNode node = scopeStack.pop();
-                    node.setEndOffset(scanner.getPos() + 1);
-                    node.setContent(source.substring(node.getStartOffset(), node.getEndOffset()));
+                    scopeStack.close(scanner.getPos() + 1);
                 }
                 scanner.advance();
                 lastPos = scanner.getPos();
             } else if (c == ';' || c == '\n') {
-                String statement = scanner.substring(lastPos, scanner.getPos());
+                String statement = scanner.codeText(lastPos, scanner.getPos());
                 applyRules(statementRules, statement, lastPos).ifPresent(node -> {
                     node.setEndOffset(scanner.getPos());
-                    node.setContent(source.substring(node.getStartOffset(), node.getEndOffset()));
-                    scopeStack.peek().addChild(node);
+                    node.setContent(source, node.getStartOffset(), node.getEndOffset());
+                    scopeStack.add(node);
                 });
                 scanner.advance();
                 lastPos = scanner.getPos();
@@ -183,22 +184,21 @@ public class TSParser extends BaseParser {
             }
         }
         
-        finalizeScope(scopeStack, scanner.getPos(), source);
-        return root;
+        scopeStack.closeAll(scanner.getPos());
+        scopeStack.complete();
     }
 
     @Override
     protected boolean isMethodDeclaration(String text) {
         // Improved pattern for TypeScript methods, including generics, access modifiers and optional parameters.
         // Matches "methodName(", "methodName<T>(", "public methodName(", etc.
-        return text.matches("(?:^|.*\\s+)[a-zA-Z_][a-zA-Z0-9_]*\\s*(?:<.*>)?\\s*\\(.*\\).*");
+        return METHOD_DECLARATION_PATTERN.matcher(text).matches();
     }
 
     @Override
     protected String extractMethodName(String text) {
         // Handle methods with generics: methodName<T>(...)
-        Pattern pattern = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*)\\s*(?:<.*>)?\\s*\\(");
-        Matcher matcher = pattern.matcher(text);
+        Matcher matcher = METHOD_NAME_PATTERN.matcher(text);
         if (matcher.find()) {
             return matcher.group(1);
         }
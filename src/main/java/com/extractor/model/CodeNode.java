@@ -1,9 +1,14 @@
 package com.extractor.model;
 
+import java.nio.CharBuffer;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 public class CodeNode {
@@ -12,8 +17,20 @@ public class CodeNode {
     private int startOffset;
     private int endOffset;
     private String content;
-    private List<CodeNode> children = new ArrayList<>();
+    // Range-backed content: a shared reference to the parsed source plus offsets into it.
+    private String source;
+    private int contentStart;
+    private int contentEnd;
+    private List<CodeNode> children = new ChildList(this);
     private Map<String, Object> metadata = new HashMap<>();
+    private CodeNode parent;
+    // The tree's type index, once queried, and where this node's subtree sits in it. The
+    // range is written before the index, so reading the index first makes it visible.
+    private volatile TypeIndex index;
+    private int indexStart;
+    private int indexEnd;
+    // Set once this node is added to a second parent without leaving the first.
+    private boolean shared;
 
     public CodeNode(NodeType type, String name, int startOffset) {
         this.type = type;
@@ -35,9 +52,19 @@ public class CodeNode {
         }
     }
 
+    /**
+     * The node this one was last added to as a child, or {@code null} for a root. A node
+     * added to a second parent stays in the first parent's children as well, so both trees
+     * share its subtree.
+     */
+    public CodeNode getParent() { return parent; }
+
     // Getters and Setters
     public NodeType getType() { return type; }
-    public void setType(NodeType type) { this.type = type; }
+    public void setType(NodeType type) {
+        this.type = type;
+        changed();
+    }
 
     public String getName() { return name; }
     public void setName(String name) { this.name = name; }
@@ -48,8 +75,50 @@ public class CodeNode {
     public int getEndOffset() { return endOffset; }
     public void setEndOffset(int endOffset) { this.endOffset = endOffset; }
 
-    public String getContent() { return content; }
-    public void setContent(String content) { this.content = content; }
+    /**
+     * Returns the source text of this node. Range-backed content is copied out of the
+     * shared source on every call; use {@link #getContentView()} to avoid the copy.
+     */
+    public String getContent() {
+        if (source != null) {
+            return source.substring(contentStart, contentEnd);
+        }
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+        this.source = null;
+    }
+
+    /**
+     * Sets the content to {@code source[start, end)} without copying it.
+     */
+    public void setContent(String source, int start, int end) {
+        this.content = null;
+        this.source = source;
+        this.contentStart = start;
+        this.contentEnd = end;
+    }
+
+    /**
+     * Returns a read-only, zero-copy view of the content, or {@code null} if none is set.
+     */
+    public CharSequence getContentView() {
+        if (source != null) {
+            return CharBuffer.wrap(source, contentStart, contentEnd);
+        }
+        return content;
+    }
+
+    // Range accessors for CodeTree conversion; contentSource() is null unless range-backed.
+    String contentSource() { return source; }
+    int contentStart() { return contentStart; }
+    int contentEnd() { return contentEnd; }
+
+    public boolean hasContent() {
+        return source != null ? contentEnd > contentStart : content != null && !content.isEmpty();
+    }
 
     public List<CodeNode> getChildren() { return children; }
 
@@ -57,29 +126,75 @@ public class CodeNode {
         metadata.put(key, value);
     }
 
+    public Map<String, Object> getMetadata() { return metadata; }
+
+    /**
+     * Returns this node, if it has the given type, and every descendant of that type, in
+     * document order. The first query on any node of a tree indexes the whole tree by type,
+     * and later queries on any of its nodes are answered from that index until the tree
+     * changes. A tree that shares a subtree with another tree is walked on every query
+     * instead, since a change through the other tree would not reach its index.
+     */
     public List<CodeNode> findByType(NodeType type) {
-        List<CodeNode> result = new ArrayList<>();
-        if (this.type == type) {
-            result.add(this);
-        }
-        for (CodeNode child : children) {
-            result.addAll(child.findByType(type));
-        }
-        return result;
+        TypeIndex current = currentIndex();
+        return new ArrayList<>(current.find(type, current.start(this), current.end(this)));
     }
 
     /**
      * Returns a list of all descendant nodes (children, grandchildren, etc.)
-     * in a depth-first order.
+     * in a depth-first order. Like {@link #findByType}, it is served from the tree's index.
      * @return List of all descendant CodeNodes
      */
     public List<CodeNode> descendants() {
-        List<CodeNode> result = new ArrayList<>();
-        for (CodeNode child : children) {
-            result.add(child);
-            result.addAll(child.descendants());
+        TypeIndex current = currentIndex();
+        return new ArrayList<>(current.range(current.start(this) + 1, current.end(this)));
+    }
+
+    // The index of this node's tree; see TypeIndex for trees that share a subtree.
+    TypeIndex currentIndex() {
+        TypeIndex current = index;
+        if (current != null && current.isValid()) {
+            return current;
+        }
+        CodeNode top = this;
+        while (top.parent != null) {
+            top = top.parent;
+        }
+        // Threads querying one tree at once wait for a single build.
+        synchronized (top) {
+            current = index;
+            if (current != null && current.isValid()) {
+                return current;
+            }
+            TypeIndex built = TypeIndex.build(top);
+            // A node detached without being removed from its parent's list is not reached.
+            return index == built || built.isUnpublished(this) ? built : TypeIndex.build(this);
+        }
+    }
+
+    // Position of this node and end of its subtree in its published type index; read them
+    // through TypeIndex.start and TypeIndex.end.
+    int indexStart() { return indexStart; }
+    int indexEnd() { return indexEnd; }
+
+    boolean isShared() { return shared; }
+
+    void setIndexRange(int start, int end) {
+        this.indexStart = start;
+        this.indexEnd = end;
+    }
+
+    void publishIndex(TypeIndex index) {
+        this.index = index;
+    }
+
+    // Called on every change that can move this node's subtree in a type index.
+    private void changed() {
+        TypeIndex current = index;
+        if (current != null) {
+            current.invalidate();
+            index = null;
         }
-        return result;
     }
 
     public List<CodeNode> getClasses() {
@@ -105,8 +220,8 @@ public class CodeNode {
         map.put("start", startOffset);
         map.put("end", endOffset);
         
-        if (content != null && !content.isEmpty()) {
-            map.put("content", content);
+        if (hasContent()) {
+            map.put("content", getContent());
         }
 
         if (!children.isEmpty()) {
@@ -126,4 +241,134 @@ public class CodeNode {
     public String toString() {
         return String.format("%s: %s (%d-%d)", type, name, startOffset, endOffset);
     }
+
+    /**
+     * The child list of a node. Every change drops the type index of the node's tree, and
+     * added children point back at the node.
+     */
+    private static final class ChildList extends ArrayList<CodeNode> {
+        private static final long serialVersionUID = 1L;
+
+        private final CodeNode owner;
+
+        ChildList(CodeNode owner) {
+            this.owner = owner;
+        }
+
+        private CodeNode adopt(CodeNode child) {
+            if (child != null) {
+                if (child.parent != null && child.parent != owner) {
+                    // Now in two trees: drop the old tree's index and stop indexing either.
+                    child.changed();
+                    child.shared = true;
+                }
+                child.parent = owner;
+            }
+            return child;
+        }
+
+        @Override
+        public boolean add(CodeNode child) {
+            owner.changed();
+            return super.add(adopt(child));
+        }
+
+        @Override
+        public void add(int i, CodeNode child) {
+            owner.changed();
+            super.add(i, adopt(child));
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends CodeNode> c) {
+            owner.changed();
+            c.forEach(this::adopt);
+            return super.addAll(c);
+        }
+
+        @Override
+        public boolean addAll(int i, Collection<? extends CodeNode> c) {
+            owner.changed();
+            c.forEach(this::adopt);
+            return super.addAll(i, c);
+        }
+
+        @Override
+        public CodeNode set(int i, CodeNode child) {
+            owner.changed();
+            return super.set(i, adopt(child));
+        }
+
+        private void release(Object child) {
+            if (child instanceof CodeNode && ((CodeNode) child).parent == owner) {
+                ((CodeNode) child).parent = null;
+            }
+        }
+
+        @Override
+        public CodeNode remove(int i) {
+            owner.changed();
+            CodeNode child = super.remove(i);
+            release(child);
+            return child;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            owner.changed();
+            boolean removed = super.remove(o);
+            if (removed) release(o);
+            return removed;
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c) {
+            owner.changed();
+            return super.removeAll(c);
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c) {
+            owner.changed();
+            return super.retainAll(c);
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super CodeNode> filter) {
+            owner.changed();
+            return super.removeIf(filter);
+        }
+
+        @Override
+        public void replaceAll(UnaryOperator<CodeNode> operator) {
+            owner.changed();
+            super.replaceAll(child -> adopt(operator.apply(child)));
+        }
+
+        @Override
+        public void sort(Comparator<? super CodeNode> c) {
+            owner.changed();
+            super.sort(c);
+        }
+
+        @Override
+        public void clear() {
+            owner.changed();
+            forEach(this::release);
+            super.clear();
+        }
+
+        @Override
+        protected void removeRange(int from, int to) {
+            owner.changed();
+            super.removeRange(from, to);
+        }
+
+        // Views may write straight to the backing array, so handing one out counts as a change.
+        @Override
+        public List<CodeNode> subList(int from, int to) {
+            owner.changed();
+            return super.subList(from, to);
+        }
+    }
 }
@@ -0,0 +1,963 @@
+package com.extractor.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compact, array-backed alternative to a tree of {@link CodeNode} objects.
+ * <p>
+ * Nodes are plain indices; node 0 is the root. Each node costs one byte for its type and
+ * eight ints (offsets, links, name id and content range) instead of a {@code CodeNode}
+ * with its own child list and metadata map. Names are interned into a shared table and
+ * content is stored as a range over the source.
+ * <p>
+ * A tree built over a UTF-8 byte string (see {@link #withUtf8Source()}) keeps byte offsets
+ * in {@link #start}, {@link #end} and the content ranges. Names and content are decoded
+ * only when they are read, and {@link #charOffset} converts offsets on demand.
+ */
+public final class CodeTree {
+    public static final int NO_NODE = -1;
+
+    /** Version of the {@link #write} encoding; {@link #read} also reads version 1. */
+    public static final int ENCODING_VERSION = 2;
+    static final int ENCODING_MAGIC = 0x43585431; // "CXT1"
+    static final int SOURCE_NONE = 0;
+    static final int SOURCE_EXTERNAL = 1;
+    static final int SOURCE_EMBEDDED = 2;
+    static final int SOURCE_UTF8_FLAG = 0x10;
+    // Embedded source stored as UTF-16 chars rather than one byte per char.
+    static final int SOURCE_WIDE_FLAG = 0x20;
+    static final int CONTENT_NONE = 0;
+    static final int CONTENT_SPAN = 1;
+    static final int CONTENT_RANGE = 2;
+    static final int CONTENT_DETACHED = 3;
+    private static final int OFFSET_BLOCK_SHIFT = 6;
+
+    private static final NodeType[] TYPES = NodeType.values();
+
+    private final String source;
+    private final int size;
+    private final byte[] types;
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] nameIds;
+    private final int[] contentStarts;
+    private final int[] contentEnds;
+    private final String[] names;
+    // Rare cases: content that is not a range of the source, and node metadata.
+    private final Map<Integer, String> detachedContent;
+    private final Map<Integer, Map<String, Object>> metadata;
+    private final boolean utf8;
+    // UTF-16 offset at the start of each 64-byte block of a UTF-8 source, built on first use.
+    private int[] blockCharOffsets;
+
+    private CodeTree(Builder b) {
+        this.source = b.source;
+        this.size = b.size;
+        this.types = Arrays.copyOf(b.types, size);
+        this.starts = Arrays.copyOf(b.starts, size);
+        this.ends = Arrays.copyOf(b.ends, size);
+        this.parents = Arrays.copyOf(b.parents, size);
+        this.firstChildren = Arrays.copyOf(b.firstChildren, size);
+        this.nextSiblings = Arrays.copyOf(b.nextSiblings, size);
+        this.nameIds = Arrays.copyOf(b.nameIds, size);
+        this.contentStarts = Arrays.copyOf(b.contentStarts, size);
+        this.contentEnds = Arrays.copyOf(b.contentEnds, size);
+        this.names = b.names.toArray(new String[0]);
+        this.detachedContent = b.detachedContent;
+        this.metadata = b.metadata;
+        this.utf8 = false;
+    }
+
+    private CodeTree(CodeTree tree, boolean utf8) {
+        this.source = tree.source;
+        this.size = tree.size;
+        this.types = tree.types;
+        this.starts = tree.starts;
+        this.ends = tree.ends;
+        this.parents = tree.parents;
+        this.firstChildren = tree.firstChildren;
+        this.nextSiblings = tree.nextSiblings;
+        this.nameIds = tree.nameIds;
+        this.contentStarts = tree.contentStarts;
+        this.contentEnds = tree.contentEnds;
+        this.names = tree.names;
+        this.detachedContent = tree.detachedContent;
+        this.metadata = tree.metadata;
+        this.utf8 = utf8;
+    }
+
+    public static Builder builder(String source) {
+        return new Builder(source);
+    }
+
+    /**
+     * Returns the parsed source. For a UTF-8 tree this holds one byte per char; decode
+     * it with {@link #decodeUtf8} or read content through {@link #content}.
+     */
+    public String getSource() { return source; }
+    public int size() { return size; }
+    public int root() { return size == 0 ? NO_NODE : 0; }
+    public boolean isUtf8() { return utf8; }
+
+    public NodeType type(int node) { return TYPES[types[node]]; }
+
+    public String name(int node) {
+        if (nameIds[node] < 0) return null;
+        String name = names[nameIds[node]];
+        return utf8 ? decodeUtf8(name, 0, name.length()) : name;
+    }
+
+    public int nameId(int node) { return nameIds[node]; }
+    public int start(int node) { return starts[node]; }
+    public int end(int node) { return ends[node]; }
+    public int parent(int node) { return parents[node]; }
+    public int firstChild(int node) { return firstChildren[node]; }
+    public int nextSibling(int node) { return nextSiblings[node]; }
+
+    /**
+     * Returns the content of {@code node}, or {@code null} if it has none.
+     */
+    public String content(int node) {
+        if (contentStarts[node] >= 0) {
+            return utf8 ? decodeUtf8(source, contentStarts[node], contentEnds[node])
+                    : source.substring(contentStarts[node], contentEnds[node]);
+        }
+        String detached = detachedContent.get(node);
+        return utf8 && detached != null ? decodeUtf8(detached, 0, detached.length()) : detached;
+    }
+
+    /**
+     * Zero-copy variant of {@link #content(int)}. Content of a UTF-8 tree that is not pure
+     * ASCII has to be decoded and is returned as a new String.
+     */
+    public CharSequence contentView(int node) {
+        if (contentStarts[node] >= 0) {
+            if (utf8 && !isAscii(source, contentStarts[node], contentEnds[node])) {
+                return decodeUtf8(source, contentStarts[node], contentEnds[node]);
+            }
+            return CharBuffer.wrap(source, contentStarts[node], contentEnds[node]);
+        }
+        return content(node);
+    }
+
+    /**
+     * Returns this tree marked as parsed from a source holding one UTF-8 byte per char, as
+     * produced by reading the bytes as ISO-8859-1. The node arrays are shared, not copied.
+     */
+    public CodeTree withUtf8Source() {
+        return utf8 ? this : new CodeTree(this, true);
+    }
+
+    /**
+     * Converts an offset into the source to a UTF-16 char offset into the decoded text.
+     * The identity for trees that are not UTF-8. Offsets inside a multi-byte sequence map
+     * to the char that sequence decodes to.
+     */
+    public int charOffset(int offset) {
+        if (!utf8 || source == null) return offset;
+        int[] blocks = blockCharOffsets;
+        if (blocks == null) {
+            blocks = new int[(source.length() >> OFFSET_BLOCK_SHIFT) + 1];
+            int chars = 0;
+            for (int i = 0; i < source.length(); i++) {
+                if ((i & ((1 << OFFSET_BLOCK_SHIFT) - 1)) == 0) {
+                    blocks[i >> OFFSET_BLOCK_SHIFT] = chars;
+                }
+                chars += utf16Units(source.charAt(i));
+            }
+            // A source filling its last block exactly ends at the start of one more.
+            if ((source.length() & ((1 << OFFSET_BLOCK_SHIFT) - 1)) == 0) {
+                blocks[blocks.length - 1] = chars;
+            }
+            blockCharOffsets = blocks;
+        }
+        int end = Math.min(offset, source.length());
+        int block = end >> OFFSET_BLOCK_SHIFT;
+        int chars = blocks[block];
+        for (int i = block << OFFSET_BLOCK_SHIFT; i < end; i++) {
+            chars += utf16Units(source.charAt(i));
+        }
+        return chars;
+    }
+
+    /**
+     * Decodes {@code bytes[start, end)}, a string holding one UTF-8 byte per char.
+     * Malformed sequences become U+FFFD.
+     */
+    public static String decodeUtf8(String bytes, int start, int end) {
+        if (isAscii(bytes, start, end)) {
+            return bytes.substring(start, end);
+        }
+        byte[] raw = bytes.substring(start, end).getBytes(StandardCharsets.ISO_8859_1);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isAscii(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) >= 0x80) return false;
+        }
+        return true;
+    }
+
+    // Number of UTF-16 chars a UTF-8 sequence starting with this byte decodes to.
+    private static int utf16Units(char b) {
+        if (b < 0x80) return 1;
+        if (b < 0xC0) return 0; // continuation byte
+        return b >= 0xF0 ? 2 : 1;
+    }
+
+    /**
+     * Rough heap footprint of this tree including its source, for cache accounting.
+     */
+    public long estimatedBytes() {
+        long bytes = 64L + (long) size * 33 + (source == null ? 0 : 40L + 2L * source.length());
+        for (String name : names) {
+            bytes += 40L + 2L * name.length();
+        }
+        for (String content : detachedContent.values()) {
+            bytes += 72L + (content == null ? 0 : 2L * content.length());
+        }
+        return bytes + 96L * metadata.size();
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Walks the tree depth-first in document order without recursion. Children of a node
+     * are skipped when {@link Visitor#enter} returns {@code false}.
+     */
+    public void accept(Visitor visitor) {
+        if (size == 0) return;
+        int node = 0;
+        while (true) {
+            if (visitor.enter(this, node) && firstChildren[node] != NO_NODE) {
+                node = firstChildren[node];
+                continue;
+            }
+            while (true) {
+                visitor.exit(this, node);
+                if (node == 0) return;
+                if (nextSiblings[node] != NO_NODE) {
+                    node = nextSiblings[node];
+                    break;
+                }
+                node = parents[node];
+            }
+        }
+    }
+
+    /**
+     * Materializes the tree as {@link CodeNode} objects for callers of the object API.
+     * Content stays range-backed, so no source text is copied.
+     */
+    public CodeNode toCodeNode() {
+        if (size == 0) return null;
+        // UTF-8 trees are decoded once and converted to char offsets, so the result is the
+        // same as parsing the decoded text.
+        String text = utf8 && source != null ? decodeUtf8(source, 0, source.length()) : source;
+        CodeNode[] nodes = new CodeNode[size];
+        for (int i = 0; i < size; i++) {
+            CodeNode node = new CodeNode(type(i), name(i), charOffset(starts[i]), charOffset(ends[i]));
+            if (contentStarts[i] >= 0) {
+                node.setContent(text, charOffset(contentStarts[i]), charOffset(contentEnds[i]));
+            } else if (detachedContent.containsKey(i)) {
+                node.setContent(content(i));
+            }
+            Map<String, Object> meta = metadata.get(i);
+            if (meta != null) {
+                meta.forEach(node::addMetadata);
+            }
+            nodes[i] = node;
+            // A parent is always added before its children, so its CodeNode already exists.
+            if (parents[i] != NO_NODE) {
+                nodes[parents[i]].addChild(node);
+            }
+        }
+        return nodes[0];
+    }
+
+    /**
+     * Converts an existing {@link CodeNode} tree. Content ranges over the root's source are
+     * kept as ranges; any other content is stored as-is.
+     */
+    public static CodeTree from(CodeNode root) {
+        return from(root, root.contentSource() != null ? root.contentSource() : root.getContent());
+    }
+
+    /**
+     * Converts a tree parsed from {@code source}. The result keeps {@code source} even when
+     * the root has no content, so a UTF-8 tree can still convert its offsets.
+     */
+    public static CodeTree from(CodeNode root, String source) {
+        Builder builder = new Builder(source);
+
+        List<CodeNode> stack = new ArrayList<>();
+        List<Integer> parentStack = new ArrayList<>();
+        stack.add(root);
+        parentStack.add(NO_NODE);
+        while (!stack.isEmpty()) {
+            CodeNode node = stack.remove(stack.size() - 1);
+            int parent = parentStack.remove(parentStack.size() - 1);
+            int id = builder.add(parent, node.getType(), node.getName(), node.getStartOffset(), node.getEndOffset());
+            builder.copyFrom(id, node);
+
+            List<CodeNode> children = node.getChildren();
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.add(children.get(i));
+                parentStack.add(id);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Writes the tree without its source, which the reader supplies again.
+     */
+    public void write(DataOutput out) throws IOException {
+        write(out, false);
+    }
+
+    /**
+     * Writes the tree, embedding its source text if {@code embedSource} is set. Metadata
+     * values must be strings, numbers or booleans.
+     * <p>
+     * Integers are unsigned LEB128 varints, signed ones zigzag-encoded. After the magic
+     * number, the version byte and the source mode come the table of the node types used,
+     * the name table, the embedded source if any (one byte per char, or two when it holds
+     * chars above U+00FF), then the node records, length-prefixed, in pre-order. A record
+     * holds the type and name ids, the start relative to the parent's start, the length,
+     * the content (none, the node's own span, a range, or detached), the number of
+     * descendants and the byte length of their records, so a reader can step over a
+     * subtree without decoding it (see {@link MappedCodeTree}). Detached content and
+     * metadata follow, keyed by pre-order index.
+     */
+    public void write(DataOutput out, boolean embedSource) throws IOException {
+        out.writeInt(ENCODING_MAGIC);
+        out.writeByte(ENCODING_VERSION);
+        boolean embedded = embedSource && source != null;
+        boolean wide = embedded && !isLatin1(source);
+        int flags = (utf8 ? SOURCE_UTF8_FLAG : 0) | (wide ? SOURCE_WIDE_FLAG : 0);
+        if (source == null) {
+            out.writeByte(SOURCE_NONE | flags);
+        } else {
+            out.writeByte((embedded ? SOURCE_EMBEDDED : SOURCE_EXTERNAL) | flags);
+            writeVarint(out, source.length());
+        }
+
+        // Pre-order, which the node indices need not follow when nodes were added out of order.
+        int[] order = new int[size];
+        int[] positions = new int[size];
+        int count = 0;
+        if (size > 0) {
+            int node = 0;
+            while (true) {
+                positions[node] = count;
+                order[count++] = node;
+                if (firstChildren[node] != NO_NODE) {
+                    node = firstChildren[node];
+                    continue;
+                }
+                while (node != 0 && nextSiblings[node] == NO_NODE) node = parents[node];
+                if (node == 0) break;
+                node = nextSiblings[node];
+            }
+        }
+
+        int[] typeIds = new int[TYPES.length];
+        Arrays.fill(typeIds, -1);
+        List<NodeType> usedTypes = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            int type = types[order[i]];
+            if (typeIds[type] < 0) {
+                typeIds[type] = usedTypes.size();
+                usedTypes.add(TYPES[type]);
+            }
+        }
+        writeVarint(out, usedTypes.size());
+        for (NodeType type : usedTypes) {
+            writeString(out, type.name());
+        }
+        writeVarint(out, names.length);
+        for (String name : names) {
+            writeString(out, name);
+        }
+        if (embedded) {
+            if (wide) {
+                out.writeChars(source);
+            } else {
+                out.writeBytes(source);
+            }
+        }
+
+        // Each record's own fields first; subtree sizes are summed bottom-up from them.
+        ByteArrayOutputStream fields = new ByteArrayOutputStream(count * 8);
+        DataOutputStream fieldsOut = new DataOutputStream(fields);
+        int[] fieldEnds = new int[count];
+        for (int i = 0; i < count; i++) {
+            int node = order[i];
+            int parentStart = parents[node] == NO_NODE ? 0 : starts[parents[node]];
+            writeVarint(fieldsOut, typeIds[types[node]]);
+            writeVarint(fieldsOut, nameIds[node] + 1);
+            writeVarint(fieldsOut, zigzag(starts[node] - parentStart));
+            writeVarint(fieldsOut, zigzag(ends[node] - starts[node]));
+            if (contentStarts[node] >= 0) {
+                if (contentStarts[node] == starts[node] && contentEnds[node] == ends[node]) {
+                    writeVarint(fieldsOut, CONTENT_SPAN);
+                } else {
+                    writeVarint(fieldsOut, CONTENT_RANGE);
+                    writeVarint(fieldsOut, zigzag(contentStarts[node] - starts[node]));
+                    writeVarint(fieldsOut, contentEnds[node] - contentStarts[node]);
+                }
+            } else {
+                writeVarint(fieldsOut, detachedContent.containsKey(node) ? CONTENT_DETACHED : CONTENT_NONE);
+            }
+            fieldEnds[i] = fields.size();
+        }
+        byte[] fieldBytes = fields.toByteArray();
+        int[] descendants = new int[count];
+        int[] subtreeBytes = new int[count];
+        int total = 0;
+        for (int i = count - 1; i >= 0; i--) {
+            int own = fieldEnds[i] - (i == 0 ? 0 : fieldEnds[i - 1]);
+            int record = own + varintSize(descendants[i]) + varintSize(subtreeBytes[i]) + subtreeBytes[i];
+            int parent = parents[order[i]];
+            if (parent == NO_NODE) {
+                total += record;
+            } else {
+                descendants[positions[parent]] += 1 + descendants[i];
+                subtreeBytes[positions[parent]] += record;
+            }
+        }
+        writeVarint(out, count);
+        writeVarint(out, total);
+        for (int i = 0; i < count; i++) {
+            int from = i == 0 ? 0 : fieldEnds[i - 1];
+            out.write(fieldBytes, from, fieldEnds[i] - from);
+            writeVarint(out, descendants[i]);
+            writeVarint(out, subtreeBytes[i]);
+        }
+
+        writeVarint(out, detachedContent.size());
+        for (Map.Entry<Integer, String> e : detachedContent.entrySet()) {
+            writeVarint(out, positions[e.getKey()]);
+            writeNullableString(out, e.getValue());
+        }
+        writeVarint(out, metadata.size());
+        for (Map.Entry<Integer, Map<String, Object>> e : metadata.entrySet()) {
+            writeVarint(out, positions[e.getKey()]);
+            writeMetadata(out, e.getValue());
+        }
+    }
+
+    /**
+     * Reads a tree written by {@link #write}, in the current encoding or in version 1.
+     * {@code source} is used unless the tree was written with its source embedded or
+     * without any source.
+     *
+     * @throws IOException if the data is malformed, of an unknown encoding version, or was
+     *                     written for a source of a different length
+     */
+    public static CodeTree read(DataInput in, String source) throws IOException {
+        if (in.readInt() != ENCODING_MAGIC) {
+            throw new IOException("Not an encoded code tree");
+        }
+        int version = in.readUnsignedByte();
+        if (version != 1 && version != ENCODING_VERSION) {
+            throw new IOException("Unsupported code tree encoding version: " + version);
+        }
+        int sourceMode = in.readUnsignedByte();
+        boolean utf8 = (sourceMode & SOURCE_UTF8_FLAG) != 0;
+        boolean wide = (sourceMode & SOURCE_WIDE_FLAG) != 0;
+        sourceMode &= ~(SOURCE_UTF8_FLAG | SOURCE_WIDE_FLAG);
+        int sourceLength = -1;
+        if (sourceMode == SOURCE_NONE) {
+            source = null;
+        } else if (sourceMode == SOURCE_EMBEDDED) {
+            // Version 1 embeds the source as a UTF-8 string here; version 2 after the name table.
+            if (version == 1) {
+                source = readString(in);
+            } else {
+                sourceLength = readVarint(in);
+            }
+        } else if (sourceMode != SOURCE_EXTERNAL) {
+            throw new IOException("Unknown source mode: " + sourceMode);
+        } else if (source == null || readVarint(in) != source.length()) {
+            throw new IOException("Encoded tree does not match the source length");
+        }
+        CodeTree tree = version == 1 ? readVersion1(in, source) : readVersion2(in, source, sourceLength, wide);
+        return utf8 ? tree.withUtf8Source() : tree;
+    }
+
+    private static CodeTree readVersion1(DataInput in, String source) throws IOException {
+        String[] names = readNames(in);
+        Builder builder = new Builder(source);
+        int size = readVarint(in);
+        for (int i = 0; i < size; i++) {
+            int type = in.readUnsignedByte();
+            int parent = readVarint(in) - 1;
+            int start = readVarint(in);
+            int end = readVarint(in);
+            int nameId = readVarint(in) - 1;
+            int contentStart = readVarint(in) - 1;
+            if (type >= TYPES.length || parent >= i || nameId >= names.length) {
+                throw new IOException("Corrupt code tree at node " + i);
+            }
+            int id = builder.add(parent, TYPES[type], nameId < 0 ? null : names[nameId], start, end);
+            if (contentStart >= 0) {
+                int contentEnd = readVarint(in);
+                if (source == null || contentEnd > source.length() || contentStart > contentEnd) {
+                    throw new IOException("Corrupt content range at node " + i);
+                }
+                builder.setContent(id, contentStart, contentEnd);
+            }
+        }
+        readTail(in, builder, size);
+        return builder.build();
+    }
+
+    private static CodeTree readVersion2(DataInput in, String source, int embeddedLength, boolean wide)
+            throws IOException {
+        NodeType[] types = readTypes(in);
+        String[] names = readNames(in);
+        if (embeddedLength >= 0) {
+            if (wide) {
+                char[] chars = new char[embeddedLength];
+                for (int i = 0; i < embeddedLength; i++) chars[i] = in.readChar();
+                source = new String(chars);
+            } else {
+                byte[] bytes = new byte[embeddedLength];
+                in.readFully(bytes);
+                source = new String(bytes, StandardCharsets.ISO_8859_1);
+            }
+        }
+
+        Builder builder = new Builder(source);
+        int size = readVarint(in);
+        readVarint(in); // byte length of the records, only needed to skip them
+        // Ancestors of the next record, with the index of their last descendant.
+        int[] open = new int[16];
+        int[] lastDescendants = new int[16];
+        int depth = 0;
+        for (int i = 0; i < size; i++) {
+            while (depth > 0 && lastDescendants[depth - 1] < i) depth--;
+            if (i > 0 && depth == 0) {
+                throw new IOException("Corrupt code tree at node " + i);
+            }
+            int parent = depth == 0 ? NO_NODE : open[depth - 1];
+            int type = readVarint(in);
+            int nameId = readVarint(in) - 1;
+            int start = (parent == NO_NODE ? 0 : builder.starts[parent]) + unzigzag(readVarint(in));
+            int end = start + unzigzag(readVarint(in));
+            if (type >= types.length || nameId >= names.length) {
+                throw new IOException("Corrupt code tree at node " + i);
+            }
+            int id = builder.add(parent, types[type], nameId < 0 ? null : names[nameId], start, end);
+            int content = readVarint(in);
+            if (content == CONTENT_SPAN || content == CONTENT_RANGE) {
+                int contentStart = start;
+                int contentEnd = end;
+                if (content == CONTENT_RANGE) {
+                    contentStart = start + unzigzag(readVarint(in));
+                    contentEnd = contentStart + readVarint(in);
+                }
+                if (source == null || contentStart < 0 || contentEnd > source.length() || contentStart > contentEnd) {
+                    throw new IOException("Corrupt content range at node " + i);
+                }
+                builder.setContent(id, contentStart, contentEnd);
+            } else if (content != CONTENT_NONE && content != CONTENT_DETACHED) {
+                throw new IOException("Corrupt content at node " + i);
+            }
+            int last = i + readVarint(in);
+            readVarint(in);
+            if (last >= size || (depth > 0 && last > lastDescendants[depth - 1])) {
+                throw new IOException("Corrupt code tree at node " + i);
+            }
+            if (depth == open.length) {
+                open = Arrays.copyOf(open, depth * 2);
+                lastDescendants = Arrays.copyOf(lastDescendants, depth * 2);
+            }
+            open[depth] = id;
+            lastDescendants[depth++] = last;
+        }
+        readTail(in, builder, size);
+        return builder.build();
+    }
+
+    static NodeType[] readTypes(DataInput in) throws IOException {
+        NodeType[] types = new NodeType[readVarint(in)];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = typeNamed(readString(in));
+        }
+        return types;
+    }
+
+    // Types unknown to this version, such as ones since removed, read as UNKNOWN.
+    private static NodeType typeNamed(String name) {
+        for (NodeType type : TYPES) {
+            if (type.name().equals(name)) return type;
+        }
+        return NodeType.UNKNOWN;
+    }
+
+    static String[] readNames(DataInput in) throws IOException {
+        String[] names = new String[readVarint(in)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = readString(in);
+        }
+        return names;
+    }
+
+    // Detached content and metadata, the same in both versions.
+    private static void readTail(DataInput in, Builder builder, int size) throws IOException {
+        int detached = readVarint(in);
+        for (int i = 0; i < detached; i++) {
+            builder.setDetachedContent(readNode(in, size), readNullableString(in));
+        }
+        int withMetadata = readVarint(in);
+        for (int i = 0; i < withMetadata; i++) {
+            builder.metadata.put(readNode(in, size), readMetadata(in));
+        }
+    }
+
+    private static void writeMetadata(DataOutput out, Map<String, Object> meta) throws IOException {
+        writeVarint(out, meta.size());
+        for (Map.Entry<String, Object> m : meta.entrySet()) {
+            writeString(out, m.getKey());
+            writeValue(out, m.getValue());
+        }
+    }
+
+    static Map<String, Object> readMetadata(DataInput in) throws IOException {
+        int count = readVarint(in);
+        Map<String, Object> meta = new HashMap<>();
+        for (int j = 0; j < count; j++) {
+            meta.put(readString(in), readValue(in));
+        }
+        return meta;
+    }
+
+    private static boolean isLatin1(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0xFF) return false;
+        }
+        return true;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varintSize(int value) {
+        int bytes = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            bytes++;
+        }
+        return bytes;
+    }
+
+    private static void writeVarint(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarint(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static int readNode(DataInput in, int size) throws IOException {
+        int node = readVarint(in);
+        if (node >= size) throw new IOException("Node index out of range: " + node);
+        return node;
+    }
+
+    private static void writeString(DataOutput out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarint(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableString(DataOutput out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) writeString(out, s);
+    }
+
+    static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(0);
+        } else if (value instanceof String) {
+            out.writeByte(1);
+            writeString(out, (String) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(2);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(3);
+            out.writeLong((Long) value);
+        } else if (value instanceof Double) {
+            out.writeByte(4);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(5);
+            out.writeBoolean((Boolean) value);
+        } else {
+            throw new IOException("Unsupported metadata value type: " + value.getClass().getName());
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 0: return null;
+            case 1: return readString(in);
+            case 2: return in.readInt();
+            case 3: return in.readLong();
+            case 4: return in.readDouble();
+            case 5: return in.readBoolean();
+            default: throw new IOException("Unknown metadata value tag: " + tag);
+        }
+    }
+
+    /**
+     * Callback interface for {@link #accept(Visitor)}.
+     */
+    public interface Visitor {
+        boolean enter(CodeTree tree, int node);
+
+        default void exit(CodeTree tree, int node) {
+        }
+    }
+
+    /**
+     * A movable pointer into the tree, in the style of a tree-sitter cursor.
+     */
+    public final class Cursor {
+        private int node = root();
+
+        public int node() { return node; }
+        public NodeType type() { return CodeTree.this.type(node); }
+        public String name() { return CodeTree.this.name(node); }
+        public int start() { return starts[node]; }
+        public int end() { return ends[node]; }
+        public String content() { return CodeTree.this.content(node); }
+
+        public boolean gotoFirstChild() {
+            return moveTo(firstChildren[node]);
+        }
+
+        public boolean gotoNextSibling() {
+            return moveTo(nextSiblings[node]);
+        }
+
+        public boolean gotoParent() {
+            return moveTo(parents[node]);
+        }
+
+        public void reset(int node) {
+            this.node = node;
+        }
+
+        private boolean moveTo(int target) {
+            if (target == NO_NODE) return false;
+            node = target;
+            return true;
+        }
+    }
+
+    /**
+     * Appends nodes in pre-order. Parsers can emit into it directly with
+     * {@link #enter}/{@link #exit}/{@link #leaf}, or attach nodes to an explicit parent
+     * with {@link #add}.
+     */
+    public static final class Builder {
+        private final String source;
+        private int size;
+        private byte[] types = new byte[16];
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int[] parents = new int[16];
+        private int[] firstChildren = new int[16];
+        private int[] nextSiblings = new int[16];
+        private int[] lastChildren = new int[16];
+        private int[] nameIds = new int[16];
+        private int[] contentStarts = new int[16];
+        private int[] contentEnds = new int[16];
+        private final List<String> names = new ArrayList<>();
+        private final Map<String, Integer> nameIndex = new HashMap<>();
+        private final Map<Integer, String> detachedContent = new HashMap<>();
+        private final Map<Integer, Map<String, Object>> metadata = new HashMap<>();
+        private int[] openStack = new int[8];
+        private int openDepth;
+
+        private Builder(String source) {
+            this.source = source;
+        }
+
+        /**
+         * Adds a node as the last child of {@code parent}, or as the root when
+         * {@code parent} is {@link #NO_NODE}, and returns its index.
+         */
+        public int add(int parent, NodeType type, String name, int start, int end) {
+            ensureCapacity(size + 1);
+            int id = size++;
+            types[id] = (byte) type.ordinal();
+            starts[id] = start;
+            ends[id] = end;
+            parents[id] = parent;
+            firstChildren[id] = NO_NODE;
+            nextSiblings[id] = NO_NODE;
+            lastChildren[id] = NO_NODE;
+            nameIds[id] = intern(name);
+            contentStarts[id] = -1;
+            if (parent != NO_NODE) {
+                if (lastChildren[parent] == NO_NODE) {
+                    firstChildren[parent] = id;
+                } else {
+                    nextSiblings[lastChildren[parent]] = id;
+                }
+                lastChildren[parent] = id;
+            }
+            return id;
+        }
+
+        /**
+         * Adds a node under the innermost open node and opens it.
+         */
+        public int enter(NodeType type, String name, int start) {
+            int id = add(currentNode(), type, name, start, start);
+            if (openDepth == openStack.length) {
+                openStack = Arrays.copyOf(openStack, openDepth * 2);
+            }
+            openStack[openDepth++] = id;
+            return id;
+        }
+
+        /**
+         * Closes the innermost open node at {@code end} and returns its index.
+         */
+        public int exit(int end) {
+            if (openDepth == 0) {
+                throw new IllegalStateException("No open node to exit");
+            }
+            int id = openStack[--openDepth];
+            ends[id] = end;
+            return id;
+        }
+
+        /**
+         * Adds a closed node under the innermost open node.
+         */
+        public int leaf(NodeType type, String name, int start, int end) {
+            return add(currentNode(), type, name, start, end);
+        }
+
+        public int currentNode() {
+            return openDepth == 0 ? NO_NODE : openStack[openDepth - 1];
+        }
+
+        public void setType(int node, NodeType type) {
+            types[node] = (byte) type.ordinal();
+        }
+
+        public void setEnd(int node, int end) {
+            ends[node] = end;
+        }
+
+        public void setContent(int node, int start, int end) {
+            contentStarts[node] = start;
+            contentEnds[node] = end;
+            detachedContent.remove(node);
+        }
+
+        public void setDetachedContent(int node, String content) {
+            contentStarts[node] = -1;
+            detachedContent.put(node, content);
+        }
+
+        /**
+         * Gives {@code node} the content and metadata of {@code from}. Content over this
+         * builder's source is kept as a range; any other content is stored as-is.
+         */
+        public void copyFrom(int node, CodeNode from) {
+            if (source != null && from.contentSource() == source) {
+                setContent(node, from.contentStart(), from.contentEnd());
+            } else if (source != null && from.contentSource() == null && from.getContent() == source) {
+                setContent(node, 0, source.length());
+            } else if (from.getContentView() != null) {
+                setDetachedContent(node, from.getContent());
+            }
+            if (!from.getMetadata().isEmpty()) {
+                metadata.put(node, new HashMap<>(from.getMetadata()));
+            }
+        }
+
+        public CodeTree build() {
+            return new CodeTree(this);
+        }
+
+        private int intern(String name) {
+            if (name == null) return -1;
+            Integer id = nameIndex.get(name);
+            if (id == null) {
+                id = names.size();
+                names.add(name);
+                nameIndex.put(name, id);
+            }
+            return id;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= types.length) return;
+            int n = Math.max(capacity, types.length * 2);
+            types = Arrays.copyOf(types, n);
+            starts = Arrays.copyOf(starts, n);
+            ends = Arrays.copyOf(ends, n);
+            parents = Arrays.copyOf(parents, n);
+            firstChildren = Arrays.copyOf(firstChildren, n);
+            nextSiblings = Arrays.copyOf(nextSiblings, n);
+            lastChildren = Arrays.copyOf(lastChildren, n);
+            nameIds = Arrays.copyOf(nameIds, n);
+            contentStarts = Arrays.copyOf(contentStarts, n);
+            contentEnds = Arrays.copyOf(contentEnds, n);
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package com.extractor.model;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a tree in the {@link CodeTree#write} encoding straight from a buffer, usually a
+ * memory-mapped file, without deserializing it. Opening decodes only the header and the
+ * type and name tables. A {@link Cursor} decodes a node record when it reaches it and
+ * steps over a whole subtree by its recorded byte length, and content is decoded from the
+ * embedded source only when asked for. Detached content and metadata are read on first use.
+ * <p>
+ * Nodes are numbered in pre-order. Offsets are those of the written tree, so byte offsets
+ * for a UTF-8 tree. Only version 2 data can be read this way; {@link CodeTree#read} also
+ * reads version 1. Instances are safe to share between threads; cursors are not.
+ */
+public final class MappedCodeTree {
+    private final ByteBuffer buffer;
+    private final String source;
+    private final boolean utf8;
+    private final boolean wide;
+    // Position of the embedded source, or -1 when the source was not embedded.
+    private final int sourceStart;
+    private final int sourceLength;
+    private final NodeType[] types;
+    private final String[] names;
+    private final int size;
+    private final int nodesStart;
+    private final int nodesEnd;
+    private volatile Map<Integer, String> detachedContent;
+    private volatile Map<Integer, Map<String, Object>> metadata;
+
+    private MappedCodeTree(ByteBuffer buffer, String externalSource) throws IOException {
+        this.buffer = buffer;
+        BufferInput input = new BufferInput(buffer, 0);
+        DataInputStream in = new DataInputStream(input);
+        if (in.readInt() != CodeTree.ENCODING_MAGIC) {
+            throw new IOException("Not an encoded code tree");
+        }
+        int version = in.readUnsignedByte();
+        if (version != CodeTree.ENCODING_VERSION) {
+            throw new IOException("Only encoding version " + CodeTree.ENCODING_VERSION
+                    + " can be mapped, found " + version + "; use CodeTree.read");
+        }
+        int sourceMode = in.readUnsignedByte();
+        this.utf8 = (sourceMode & CodeTree.SOURCE_UTF8_FLAG) != 0;
+        this.wide = (sourceMode & CodeTree.SOURCE_WIDE_FLAG) != 0;
+        sourceMode &= ~(CodeTree.SOURCE_UTF8_FLAG | CodeTree.SOURCE_WIDE_FLAG);
+        int length = sourceMode == CodeTree.SOURCE_NONE ? 0 : CodeTree.readVarint(in);
+        if (sourceMode == CodeTree.SOURCE_EXTERNAL && (externalSource == null || externalSource.length() != length)) {
+            throw new IOException("Encoded tree does not match the source length");
+        } else if (sourceMode > CodeTree.SOURCE_EMBEDDED) {
+            throw new IOException("Unknown source mode: " + sourceMode);
+        }
+        this.source = sourceMode == CodeTree.SOURCE_EXTERNAL ? externalSource : null;
+        this.sourceLength = sourceMode == CodeTree.SOURCE_NONE ? -1 : length;
+        this.types = CodeTree.readTypes(in);
+        this.names = CodeTree.readNames(in);
+        if (sourceMode == CodeTree.SOURCE_EMBEDDED) {
+            this.sourceStart = input.position();
+            input.skip((long) length * (wide ? 2 : 1));
+        } else {
+            this.sourceStart = -1;
+        }
+        this.size = CodeTree.readVarint(in);
+        int nodeBytes = CodeTree.readVarint(in);
+        this.nodesStart = input.position();
+        this.nodesEnd = nodesStart + nodeBytes;
+        if (nodeBytes < 0 || nodesEnd > buffer.limit() || (size == 0) != (nodeBytes == 0)) {
+            throw new IOException("Truncated code tree");
+        }
+    }
+
+    /**
+     * Maps {@code file} read-only. The mapping stays valid after the channel is closed.
+     */
+    public static MappedCodeTree open(Path file) throws IOException {
+        return open(file, null);
+    }
+
+    /**
+     * Maps {@code file}, reading content from {@code source} if it was written without it.
+     */
+    public static MappedCodeTree open(Path file, String source) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), source);
+        }
+    }
+
+    /**
+     * Reads the tree from {@code buffer}, starting at index 0. The buffer must not change
+     * while the tree is in use.
+     */
+    public static MappedCodeTree wrap(ByteBuffer buffer, String source) throws IOException {
+        return new MappedCodeTree(buffer, source);
+    }
+
+    public int size() { return size; }
+    public boolean isUtf8() { return utf8; }
+
+    /**
+     * Whether content can be read, from the embedded or the supplied source.
+     */
+    public boolean hasSource() { return sourceLength >= 0; }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    private String name(int nameId) {
+        if (nameId < 0) return null;
+        String name = names[nameId];
+        return utf8 ? CodeTree.decodeUtf8(name, 0, name.length()) : name;
+    }
+
+    private String text(int start, int end) {
+        if (source != null) {
+            return utf8 ? CodeTree.decodeUtf8(source, start, end) : source.substring(start, end);
+        }
+        if (sourceStart < 0) return null;
+        if (wide) {
+            char[] chars = new char[end - start];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = buffer.getChar(sourceStart + 2 * (start + i));
+            }
+            return new String(chars);
+        }
+        byte[] bytes = new byte[end - start];
+        buffer.get(sourceStart + start, bytes);
+        return new String(bytes, utf8 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+    }
+
+    private Map<Integer, String> detachedContent() {
+        if (detachedContent == null) readTail();
+        return detachedContent;
+    }
+
+    private Map<Integer, Map<String, Object>> metadata() {
+        if (metadata == null) readTail();
+        return metadata;
+    }
+
+    private synchronized void readTail() {
+        if (metadata != null) return;
+        try {
+            DataInputStream in = new DataInputStream(new BufferInput(buffer, nodesEnd));
+            Map<Integer, String> detached = new HashMap<>();
+            int count = CodeTree.readVarint(in);
+            for (int i = 0; i < count; i++) {
+                detached.put(CodeTree.readNode(in, size), CodeTree.readNullableString(in));
+            }
+            Map<Integer, Map<String, Object>> meta = new HashMap<>();
+            count = CodeTree.readVarint(in);
+            for (int i = 0; i < count; i++) {
+                meta.put(CodeTree.readNode(in, size), Collections.unmodifiableMap(CodeTree.readMetadata(in)));
+            }
+            detachedContent = detached;
+            metadata = meta;
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupt code tree: " + e.getMessage(), e);
+        }
+    }
+
+    // Varints are read with absolute gets, so cursors never move the shared buffer.
+    private int varint(int[] position) {
+        int p = position[0];
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buffer.get(p++);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                position[0] = p;
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint at " + position[0]);
+    }
+
+    /**
+     * A movable pointer into the mapped tree, like {@link CodeTree.Cursor}. Moving to a
+     * child or sibling decodes one record; the path from the root is kept on a stack.
+     */
+    public final class Cursor {
+        // Per depth: record position, node index, start offset and end of the subtree's records.
+        private int[] positions = new int[16];
+        private int[] nodes = new int[16];
+        private int[] starts = new int[16];
+        private int[] limits = new int[16];
+        private int depth;
+        private final int[] at = new int[1];
+
+        private int type;
+        private int nameId;
+        private int end;
+        private int content;
+        private int contentStart;
+        private int contentEnd;
+        private int descendants;
+        private int recordEnd;
+
+        private Cursor() {
+            reset();
+        }
+
+        /**
+         * Moves back to the root, if there is one.
+         */
+        public void reset() {
+            depth = 0;
+            if (size > 0) decode(nodesStart, 0, 0);
+        }
+
+        public int node() { return nodes[depth]; }
+        public NodeType type() { return types[type]; }
+        public String name() { return MappedCodeTree.this.name(nameId); }
+        public int start() { return starts[depth]; }
+        public int end() { return end; }
+
+        /**
+         * Number of nodes below the current one, which {@link #gotoNextSibling} steps over.
+         */
+        public int descendantCount() { return descendants; }
+
+        /**
+         * Returns the content of the current node, or {@code null} if it has none.
+         */
+        public String content() {
+            if (content == CodeTree.CONTENT_DETACHED) {
+                String detached = detachedContent().get(node());
+                return utf8 && detached != null ? CodeTree.decodeUtf8(detached, 0, detached.length()) : detached;
+            }
+            return content == CodeTree.CONTENT_NONE ? null : text(contentStart, contentEnd);
+        }
+
+        public Map<String, Object> metadata() {
+            return MappedCodeTree.this.metadata().getOrDefault(node(), Collections.emptyMap());
+        }
+
+        public boolean gotoFirstChild() {
+            if (descendants == 0) return false;
+            push(recordEnd, nodes[depth] + 1);
+            return true;
+        }
+
+        public boolean gotoNextSibling() {
+            if (depth == 0) return false;
+            int next = limits[depth];
+            if (next >= limits[depth - 1]) return false;
+            int node = nodes[depth] + 1 + descendants;
+            depth--;
+            push(next, node);
+            return true;
+        }
+
+        public boolean gotoParent() {
+            if (depth == 0) return false;
+            depth--;
+            decode(positions[depth], nodes[depth], depth == 0 ? 0 : starts[depth - 1]);
+            return true;
+        }
+
+        private void push(int position, int node) {
+            if (++depth == positions.length) {
+                positions = Arrays.copyOf(positions, depth * 2);
+                nodes = Arrays.copyOf(nodes, depth * 2);
+                starts = Arrays.copyOf(starts, depth * 2);
+                limits = Arrays.copyOf(limits, depth * 2);
+            }
+            decode(position, node, starts[depth - 1]);
+        }
+
+        private void decode(int position, int node, int parentStart) {
+            at[0] = position;
+            type = varint(at);
+            nameId = varint(at) - 1;
+            int start = parentStart + CodeTree.unzigzag(varint(at));
+            end = start + CodeTree.unzigzag(varint(at));
+            content = varint(at);
+            contentStart = start;
+            contentEnd = end;
+            if (content == CodeTree.CONTENT_RANGE) {
+                contentStart = start + CodeTree.unzigzag(varint(at));
+                contentEnd = contentStart + varint(at);
+            }
+            descendants = varint(at);
+            int subtreeBytes = varint(at);
+            recordEnd = at[0];
+            positions[depth] = position;
+            nodes[depth] = node;
+            starts[depth] = start;
+            limits[depth] = recordEnd + subtreeBytes;
+        }
+    }
+
+    // Reads a buffer from a given index through a private view, leaving the buffer as it is.
+    private static final class BufferInput extends InputStream {
+        private final ByteBuffer view;
+
+        BufferInput(ByteBuffer buffer, int position) {
+            this.view = buffer.duplicate();
+            view.position(position);
+        }
+
+        int position() {
+            return view.position();
+        }
+
+        @Override
+        public int read() {
+            return view.hasRemaining() ? view.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!view.hasRemaining()) return -1;
+            int n = Math.min(len, view.remaining());
+            view.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.min(n, view.remaining());
+            view.position(view.position() + skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.extractor.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A size limit for {@link McpJsonWriter} output, and the order in which parts of the tree
+ * are given room. Sizes are estimated from string lengths while planning, without
+ * serializing anything, at {@value #CHARS_PER_TOKEN} characters per token.
+ * <p>
+ * Instances are immutable.
+ */
+public final class McpBudget {
+    public static final int CHARS_PER_TOKEN = 4;
+
+    /**
+     * The parts of the MCP structure a budget divides between.
+     */
+    public enum Part {
+        /** Declaration nodes with their first line of source as {@code signature}. */
+        SIGNATURES,
+        /** Comment nodes with their content. */
+        COMMENTS,
+        /** The full content of methods, functions, constructors and leaf nodes. */
+        BODIES
+    }
+
+    private final long maxChars;
+    private final List<Part> priority;
+
+    private McpBudget(Builder b) {
+        this.maxChars = b.maxChars;
+        this.priority = List.copyOf(b.priority);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * The estimated number of output characters allowed.
+     */
+    public long getMaxChars() {
+        return maxChars;
+    }
+
+    public List<Part> getPriority() {
+        return priority;
+    }
+
+    @Override
+    public String toString() {
+        return "McpBudget{maxChars=" + maxChars + ", priority=" + priority + "}";
+    }
+
+    public static final class Builder {
+        private long maxChars = Long.MAX_VALUE;
+        private List<Part> priority = Arrays.asList(Part.SIGNATURES, Part.COMMENTS, Part.BODIES);
+
+        private Builder() {
+        }
+
+        public Builder maxTokens(int maxTokens) {
+            if (maxTokens < 0) {
+                throw new IllegalArgumentException("maxTokens must not be negative: " + maxTokens);
+            }
+            this.maxChars = (long) maxTokens * CHARS_PER_TOKEN;
+            return this;
+        }
+
+        public Builder maxChars(long maxChars) {
+            if (maxChars < 0) {
+                throw new IllegalArgumentException("maxChars must not be negative: " + maxChars);
+            }
+            this.maxChars = maxChars;
+            return this;
+        }
+
+        /**
+         * Gives room to the parts in this order. Parts left out are never included. The
+         * default is signatures, then comments, then bodies.
+         */
+        public Builder priority(Part first, Part... rest) {
+            Part[] parts = new Part[rest.length + 1];
+            parts[0] = first;
+            System.arraycopy(rest, 0, parts, 1, rest.length);
+            if (Arrays.stream(parts).distinct().count() != parts.length) {
+                throw new IllegalArgumentException("Duplicate part in priority: " + Arrays.toString(parts));
+            }
+            this.priority = Arrays.asList(parts);
+            return this;
+        }
+
+        public McpBudget build() {
+            return new McpBudget(this);
+        }
+    }
+}
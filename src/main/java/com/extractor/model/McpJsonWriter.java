@@ -0,0 +1,251 @@
+package com.extractor.model;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes the {@link CodeNode#toMcpContext()} structure as JSON straight from the tree,
+ * without building the maps first. Content is escaped from the node's zero-copy view, and
+ * the tree is walked without recursion, so apart from a stack as deep as the tree the
+ * writer uses a fixed-size buffer whatever the size of the tree.
+ * <p>
+ * Objects carry the keys of {@code toMcpContext()} in a fixed order: {@code type},
+ * {@code name}, {@code start}, {@code end}, {@code content}, {@code metadata} and
+ * {@code children}, each omitted where the map would omit it.
+ * <p>
+ * {@link #writeLine} produces NDJSON, one file per line, and may be called from several
+ * threads, so {@code writer::writeLine} can serve as the sink of a directory run.
+ * <p>
+ * Given an {@link McpBudget}, the writer first plans what fits from estimated sizes, then
+ * writes only that. Declarations may then carry a {@code signature}, their first line,
+ * instead of their {@code content}, and the root reports how many nodes were
+ * {@code omitted}.
+ */
+public final class McpJsonWriter implements Closeable, Flushable {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Writer out;
+    private final char[] buffer = new char[8192];
+    private int used;
+
+    private CodeNode[] stack = new CodeNode[16];
+    private int[] next = new int[16];
+    private boolean[] written = new boolean[16];
+
+    public McpJsonWriter(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes UTF-8 to {@code out}.
+     */
+    public McpJsonWriter(OutputStream out) {
+        this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes {@code root} as one JSON object.
+     */
+    public synchronized void write(CodeNode root) throws IOException {
+        writeTree(root, null);
+    }
+
+    /**
+     * Writes {@code root} as one JSON object that fits {@code budget}, by estimate.
+     */
+    public synchronized void write(CodeNode root, McpBudget budget) throws IOException {
+        writeTree(root, McpPlan.build(root, budget));
+    }
+
+    /**
+     * Writes one NDJSON line, {@code {"path":...,"context":{...}}}, followed by a newline.
+     */
+    public synchronized void writeLine(String path, CodeNode root) throws IOException {
+        writeLine(path, root, null);
+    }
+
+    public synchronized void writeLine(String path, CodeNode root, McpBudget budget) throws IOException {
+        append("{\"path\":");
+        string(path);
+        append(",\"context\":");
+        writeTree(root, budget == null ? null : McpPlan.build(root, budget));
+        append("}\n");
+    }
+
+    @Override
+    public synchronized void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        drain();
+        out.close();
+    }
+
+    private void writeTree(CodeNode root, McpPlan plan) throws IOException {
+        // Depth-first walk with an explicit stack of open nodes and their next child.
+        // Children whose entry the plan leaves out are skipped with their subtrees.
+        int depth = 0;
+        stack[0] = root;
+        next[0] = 0;
+        written[0] = false;
+        open(root, plan);
+        if (plan != null && plan.omitted() > 0) {
+            append(",\"omitted\":");
+            append(Integer.toString(plan.omitted()));
+        }
+        while (depth >= 0) {
+            CodeNode node = stack[depth];
+            List<CodeNode> children = node.getChildren();
+            int i = next[depth];
+            if (i == children.size()) {
+                append(written[depth] ? "]}" : "}");
+                stack[depth--] = null;
+                continue;
+            }
+            next[depth]++;
+            CodeNode child = children.get(i);
+            if (plan != null && plan.flags(child) == 0) continue;
+            append(written[depth] ? "," : ",\"children\":[");
+            written[depth] = true;
+            if (++depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+                next = Arrays.copyOf(next, depth * 2);
+                written = Arrays.copyOf(written, depth * 2);
+            }
+            stack[depth] = child;
+            next[depth] = 0;
+            written[depth] = false;
+            open(child, plan);
+        }
+    }
+
+    // Writes every member of the node's object except its children, leaving it open.
+    private void open(CodeNode node, McpPlan plan) throws IOException {
+        append("{\"type\":");
+        string(node.getType().toString());
+        append(",\"name\":");
+        string(node.getName());
+        append(",\"start\":");
+        append(Integer.toString(node.getStartOffset()));
+        append(",\"end\":");
+        append(Integer.toString(node.getEndOffset()));
+        byte flags = plan == null ? McpPlan.CONTENT : plan.flags(node);
+        if ((flags & McpPlan.SIGNATURE) != 0) {
+            int start = plan.signatureStart(node);
+            append(",\"signature\":");
+            string(node.getContentView(), start, start + plan.signatureLength(node));
+        }
+        if ((flags & McpPlan.CONTENT) != 0 && node.hasContent()) {
+            append(",\"content\":");
+            string(node.getContentView());
+        }
+        if (!node.getMetadata().isEmpty()) {
+            append(",\"metadata\":");
+            value(node.getMetadata());
+        }
+    }
+
+    // Metadata is small and arbitrary, so it is written recursively.
+    private void value(Object value) throws IOException {
+        if (value == null) {
+            append("null");
+        } else if (value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            append(value.toString());
+        } else if (value instanceof Number) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isFinite(d)) {
+                append(value.toString());
+            } else {
+                string(value.toString());
+            }
+        } else if (value instanceof Map) {
+            append("{");
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) append(",");
+                first = false;
+                string(String.valueOf(entry.getKey()));
+                append(":");
+                value(entry.getValue());
+            }
+            append("}");
+        } else if (value instanceof Collection) {
+            append("[");
+            boolean first = true;
+            for (Object item : (Collection<?>) value) {
+                if (!first) append(",");
+                first = false;
+                value(item);
+            }
+            append("]");
+        } else {
+            string(value.toString());
+        }
+    }
+
+    private void string(CharSequence s) throws IOException {
+        if (s == null) {
+            append("null");
+            return;
+        }
+        string(s, 0, s.length());
+    }
+
+    private void string(CharSequence s, int from, int to) throws IOException {
+        put('"');
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                put('\\');
+                put(c);
+            } else if (c >= 0x20) {
+                put(c);
+            } else if (c == '\n') {
+                put('\\');
+                put('n');
+            } else if (c == '\t') {
+                put('\\');
+                put('t');
+            } else if (c == '\r') {
+                put('\\');
+                put('r');
+            } else {
+                append("\\u00");
+                put(HEX[c >> 4]);
+                put(HEX[c & 0xF]);
+            }
+        }
+        put('"');
+    }
+
+    private void append(String s) throws IOException {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            put(s.charAt(i));
+        }
+    }
+
+    private void put(char c) throws IOException {
+        if (used == buffer.length) drain();
+        buffer[used++] = c;
+    }
+
+    private void drain() throws IOException {
+        if (used > 0) {
+            out.write(buffer, 0, used);
+            used = 0;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.extractor.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decides which parts of a tree fit an {@link McpBudget}. Planning reads the nodes once
+ * from the tree's type index and estimates every cost from string lengths, then goes
+ * through the flat node arrays once per part in priority order, giving room first-fit.
+ * Nothing is serialized while planning.
+ * <p>
+ * A node is written only if its parent is; an item whose ancestors have not been given
+ * room yet pays for their entries as well.
+ */
+final class McpPlan {
+    static final byte NODE = 1;
+    static final byte SIGNATURE = 2;
+    static final byte CONTENT = 4;
+
+    private static final int MAX_SIGNATURE = 200;
+    // Estimated JSON around a node entry apart from its type and name, and around a string member.
+    private static final int NODE_OVERHEAD = 56;
+    private static final int MEMBER_OVERHEAD = 16;
+
+    private final TypeIndex index;
+    private final List<CodeNode> nodes;
+    private final int base;
+    private final byte[] flags;
+    private final int[] parents;
+    // Where each planned signature lies within the node's content.
+    private final int[] signatureStarts;
+    private final short[] signatures;
+    private long remaining;
+    private int omitted;
+
+    private McpPlan(CodeNode root, McpBudget budget) {
+        this.index = root.currentIndex();
+        this.base = index.start(root);
+        this.nodes = index.range(base, index.end(root));
+        int n = nodes.size();
+        this.flags = new byte[n];
+        this.parents = new int[n];
+        this.signatureStarts = new int[n];
+        this.signatures = new short[n];
+        this.remaining = budget.getMaxChars();
+
+        // Parents from subtree ranges: the innermost open node whose range covers i.
+        int[] open = new int[16];
+        int depth = 0;
+        parents[0] = -1;
+        for (int i = 1; i < n; i++) {
+            while (index.end(nodes.get(open[depth])) - base <= i) depth--;
+            parents[i] = open[depth];
+            if (++depth == open.length) open = Arrays.copyOf(open, depth * 2);
+            open[depth] = i;
+        }
+    }
+
+    static McpPlan build(CodeNode root, McpBudget budget) {
+        McpPlan plan = new McpPlan(root, budget);
+        plan.flags[0] = NODE;
+        plan.remaining -= entryCost(root);
+        for (McpBudget.Part part : budget.getPriority()) {
+            switch (part) {
+                case SIGNATURES:
+                    plan.planSignatures();
+                    break;
+                case COMMENTS:
+                    plan.planComments();
+                    break;
+                case BODIES:
+                    plan.planBodies();
+                    break;
+            }
+        }
+        for (byte f : plan.flags) {
+            if (f == 0) plan.omitted++;
+        }
+        return plan;
+    }
+
+    byte flags(CodeNode node) {
+        return flags[index.start(node) - base];
+    }
+
+    /**
+     * Start of the signature within the content of {@code node}.
+     */
+    int signatureStart(CodeNode node) {
+        return signatureStarts[index.start(node) - base];
+    }
+
+    int signatureLength(CodeNode node) {
+        return signatures[index.start(node) - base];
+    }
+
+    /**
+     * Number of nodes of the tree that were left out.
+     */
+    int omitted() {
+        return omitted;
+    }
+
+    // Shallow declarations first, so a small budget yields the top of the outline.
+    private void planSignatures() {
+        int n = flags.length;
+        int[] depths = new int[n];
+        int[] perDepth = new int[n + 1];
+        for (int i = 1; i < n; i++) {
+            depths[i] = depths[parents[i]] + 1;
+            perDepth[depths[i]]++;
+        }
+        // Counting sort by depth keeps document order within each level.
+        int[] starts = new int[n + 1];
+        for (int d = 1; d < n; d++) {
+            starts[d + 1] = starts[d] + perDepth[d];
+        }
+        int[] order = new int[n - 1];
+        for (int i = 1; i < n; i++) {
+            order[starts[depths[i]]++] = i;
+        }
+        for (int i : order) {
+            CodeNode node = nodes.get(i);
+            if (!isDeclaration(node) || (flags[i] & CONTENT) != 0) continue;
+            CharSequence content = node.getContentView();
+            int start = signatureStart(content);
+            int signature = signatureLength(content, start);
+            long extra = signature > 0 ? signature + MEMBER_OVERHEAD : 0;
+            long cost = ancestorsCost(i) + (flags[i] == 0 ? entryCost(node) : 0) + extra;
+            if (cost <= remaining) {
+                include(i);
+                if (signature > 0) {
+                    flags[i] |= SIGNATURE;
+                    signatureStarts[i] = start;
+                    signatures[i] = (short) signature;
+                    remaining -= extra;
+                }
+            }
+        }
+    }
+
+    private void planComments() {
+        for (int i = 1; i < flags.length; i++) {
+            CodeNode node = nodes.get(i);
+            if (node.getType() == NodeType.COMMENT && node.hasContent()) {
+                addContent(i, node);
+            }
+        }
+    }
+
+    private void planBodies() {
+        for (int i = 1; i < flags.length; i++) {
+            CodeNode node = nodes.get(i);
+            NodeType type = node.getType();
+            boolean body = type == NodeType.METHOD || type == NodeType.FUNCTION || type == NodeType.CONSTRUCTOR
+                    || node.getChildren().isEmpty();
+            if (body && type != NodeType.COMMENT && node.hasContent()) {
+                addContent(i, node);
+            }
+        }
+    }
+
+    private void addContent(int i, CodeNode node) {
+        if ((flags[i] & CONTENT) != 0) return;
+        long content = node.getContentView().length() + MEMBER_OVERHEAD;
+        long signature = (flags[i] & SIGNATURE) != 0 ? signatures[i] + MEMBER_OVERHEAD : 0;
+        long cost = ancestorsCost(i) + (flags[i] == 0 ? entryCost(node) : 0) + content - signature;
+        if (cost <= remaining) {
+            include(i);
+            // Content already starts with the signature, so the signature is dropped.
+            flags[i] = (byte) ((flags[i] & ~SIGNATURE) | CONTENT);
+            remaining -= content - signature;
+        }
+    }
+
+    private long ancestorsCost(int i) {
+        long cost = 0;
+        for (int p = parents[i]; p >= 0 && flags[p] == 0; p = parents[p]) {
+            cost += entryCost(nodes.get(p));
+        }
+        return cost;
+    }
+
+    // Gives node i and any ancestors not yet written an entry.
+    private void include(int i) {
+        for (int p = i; p >= 0 && flags[p] == 0; p = parents[p]) {
+            flags[p] = NODE;
+            remaining -= entryCost(nodes.get(p));
+        }
+    }
+
+    private static boolean isDeclaration(CodeNode node) {
+        NodeType type = node.getType();
+        return type != NodeType.COMMENT && type != NodeType.BLOCK && type != NodeType.ROOT;
+    }
+
+    private static long entryCost(CodeNode node) {
+        String name = node.getName();
+        return NODE_OVERHEAD + node.getType().name().length() + (name == null ? 4 : name.length());
+    }
+
+    // Skips leading whitespace and comments, which parsers often include in a node's content.
+    private static int signatureStart(CharSequence content) {
+        if (content == null) return 0;
+        int n = content.length();
+        int i = 0;
+        while (i < n) {
+            char c = content.charAt(i);
+            char d = i + 1 < n ? content.charAt(i + 1) : '\0';
+            if (c <= ' ') {
+                i++;
+            } else if (c == '/' && d == '*') {
+                i = indexOf(content, "*/", i + 2);
+                i = i < 0 ? n : i + 2;
+            } else if ((c == '/' && d == '/') || c == '#') {
+                i = indexOf(content, "\n", i);
+                i = i < 0 ? n : i + 1;
+            } else {
+                break;
+            }
+        }
+        return i;
+    }
+
+    private static int indexOf(CharSequence s, String target, int from) {
+        for (int i = from, last = s.length() - target.length(); i <= last; i++) {
+            if (s.charAt(i) == target.charAt(0) && (target.length() == 1 || s.charAt(i + 1) == target.charAt(1))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // The first line from start, up to an opening brace, without trailing whitespace.
+    private static int signatureLength(CharSequence content, int start) {
+        if (content == null) return 0;
+        int limit = Math.min(content.length(), start + MAX_SIGNATURE);
+        int end = start;
+        while (end < limit) {
+            char c = content.charAt(end);
+            if (c == '{' || c == '\n') break;
+            end++;
+        }
+        while (end > start && content.charAt(end - 1) <= ' ') end--;
+        return end - start;
+    }
+}
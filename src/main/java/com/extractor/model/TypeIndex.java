@@ -0,0 +1,192 @@
+package com.extractor.model;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * The nodes of one {@link CodeNode} tree in document order, with the positions of each
+ * node type. Every indexed node records its own position and the end of its subtree, so
+ * a query on any node of the tree is two binary searches.
+ * <p>
+ * The index is built on the first query and dropped by the first change to any of its
+ * nodes; see {@link CodeNode#findByType}. Its arrays are complete before any node is
+ * pointed at it, so threads that only read a tree can share it.
+ * <p>
+ * A tree that shares a subtree with another tree is indexed for one query only: no node
+ * is pointed at the index, and positions are looked up by identity instead.
+ */
+final class TypeIndex {
+    private static final NodeType[] TYPES = NodeType.values();
+    private static final int[] NONE = new int[0];
+
+    private final CodeNode[] nodes;
+    // For each NodeType ordinal, the ascending positions in nodes of that type.
+    private final int[][] positions;
+    // Set only for an unpublished index: each node's position and the end of its subtree.
+    private final Map<CodeNode, Integer> starts;
+    private final int[] ends;
+    private volatile boolean valid = true;
+
+    private TypeIndex(CodeNode[] nodes, int[][] positions, Map<CodeNode, Integer> starts, int[] ends) {
+        this.nodes = nodes;
+        this.positions = positions;
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Whether this index was built for one query only and reaches {@code node}.
+     */
+    boolean isUnpublished(CodeNode node) {
+        return starts != null && starts.containsKey(node);
+    }
+
+    int start(CodeNode node) {
+        return starts == null ? node.indexStart() : starts.get(node);
+    }
+
+    int end(CodeNode node) {
+        return starts == null ? node.indexEnd() : ends[starts.get(node)];
+    }
+
+    void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Indexes the tree under {@code root} without recursion, and then points every node in
+     * it at the new index unless one of them is shared with another tree.
+     */
+    static TypeIndex build(CodeNode root) {
+        CodeNode[] order = new CodeNode[64];
+        // For each position, the end of the subtree of the node there.
+        int[] ends = new int[64];
+        int count = 0;
+        int[] counts = new int[TYPES.length];
+        boolean shared = root.isShared();
+
+        // Depth-first walk with an explicit stack of nodes and their next child.
+        CodeNode[] stack = new CodeNode[16];
+        int[] next = new int[16];
+        int depth = 0;
+        int[] starts = new int[16];
+        stack[0] = root;
+        starts[0] = count;
+        order[count++] = root;
+        counts[root.getType().ordinal()]++;
+        while (depth >= 0) {
+            CodeNode node = stack[depth];
+            List<CodeNode> children = node.getChildren();
+            if (next[depth] == children.size()) {
+                ends[starts[depth]] = count;
+                depth--;
+                continue;
+            }
+            CodeNode child = children.get(next[depth]++);
+            if (count == order.length) {
+                order = Arrays.copyOf(order, count * 2);
+                ends = Arrays.copyOf(ends, count * 2);
+            }
+            order[count] = child;
+            counts[child.getType().ordinal()]++;
+            shared |= child.isShared();
+            if (++depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+                next = Arrays.copyOf(next, depth * 2);
+                starts = Arrays.copyOf(starts, depth * 2);
+            }
+            stack[depth] = child;
+            next[depth] = 0;
+            starts[depth] = count++;
+        }
+
+        int[][] positions = new int[TYPES.length][];
+        for (int t = 0; t < TYPES.length; t++) {
+            positions[t] = counts[t] == 0 ? NONE : new int[counts[t]];
+            counts[t] = 0;
+        }
+        for (int i = 0; i < count; i++) {
+            int t = order[i].getType().ordinal();
+            positions[t][counts[t]++] = i;
+        }
+        if (shared) {
+            Map<CodeNode, Integer> byNode = new IdentityHashMap<>(count * 2);
+            for (int i = count - 1; i >= 0; i--) {
+                byNode.put(order[i], i);
+            }
+            return new TypeIndex(Arrays.copyOf(order, count), positions, byNode, ends);
+        }
+        TypeIndex index = new TypeIndex(Arrays.copyOf(order, count), positions, null, null);
+        // Ranges first: a reader that sees a node's index also sees its range.
+        for (int i = 0; i < count; i++) {
+            order[i].setIndexRange(i, ends[i]);
+        }
+        for (int i = 0; i < count; i++) {
+            order[i].publishIndex(index);
+        }
+        return index;
+    }
+
+    /**
+     * The nodes of {@code type} at positions {@code [from, to)}, in document order.
+     */
+    List<CodeNode> find(NodeType type, int from, int to) {
+        int[] all = positions[type.ordinal()];
+        int lo = lowerBound(all, from);
+        int hi = lowerBound(all, to);
+        return new View(all, lo, hi);
+    }
+
+    /**
+     * The nodes at positions {@code [from, to)}.
+     */
+    List<CodeNode> range(int from, int to) {
+        return new View(null, from, to);
+    }
+
+    private static int lowerBound(int[] sorted, int key) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Read-only window over nodes, either directly or through a slice of positions.
+    private final class View extends AbstractList<CodeNode> implements RandomAccess {
+        private final int[] indirect;
+        private final int from;
+        private final int size;
+
+        View(int[] indirect, int from, int to) {
+            this.indirect = indirect;
+            this.from = from;
+            this.size = to - from;
+        }
+
+        @Override
+        public CodeNode get(int i) {
+            if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+            return nodes[indirect == null ? from + i : indirect[from + i]];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
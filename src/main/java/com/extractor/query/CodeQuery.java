@@ -5,9 +5,18 @@ import com.extractor.model.NodeType;
 
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class CodeQuery {
     
+    /**
+     * Streams the nodes under {@code root} matching a {@link Selector}. Compile the selector
+     * once with {@link Selector#compile} when running it over many trees.
+     */
+    public static Stream<CodeNode> select(CodeNode root, String selector) {
+        return Selector.compile(selector).stream(root);
+    }
+
     public static List<CodeNode> findMethodsByName(CodeNode root, String name) {
         return root.findByType(NodeType.METHOD).stream()
                 .filter(n -> n.getName().contains(name))
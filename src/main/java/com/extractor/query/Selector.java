@@ -0,0 +1,319 @@
+package com.extractor.query;
+
+import com.extractor.model.CodeNode;
+import com.extractor.model.NodeType;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A compiled CSS-like query over {@link CodeNode} trees, for example
+ * {@code class[name^=User] > method[name~=get]} or
+ * {@code *:has(annotation[name=Transactional])}.
+ * <p>
+ * A selector is a chain of steps joined by {@code >} (child) or whitespace (descendant).
+ * A step is a node type, in any case, or {@code *}, followed by any number of
+ * <ul>
+ *   <li>attribute tests on {@code name} or {@code content}: {@code [name=x]} equals,
+ *       {@code ^=} starts with, {@code $=} ends with, {@code *=} contains and {@code ~=}
+ *       matches a regular expression anywhere; values may be quoted;</li>
+ *   <li>{@code :has(selector)}, true if a node below matches, where a leading {@code >}
+ *       restricts the match to children;</li>
+ *   <li>{@code :not(selector)}, true if the node does not match.</li>
+ * </ul>
+ * Compiling parses the text once. A run takes its candidates for the last step from the
+ * tree's type index when the step names a type, tests each one, and checks the steps
+ * further left by walking up through its ancestors, which stay within the root the query
+ * runs on. Matches are streamed in document order, so {@code limit} and
+ * {@code findFirst} stop the walk early.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class Selector {
+    private final String source;
+    private final Step[] steps;
+    // Set for :has selectors, whose first step is the node they are tested on.
+    private final boolean anchored;
+
+    private Selector(String source, List<Step> steps, boolean anchored) {
+        this.source = source;
+        this.steps = steps.toArray(new Step[0]);
+        this.anchored = anchored;
+    }
+
+    /**
+     * Compiles {@code selector}.
+     *
+     * @throws IllegalArgumentException if the selector is malformed
+     */
+    public static Selector compile(String selector) {
+        Parser parser = new Parser(selector);
+        Selector compiled = parser.selector(false);
+        parser.skipSpace();
+        if (!parser.atEnd()) {
+            throw parser.error("Unexpected '" + parser.peek() + "'");
+        }
+        return compiled;
+    }
+
+    /**
+     * Streams the nodes of the tree under {@code root}, including {@code root}, that match.
+     */
+    public Stream<CodeNode> stream(CodeNode root) {
+        return candidates(root).filter(node -> matches(steps.length - 1, node, root));
+    }
+
+    /**
+     * Streams the matches of each tree in turn.
+     */
+    public Stream<CodeNode> stream(Collection<? extends CodeNode> roots) {
+        return roots.stream().flatMap(this::stream);
+    }
+
+    public Optional<CodeNode> first(CodeNode root) {
+        return stream(root).findFirst();
+    }
+
+    /**
+     * Returns at most {@code limit} matches under {@code root}.
+     */
+    public List<CodeNode> find(CodeNode root, int limit) {
+        return stream(root).limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * Whether {@code node} itself matches, looking at all of its ancestors.
+     */
+    public boolean matches(CodeNode node) {
+        return matches(steps.length - 1, node, null);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    private Stream<CodeNode> candidates(CodeNode root) {
+        NodeType type = steps[steps.length - 1].type;
+        if (type != null) {
+            return root.findByType(type).stream();
+        }
+        return Stream.concat(Stream.of(root), root.descendants().stream());
+    }
+
+    // Tests step i on node, then the steps to its left on its ancestors, up to scope.
+    private boolean matches(int i, CodeNode node, CodeNode scope) {
+        Step step = steps[i];
+        if (!step.test(node)) return false;
+        if (i == 0) return !anchored || node == scope;
+        if (step.child) {
+            CodeNode parent = parentWithin(node, scope);
+            return parent != null && matches(i - 1, parent, scope);
+        }
+        for (CodeNode p = parentWithin(node, scope); p != null; p = parentWithin(p, scope)) {
+            if (matches(i - 1, p, scope)) return true;
+        }
+        return false;
+    }
+
+    private static CodeNode parentWithin(CodeNode node, CodeNode scope) {
+        return node == scope ? null : node.getParent();
+    }
+
+    private boolean hasMatchBelow(CodeNode node) {
+        return candidates(node).anyMatch(candidate -> candidate != node && matches(steps.length - 1, candidate, node));
+    }
+
+    // One step: an optional type, filters, and whether it must be a child of the step before.
+    private static final class Step {
+        NodeType type;
+        boolean child;
+        final List<Predicate<CodeNode>> filters = new ArrayList<>();
+
+        boolean test(CodeNode node) {
+            if (type != null && node.getType() != type) return false;
+            for (Predicate<CodeNode> filter : filters) {
+                if (!filter.test(node)) return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        // A chain of steps; for :has, one anchored to the node tested, with an optional leading '>'.
+        Selector selector(boolean relative) {
+            int begin = pos;
+            List<Step> steps = new ArrayList<>();
+            skipSpace();
+            if (relative) {
+                Step scope = new Step();
+                steps.add(scope);
+            }
+            boolean child = false;
+            if (relative && peek() == '>') {
+                pos++;
+                child = true;
+                skipSpace();
+            }
+            while (true) {
+                Step step = step();
+                step.child = child;
+                steps.add(step);
+                int before = pos;
+                skipSpace();
+                if (atEnd() || peek() == ')') break;
+                child = peek() == '>';
+                if (child) {
+                    pos++;
+                    skipSpace();
+                } else if (before == pos) {
+                    throw error("Expected a combinator");
+                }
+            }
+            return new Selector(text.substring(begin, pos).trim(), steps, relative);
+        }
+
+        private Step step() {
+            Step step = new Step();
+            boolean any = false;
+            if (peek() == '*') {
+                pos++;
+                any = true;
+            } else if (Character.isLetter(peek())) {
+                String name = identifier();
+                try {
+                    step.type = NodeType.valueOf(name.toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    throw error("Unknown node type '" + name + "'");
+                }
+                any = true;
+            }
+            while (peek() == '[' || peek() == ':') {
+                step.filters.add(peek() == '[' ? attribute() : pseudo());
+                any = true;
+            }
+            if (!any) {
+                throw error(atEnd() ? "Unexpected end of selector" : "Unexpected '" + peek() + "'");
+            }
+            return step;
+        }
+
+        private Predicate<CodeNode> attribute() {
+            pos++;
+            skipSpace();
+            String key = identifier();
+            boolean content = key.equals("content");
+            if (!content && !key.equals("name")) {
+                throw error("Unknown attribute '" + key + "'");
+            }
+            skipSpace();
+            char op = peek();
+            if (op == '=') {
+                pos++;
+            } else if ("^$*~".indexOf(op) >= 0 && pos + 1 < text.length() && text.charAt(pos + 1) == '=') {
+                pos += 2;
+            } else {
+                throw error("Expected an operator");
+            }
+            skipSpace();
+            String value = value();
+            skipSpace();
+            expect(']');
+
+            Predicate<String> test;
+            switch (op) {
+                case '^': test = s -> s.startsWith(value); break;
+                case '$': test = s -> s.endsWith(value); break;
+                case '*': test = s -> s.contains(value); break;
+                case '~':
+                    Pattern pattern = Pattern.compile(value);
+                    test = s -> pattern.matcher(s).find();
+                    break;
+                default: test = s -> s.equals(value); break;
+            }
+            if (content) {
+                return node -> node.hasContent() && test.test(node.getContent());
+            }
+            return node -> node.getName() != null && test.test(node.getName());
+        }
+
+        private Predicate<CodeNode> pseudo() {
+            pos++;
+            String name = identifier();
+            expect('(');
+            Predicate<CodeNode> filter;
+            if (name.equals("has")) {
+                Selector inner = selector(true);
+                filter = inner::hasMatchBelow;
+            } else if (name.equals("not")) {
+                Selector inner = selector(false);
+                filter = node -> !inner.matches(node);
+            } else {
+                throw error("Unknown pseudo-class ':" + name + "'");
+            }
+            skipSpace();
+            expect(')');
+            return filter;
+        }
+
+        private String identifier() {
+            int begin = pos;
+            while (!atEnd() && (Character.isLetterOrDigit(peek()) || peek() == '_' || peek() == '-')) pos++;
+            if (begin == pos) throw error("Expected a name");
+            return text.substring(begin, pos);
+        }
+
+        private String value() {
+            char quote = peek();
+            if (quote != '"' && quote != '\'') {
+                int begin = pos;
+                while (!atEnd() && peek() != ']' && !Character.isWhitespace(peek())) pos++;
+                if (begin == pos) throw error("Expected a value");
+                return text.substring(begin, pos);
+            }
+            pos++;
+            StringBuilder value = new StringBuilder();
+            while (!atEnd() && peek() != quote) {
+                if (peek() == '\\' && pos + 1 < text.length()) pos++;
+                value.append(text.charAt(pos++));
+            }
+            expect(quote);
+            return value.toString();
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("Expected '" + c + "'");
+            pos++;
+        }
+
+        void skipSpace() {
+            while (!atEnd() && Character.isWhitespace(peek())) pos++;
+        }
+
+        boolean atEnd() {
+            return pos >= text.length();
+        }
+
+        char peek() {
+            return atEnd() ? '\0' : text.charAt(pos);
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + pos + " in selector: " + text);
+        }
+    }
+}
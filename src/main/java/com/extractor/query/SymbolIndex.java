@@ -0,0 +1,317 @@
+package com.extractor.query;
+
+import com.extractor.core.ExtractionSink;
+import com.extractor.core.IndexListener;
+import com.extractor.model.CodeNode;
+import com.extractor.model.NodeType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.UnaryOperator;
+
+/**
+ * Finds declarations by name across many files. Every named node other than the root,
+ * blocks and comments is a symbol, recorded with its file, type and offsets.
+ * <p>
+ * Distinct names are kept sorted, each with its postings: the declarations of that name as
+ * (file, symbol) pairs, held as one run per file in a map sorted by path, each run in
+ * document order. Indexing a file replaces its run for each of its names without copying
+ * the runs of other files, so a name declared in most files (such as {@code main} or
+ * {@code toString}) costs the same per update as a rare one. Exact and prefix lookups read
+ * the runs as they are. Substring lookups go through a trigram index over the distinct
+ * names: the candidates are the names holding the query's rarest trigram, checked with
+ * {@link String#contains}. Queries shorter than three chars scan the distinct names. All
+ * lookups are case-sensitive.
+ * <p>
+ * The index can serve as the sink of an extraction run and as a listener of a
+ * {@link com.extractor.core.LiveIndex}. Updates are serialized; lookups take no lock and
+ * may run during an update. The run of a name in a file is replaced as a whole, so a lookup
+ * sees the declarations of a name in a file either before or after the update.
+ */
+public final class SymbolIndex implements ExtractionSink, IndexListener {
+    private static final int GRAM = 3;
+    private static final Posting[] NO_POSTINGS = new Posting[0];
+
+    private final Map<String, FileSymbols> files = new ConcurrentHashMap<>();
+    // Name -> path -> the postings of that name in that file.
+    private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Posting[]>> names =
+            new ConcurrentSkipListMap<>();
+    private final Map<Long, Set<String>> trigrams = new ConcurrentHashMap<>();
+
+    /**
+     * A declaration found in an indexed file.
+     */
+    public static final class Symbol {
+        private final String path;
+        private final NodeType type;
+        private final String name;
+        private final int startOffset;
+        private final int endOffset;
+
+        Symbol(String path, NodeType type, String name, int startOffset, int endOffset) {
+            this.path = path;
+            this.type = type;
+            this.name = name;
+            this.startOffset = startOffset;
+            this.endOffset = endOffset;
+        }
+
+        public String getPath() { return path; }
+        public NodeType getType() { return type; }
+        public String getName() { return name; }
+        public int getStartOffset() { return startOffset; }
+        public int getEndOffset() { return endOffset; }
+
+        @Override
+        public String toString() {
+            return type + " " + name + " (" + path + ":" + startOffset + "-" + endOffset + ")";
+        }
+    }
+
+    /**
+     * Replaces the symbols of {@code path} with those declared in {@code root}.
+     */
+    public synchronized void update(String path, CodeNode root) {
+        FileSymbols next = FileSymbols.of(path, root, this::canonical);
+        FileSymbols previous = files.put(path, next);
+        Map<String, List<Posting>> postings = next.postings();
+        if (previous != null) {
+            for (String name : previous.distinctNames()) {
+                postings.putIfAbsent(name, Collections.emptyList());
+            }
+        }
+        for (Map.Entry<String, List<Posting>> entry : postings.entrySet()) {
+            repost(entry.getKey(), path, entry.getValue());
+        }
+    }
+
+    /**
+     * Drops every symbol of {@code path}.
+     */
+    public synchronized void remove(String path) {
+        FileSymbols previous = files.remove(path);
+        if (previous != null) {
+            for (String name : previous.distinctNames()) {
+                repost(name, path, Collections.emptyList());
+            }
+        }
+    }
+
+    @Override
+    public void accept(String path, CodeNode root) {
+        update(path, root);
+    }
+
+    @Override
+    public void updated(String path, CodeNode root) {
+        update(path, root);
+    }
+
+    @Override
+    public void removed(String path) {
+        remove(path);
+    }
+
+    public int fileCount() {
+        return files.size();
+    }
+
+    /**
+     * Number of distinct symbol names.
+     */
+    public int nameCount() {
+        return names.size();
+    }
+
+    /**
+     * Symbols named exactly {@code name}, ordered by path and offset.
+     */
+    public List<Symbol> exact(String name) {
+        List<Symbol> out = new ArrayList<>();
+        collect(name, out, Integer.MAX_VALUE);
+        return out;
+    }
+
+    /**
+     * Up to {@code limit} symbols whose name starts with {@code prefix}, ordered by name,
+     * then path and offset.
+     */
+    public List<Symbol> prefix(String prefix, int limit) {
+        List<Symbol> out = new ArrayList<>();
+        for (String name : names.tailMap(prefix).keySet()) {
+            if (!name.startsWith(prefix) || out.size() >= limit) break;
+            collect(name, out, limit);
+        }
+        return out;
+    }
+
+    /**
+     * Up to {@code limit} symbols whose name contains {@code text}, ordered by name, then
+     * path and offset.
+     */
+    public List<Symbol> contains(String text, int limit) {
+        List<Symbol> out = new ArrayList<>();
+        for (String name : namesContaining(text)) {
+            if (out.size() >= limit) break;
+            collect(name, out, limit);
+        }
+        return out;
+    }
+
+    private Iterable<String> namesContaining(String text) {
+        if (text.length() < GRAM) {
+            List<String> matches = new ArrayList<>();
+            for (String name : names.keySet()) {
+                if (name.contains(text)) matches.add(name);
+            }
+            return matches;
+        }
+        Set<String> rarest = null;
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            Set<String> candidates = trigrams.get(trigram(text, i));
+            if (candidates == null) return Collections.emptyList();
+            if (rarest == null || candidates.size() < rarest.size()) rarest = candidates;
+        }
+        Set<String> matches = new TreeSet<>();
+        for (String name : rarest) {
+            if (name.contains(text)) matches.add(name);
+        }
+        return matches;
+    }
+
+    private void collect(String name, List<Symbol> out, int limit) {
+        Map<String, Posting[]> runs = names.get(name);
+        if (runs == null) return;
+        for (Posting[] run : runs.values()) {
+            for (int i = 0; i < run.length && out.size() < limit; i++) {
+                out.add(run[i].symbol());
+            }
+            if (out.size() >= limit) return;
+        }
+    }
+
+    // Shares one String instance per distinct name between all files declaring it.
+    private String canonical(String name) {
+        String key = names.ceilingKey(name);
+        return name.equals(key) ? key : name;
+    }
+
+    // Replaces the run of path for name with fresh postings, which are in document order.
+    private void repost(String name, String path, List<Posting> fresh) {
+        ConcurrentSkipListMap<String, Posting[]> runs = names.get(name);
+        if (fresh.isEmpty()) {
+            if (runs != null && runs.remove(path) != null && runs.isEmpty()) dropName(name);
+            return;
+        }
+        Posting[] run = fresh.toArray(NO_POSTINGS);
+        if (runs != null) {
+            runs.put(path, run);
+            return;
+        }
+        runs = new ConcurrentSkipListMap<>();
+        runs.put(path, run);
+        addName(name);
+        names.put(name, runs);
+    }
+
+    private void addName(String name) {
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            trigrams.computeIfAbsent(trigram(name, i), k -> ConcurrentHashMap.newKeySet()).add(name);
+        }
+    }
+
+    private void dropName(String name) {
+        names.remove(name);
+        for (int i = 0; i + GRAM <= name.length(); i++) {
+            Long gram = trigram(name, i);
+            Set<String> holders = trigrams.get(gram);
+            if (holders != null) {
+                holders.remove(name);
+                if (holders.isEmpty()) trigrams.remove(gram);
+            }
+        }
+    }
+
+    private static Long trigram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    // One declaration: a symbol of an indexed file, by its position in that file.
+    private static final class Posting {
+        final FileSymbols file;
+        final int symbol;
+
+        Posting(FileSymbols file, int symbol) {
+            this.file = file;
+            this.symbol = symbol;
+        }
+
+        Symbol symbol() {
+            return new Symbol(file.path, file.types[symbol], file.names[symbol],
+                    file.starts[symbol], file.ends[symbol]);
+        }
+    }
+
+    // The symbols of one file as parallel arrays, in document order. Never modified.
+    private static final class FileSymbols {
+        final String path;
+        final String[] names;
+        final NodeType[] types;
+        final int[] starts;
+        final int[] ends;
+
+        private FileSymbols(String path, int n) {
+            this.path = path;
+            names = new String[n];
+            types = new NodeType[n];
+            starts = new int[n];
+            ends = new int[n];
+        }
+
+        static FileSymbols of(String path, CodeNode root, UnaryOperator<String> canonical) {
+            List<CodeNode> symbols = new ArrayList<>();
+            if (root != null) {
+                for (CodeNode node : root.descendants()) {
+                    if (isSymbol(node)) symbols.add(node);
+                }
+            }
+            FileSymbols file = new FileSymbols(path, symbols.size());
+            for (int i = 0; i < symbols.size(); i++) {
+                CodeNode node = symbols.get(i);
+                file.names[i] = canonical.apply(node.getName());
+                file.types[i] = node.getType();
+                file.starts[i] = node.getStartOffset();
+                file.ends[i] = node.getEndOffset();
+            }
+            return file;
+        }
+
+        Set<String> distinctNames() {
+            return new HashSet<>(Arrays.asList(names));
+        }
+
+        // The postings of each name declared here, in document order.
+        Map<String, List<Posting>> postings() {
+            Map<String, List<Posting>> postings = new HashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                postings.computeIfAbsent(names[i], k -> new ArrayList<>()).add(new Posting(this, i));
+            }
+            return postings;
+        }
+
+        private static boolean isSymbol(CodeNode node) {
+            NodeType type = node.getType();
+            return type != NodeType.ROOT && type != NodeType.BLOCK && type != NodeType.COMMENT
+                    && node.getName() != null && !node.getName().isEmpty();
+        }
+    }
+}
@@ -1,11 +1,25 @@
 package com.extractor;
 
+import com.extractor.core.ExtractionCache;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.ParseListener;
+import com.extractor.core.ParserRegistry;
+import com.extractor.core.PersistentParseCache;
+import com.extractor.core.SourceScanner;
+import com.extractor.core.StructuralIndex;
+import com.extractor.core.TreeBuilder;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
 
 public class ExtractionEngineTest {
 
@@ -70,4 +84,297 @@ public class ExtractionEngineTest {
         assertEquals(2, selectors.size());
         assertTrue(selectors.stream().anyMatch(s -> s.getName().equals(".container")));
     }
+
+    @Test
+    public void testRangeBackedContent() {
+        ExtractionEngine engine = new ExtractionEngine();
+        String code = "public class Outer {\n" +
+                      "    class Inner {\n" +
+                      "        void run() { }\n" +
+                      "    }\n" +
+                      "}";
+
+        CodeNode root = engine.extract("Outer.java", code);
+        CodeNode method = root.getMethods().get(0);
+        String expected = code.substring(method.getStartOffset(), method.getEndOffset());
+
+        assertEquals(expected, method.getContent());
+        assertEquals(expected, method.getContentView().toString());
+        assertEquals(expected, method.toMcpContext().get("content"));
+        assertSame(code, root.getContent());
+
+        method.setContent("replaced");
+        assertEquals("replaced", method.getContentView());
+    }
+
+    @Test
+    public void testCommentMarkersInsideStrings() {
+        ExtractionEngine engine = new ExtractionEngine();
+        String code = "// entry point\n" +
+                      "@Path(\"http://example.com/*\") public class Api {\n" +
+                      "    void run() { }\n" +
+                      "}";
+
+        CodeNode root = engine.extract("Api.java", code);
+        List<CodeNode> classes = root.getClasses();
+        assertEquals(1, classes.size());
+        assertEquals("Api", classes.get(0).getName());
+        assertEquals("run", classes.get(0).getMethods().get(0).getName());
+    }
+
+    @Test
+    public void testParsersCreatedOnFirstUse() {
+        ExtractionEngine engine = new ExtractionEngine();
+        ParserRegistry registry = engine.getRegistry();
+        assertTrue(registry.isRegistered("python"));
+        assertFalse(registry.isLoaded("python"));
+
+        engine.extract("app.py", "def main():\n    pass\n");
+        assertTrue(registry.isLoaded("python"));
+        assertFalse(registry.isLoaded("go"));
+        assertSame(registry.get("python"), registry.get("PYTHON"));
+    }
+
+    @Test
+    public void testConfigurableFallback() {
+        ExtractionEngine engine = new ExtractionEngine();
+        String source = "class Foo { void bar() { } }";
+        assertFalse(engine.extract("notes.txt", source).getClasses().isEmpty());
+
+        engine.getRegistry().setFallback(null);
+        CodeNode root = engine.extract("notes.txt", source);
+        assertTrue(root.getChildren().isEmpty());
+        assertEquals(source, root.getContent());
+    }
+
+    @Test
+    public void testServiceLoaderProvider() {
+        ParserRegistry registry = new ExtractionEngine().getRegistry();
+        assertTrue(registry.isRegistered("stub"));
+        assertEquals("stub", registry.get("stub").parse("anything").getName());
+    }
+
+    @Test
+    public void testResultCache() {
+        ExtractionCache cache = new ExtractionCache();
+        ExtractionEngine engine = new ExtractionEngine(ExtractionEngine.defaultRegistry(), cache);
+        String code = "public class Cached {\n    void run() { }\n}";
+
+        CodeNode first = engine.extract("Cached.java", code);
+        first.getMethods().get(0).setName("changed");
+        CodeNode second = engine.extract("Copy.java", code);
+
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.hitCount());
+        assertEquals("run", second.getMethods().get(0).getName());
+        assertEquals(new ExtractionEngine().extract("Cached.java", code).toMcpContext(), second.toMcpContext());
+
+        // Same text under another language is a separate entry.
+        engine.extract("cached.py", code);
+        assertEquals(2, cache.missCount());
+        assertTrue(cache.retainedBytes() > 0);
+    }
+
+    @Test
+    public void testResultCacheEviction() {
+        ExtractionCache cache = new ExtractionCache(2, Long.MAX_VALUE);
+        ExtractionEngine engine = new ExtractionEngine(ExtractionEngine.defaultRegistry(), cache);
+        engine.extract("A.java", "class A { }");
+        engine.extract("B.java", "class B { }");
+        engine.extract("A.java", "class A { }");
+        engine.extract("C.java", "class C { }");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictionCount());
+        engine.extract("A.java", "class A { }");
+        assertEquals(2, cache.hitCount());
+    }
+
+    @Test
+    public void testPersistentCacheSurvivesRestart() throws IOException {
+        Path dir = Files.createTempDirectory("parse-cache");
+        try {
+            String code = "package demo;\n// note\npublic class Stored {\n    void run() { }\n}";
+            Object expected = new ExtractionEngine().extract("Stored.java", code).toMcpContext();
+
+            PersistentParseCache cold = new PersistentParseCache(dir);
+            assertEquals(expected, new ExtractionEngine(ExtractionEngine.defaultRegistry(), cold)
+                    .extract("Stored.java", code).toMcpContext());
+            assertEquals(1, cold.missCount());
+
+            PersistentParseCache warm = new PersistentParseCache(dir);
+            assertEquals(expected, new ExtractionEngine(ExtractionEngine.defaultRegistry(), warm)
+                    .extract("Stored.java", code).toMcpContext());
+            assertEquals(1, warm.hitCount());
+            assertEquals(0, warm.missCount());
+
+            // A corrupt entry is discarded and re-parsed.
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path f : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                    Files.write(f, new byte[] {1, 2, 3});
+                }
+            }
+            assertEquals(expected, new ExtractionEngine(ExtractionEngine.defaultRegistry(), warm)
+                    .extract("Stored.java", code).toMcpContext());
+            assertEquals(1, warm.missCount());
+
+            PersistentParseCache tiny = new PersistentParseCache(dir, 1);
+            tiny.cleanup();
+            assertEquals(1, tiny.evictionCount());
+        } finally {
+            try (Stream<Path> files = Files.walk(dir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testStructuralIndex() {
+        SourceScanner.CharSet set = SourceScanner.CharSet.of("{};\"/");
+        Random random = new Random(42);
+        String alphabet = "abc {};\"/\n\u00e9\u20ac";
+        StringBuilder sb = new StringBuilder();
+        // Long enough to cover several vector chunks and a scalar tail.
+        for (int i = 0; i < 10_007; i++) {
+            sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        String source = sb.toString();
+
+        StructuralIndex index = StructuralIndex.build(source, set);
+        int expected = 0;
+        for (int i = 0; i < source.length(); i++) {
+            boolean structural = set.contains(source.charAt(i));
+            assertEquals(structural, index.contains(i), "position " + i);
+            if (structural) expected++;
+        }
+        assertEquals(expected, index.count());
+
+        int pos = index.next(0);
+        while (pos < source.length()) {
+            int following = index.next(pos + 1);
+            for (int i = pos + 1; i < following; i++) {
+                assertFalse(set.contains(source.charAt(i)));
+            }
+            pos = following;
+        }
+        assertEquals(source.length(), index.next(source.length()));
+    }
+
+    @Test
+    public void testOutlineSkipsMethodBodies() {
+        String code = "public class Service {\n" +
+                      "    public void run(int n) {\n" +
+                      "        String s = \"}\"; char c = '{';\n" +
+                      "        // closing } in a comment\n" +
+                      "        for (int i = 0; i < n; i++) { if (i > 1) { s += i; } }\n" +
+                      "        /* { */\n" +
+                      "    }\n" +
+                      "    public int size() { return 0; }\n" +
+                      "}";
+        ExtractionEngine engine = new ExtractionEngine();
+        CodeNode full = engine.extract("Service.java", code);
+        CodeNode outline = engine.extract("Service.java", code, ExtractionOptions.OUTLINE);
+
+        assertFalse(full.findByType(NodeType.BLOCK).isEmpty());
+        assertTrue(outline.findByType(NodeType.BLOCK).isEmpty());
+        assertTrue(outline.getComments().isEmpty());
+
+        List<CodeNode> fullMethods = full.getMethods();
+        List<CodeNode> outlineMethods = outline.getMethods();
+        assertEquals(2, outlineMethods.size());
+        for (int i = 0; i < outlineMethods.size(); i++) {
+            assertEquals(fullMethods.get(i).getName(), outlineMethods.get(i).getName());
+            assertEquals(fullMethods.get(i).getEndOffset(), outlineMethods.get(i).getEndOffset());
+            assertEquals(fullMethods.get(i).getContent(), outlineMethods.get(i).getContent());
+        }
+        assertEquals(code.length(), outline.getClasses().get(0).getEndOffset());
+    }
+
+    @Test
+    public void testExtractionOptionsApplyWhileParsing() {
+        String code = "package com.demo;\n" +
+                      "import java.util.List;\n" +
+                      "/** Service docs */\n" +
+                      "public class Service {\n" +
+                      "    // field comment\n" +
+                      "    public void run() { if (true) { go(); } }\n" +
+                      "    class Inner { void help() { } }\n" +
+                      "}";
+        ExtractionEngine engine = new ExtractionEngine();
+
+        CodeNode typed = engine.extract("Service.java", code,
+                ExtractionOptions.builder().types(NodeType.CLASS, NodeType.METHOD).build());
+        assertEquals(2, typed.findByType(NodeType.CLASS).size());
+        assertEquals(2, typed.getMethods().size());
+        assertTrue(typed.findByType(NodeType.IMPORT).isEmpty());
+        assertTrue(typed.findByType(NodeType.BLOCK).isEmpty());
+        assertTrue(typed.getComments().isEmpty());
+
+        // With classes dropped, methods move up to the nearest kept ancestor.
+        CodeNode methodsOnly = engine.extract("Service.java", code,
+                ExtractionOptions.builder().types(NodeType.METHOD).build());
+        assertEquals(2, methodsOnly.getChildren().size());
+        assertEquals("help", methodsOnly.getChildren().get(1).getName());
+
+        CodeNode shallow = engine.extract("Service.java", code, ExtractionOptions.builder().maxDepth(1).build());
+        CodeNode service = shallow.getClasses().get(0);
+        assertTrue(service.getChildren().isEmpty());
+        assertEquals(code.length(), service.getEndOffset());
+
+        CodeNode bare = engine.extract("Service.java", code,
+                ExtractionOptions.builder().content(false).comments(false).build());
+        CodeNode full = engine.extract("Service.java", code);
+        assertEquals(full.getMethods().size(), bare.getMethods().size());
+        assertTrue(bare.findByType(NodeType.COMMENT).isEmpty());
+        assertFalse(bare.hasContent());
+        assertFalse(bare.getMethods().get(0).hasContent());
+        assertEquals(full.getMethods().get(0).getEndOffset(), bare.getMethods().get(0).getEndOffset());
+
+        CodeNode python = engine.extract("app.py", "# note\nclass A:\n    def f(self):\n        pass\n",
+                ExtractionOptions.builder().maxDepth(1).comments(false).build());
+        assertEquals(1, python.getChildren().size());
+        assertTrue(python.getChildren().get(0).getChildren().isEmpty());
+    }
+
+    @Test
+    public void testParseListenerReportsStructure() {
+        String code = "// header\n" +
+                      "public class Service {\n" +
+                      "    public void run() { /* body */ }\n" +
+                      "    public void stop() { }\n" +
+                      "}";
+        ExtractionEngine engine = new ExtractionEngine();
+        StringBuilder events = new StringBuilder();
+        int[] depth = new int[1];
+        engine.extract("Service.java", code, ExtractionOptions.builder().types(NodeType.CLASS, NodeType.METHOD, NodeType.COMMENT).build(),
+                new ParseListener() {
+                    @Override
+                    public void onEnter(NodeType type, String name, int start) {
+                        events.append('(').append(name);
+                        depth[0]++;
+                    }
+
+                    @Override
+                    public void onExit(int end) {
+                        events.append(')');
+                        depth[0]--;
+                    }
+
+                    @Override
+                    public void onComment(int start, int end) {
+                        events.append('#');
+                    }
+                });
+        assertEquals("(root#(Service(run#)(stop)))", events.toString());
+        assertEquals(0, depth[0]);
+
+        // Replaying a parsed tree into a TreeBuilder gives back the same shape.
+        CodeNode full = engine.extract("Service.java", code);
+        TreeBuilder builder = new TreeBuilder();
+        ParseListener.replay(full, builder);
+        CodeNode rebuilt = builder.getRoot();
+        assertEquals(full.getMethods().size(), rebuilt.getMethods().size());
+        assertEquals(full.getComments().size(), rebuilt.getComments().size());
+        assertEquals(full.getClasses().get(0).getEndOffset(), rebuilt.getClasses().get(0).getEndOffset());
+    }
 }
@@ -1,6 +1,13 @@
 package com.extractor;
 
+import com.extractor.core.ChangeSet;
 import com.extractor.core.CodeExtractor;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.IncrementalExtractor;
+import com.extractor.core.IndexListener;
+import com.extractor.core.LiveIndex;
+import com.extractor.core.SourceReader;
+import com.extractor.languages.JavaParser;
 import com.extractor.model.CodeNode;
 import com.extractor.model.NodeType;
 import com.extractor.query.CodeQuery;
@@ -8,10 +15,22 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -76,4 +95,292 @@ public class ProductionTest {
         
         System.out.println("Production Test Passed Successfully!");
     }
+
+    @Test
+    public void testParallelExtractionMatchesSequential() throws IOException {
+        for (int i = 0; i < 40; i++) {
+            Path dir = Files.createDirectories(tempDir.resolve("pkg" + (i % 5)));
+            Files.writeString(dir.resolve("Service" + i + ".java"),
+                    "public class Service" + i + " { public void run" + i + "() { } }");
+            Files.writeString(dir.resolve("module" + i + ".py"), "def handler_" + i + "():\n    pass");
+        }
+
+        CodeExtractor extractor = new CodeExtractor();
+        Map<String, CodeNode> sequential = extractor.extractFromDirectory(tempDir.toString());
+        Map<String, CodeNode> parallel = extractor.extractFromDirectory(tempDir.toString(), 4);
+
+        assertEquals(80, parallel.size());
+        assertEquals(sequential.keySet(), parallel.keySet());
+        for (Map.Entry<String, CodeNode> entry : sequential.entrySet()) {
+            assertEquals(entry.getValue().toMcpContext(), parallel.get(entry.getKey()).toMcpContext());
+        }
+    }
+
+    @Test
+    public void testParallelExtractionMissingDirectory() {
+        CodeExtractor extractor = new CodeExtractor();
+        assertThrows(IOException.class,
+                () -> extractor.extractFromDirectory(tempDir.resolve("missing").toString(), 2));
+    }
+
+    @Test
+    public void testStreamingExtraction() throws IOException {
+        Files.writeString(tempDir.resolve("A.java"), "public class A { void a() { } }");
+        Files.writeString(tempDir.resolve("b.py"), "def b():\n    pass");
+        Files.writeString(tempDir.resolve("c.sql"), "CREATE TABLE c (id INT);");
+
+        CodeExtractor extractor = new CodeExtractor();
+        List<String> sequential = new ArrayList<>();
+        extractor.extractFromDirectory(tempDir.toString(), (path, root) -> {
+            assertEquals(NodeType.ROOT, root.getType());
+            sequential.add(path);
+        });
+        assertEquals(3, sequential.size());
+
+        List<String> parallel = Collections.synchronizedList(new ArrayList<>());
+        extractor.extractFromDirectory(tempDir.toString(), 2, (path, root) -> parallel.add(path));
+        assertEquals(new HashSet<>(sequential), new HashSet<>(parallel));
+
+        IOException failure = assertThrows(IOException.class,
+                () -> extractor.extractFromDirectory(tempDir.toString(), 2, (path, root) -> {
+                    throw new IOException("sink full");
+                }));
+        assertEquals("sink full", failure.getMessage());
+    }
+
+    @Test
+    public void testIncrementalExtraction() throws IOException {
+        Path src = Files.createDirectories(tempDir.resolve("src"));
+        Path a = Files.writeString(src.resolve("A.java"), "public class A { void a() { } }");
+        Path b = Files.writeString(src.resolve("B.java"), "public class B { }");
+        Path c = Files.writeString(src.resolve("c.py"), "def c():\n    pass");
+        FileTime old = FileTime.fromMillis(System.currentTimeMillis() - 60_000);
+        for (Path p : List.of(a, b, c)) Files.setLastModifiedTime(p, old);
+
+        IncrementalExtractor incremental = new CodeExtractor().incremental(tempDir.resolve("manifest.bin"));
+        Map<String, CodeNode> results = new HashMap<>();
+        ChangeSet first = incremental.update(src.toString(), results);
+        assertEquals(3, first.getAdded().size());
+        assertEquals(3, results.size());
+
+        ChangeSet unchanged = incremental.update(src.toString(), results);
+        assertTrue(unchanged.isEmpty());
+        assertEquals(3, unchanged.getUnchangedCount());
+
+        // Touched but identical, edited, deleted and new files.
+        Files.setLastModifiedTime(a, FileTime.fromMillis(old.toMillis() + 1000));
+        Files.writeString(b, "public class B { void renamed() { } }");
+        Files.delete(c);
+        Path d = Files.writeString(src.resolve("D.java"), "public class D { }");
+
+        List<String> parsed = new ArrayList<>();
+        ChangeSet changes = incremental.update(src.toString(), (path, root) -> {
+            parsed.add(path);
+            results.put(path, root);
+        });
+        assertEquals(List.of(d.toAbsolutePath().toString()), changes.getAdded());
+        assertEquals(List.of(b.toAbsolutePath().toString()), changes.getModified());
+        assertEquals(List.of(c.toAbsolutePath().toString()), changes.getDeleted());
+        assertEquals(1, changes.getUnchangedCount());
+        assertEquals(2, parsed.size());
+
+        CodeNode updated = results.get(b.toAbsolutePath().toString());
+        assertEquals(1, updated.findByType(NodeType.METHOD).size());
+
+        // A fresh extractor picks up where the manifest left off.
+        ChangeSet restarted = new CodeExtractor().incremental(tempDir.resolve("manifest.bin"))
+                .update(src.toString(), new HashMap<>());
+        assertTrue(restarted.getAdded().isEmpty());
+        assertTrue(restarted.getDeleted().isEmpty());
+
+        // A file that cannot be read is reported as failed, not deleted, and its result stays.
+        CodeNode before = results.get(a.toAbsolutePath().toString());
+        Files.write(a, new byte[] {'c', 'l', 'a', 's', 's', 0, ' ', 'A'});
+        ChangeSet failed = incremental.update(src.toString(), results);
+        assertEquals(List.of(a.toAbsolutePath().toString()), failed.getFailed());
+        assertTrue(failed.getDeleted().isEmpty());
+        assertSame(before, results.get(a.toAbsolutePath().toString()));
+        assertTrue(failed.toString().endsWith(", 1 failed"), failed.toString());
+
+        Files.writeString(a, "public class A { void a() { } void b() { } }");
+        ChangeSet recovered = incremental.update(src.toString(), results);
+        assertEquals(List.of(a.toAbsolutePath().toString()), recovered.getModified());
+        assertTrue(recovered.getFailed().isEmpty());
+        assertEquals(2, results.get(a.toAbsolutePath().toString()).getMethods().size());
+    }
+
+    @Test
+    public void testLiveIndex() throws Exception {
+        Path a = Files.writeString(tempDir.resolve("A.java"), "public class A { }");
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        IndexListener listener = new IndexListener() {
+            @Override
+            public void updated(String path, CodeNode root) {
+                events.add("updated " + Path.of(path).getFileName());
+            }
+
+            @Override
+            public void removed(String path) {
+                events.add("removed " + Path.of(path).getFileName());
+            }
+        };
+
+        try (LiveIndex index = new LiveIndex(new ExtractionEngine(), tempDir, 20)) {
+            index.addListener(listener);
+            index.start();
+            assertEquals("updated A.java", events.poll());
+            Map<String, CodeNode> before = index.snapshot();
+            assertEquals(1, before.size());
+
+            Path sub = Files.createDirectories(tempDir.resolve("pkg"));
+            Files.writeString(sub.resolve("B.java"), "public class B { void b() { } }");
+            assertEquals("updated B.java", events.poll(10, TimeUnit.SECONDS));
+            assertEquals(2, index.snapshot().size());
+            assertEquals(1, before.size(), "snapshots are immutable");
+
+            Files.writeString(a, "public class A { void a() { } }");
+            assertEquals("updated A.java", events.poll(10, TimeUnit.SECONDS));
+            assertEquals(1, index.get(a.toString()).findByType(NodeType.METHOD).size());
+
+            Files.delete(sub.resolve("B.java"));
+            assertEquals("removed B.java", events.poll(10, TimeUnit.SECONDS));
+            assertEquals(1, index.snapshot().size());
+            assertSame(index.snapshot(), index.snapshot());
+
+            // Removing a directory leaves a sibling whose name it prefixes alone.
+            Files.writeString(sub.resolve("D.java"), "class D { }");
+            Path sibling = Files.createDirectories(tempDir.resolve("pkgx"));
+            Files.writeString(sibling.resolve("E.java"), "class E { }");
+            Set<String> added = new HashSet<>();
+            added.add(events.poll(10, TimeUnit.SECONDS));
+            added.add(events.poll(10, TimeUnit.SECONDS));
+            assertEquals(Set.of("updated D.java", "updated E.java"), added);
+            Files.delete(sub.resolve("D.java"));
+            Files.delete(sub);
+            assertEquals("removed D.java", events.poll(10, TimeUnit.SECONDS));
+            assertNull(events.poll(200, TimeUnit.MILLISECONDS));
+            assertEquals(Set.of(a.toString(), sibling.resolve("E.java").toString()), index.snapshot().keySet());
+        }
+    }
+
+    @Test
+    public void testLiveIndexSurvivesParserFailuresAndStopsOnClose() throws Exception {
+        ExtractionEngine engine = new ExtractionEngine(ExtractionEngine.defaultRegistry()
+                .register("java", () -> new JavaParser() {
+                    @Override
+                    public CodeNode parse(String source, ExtractionOptions options) {
+                        if (source.contains("boom")) throw new IllegalStateException("boom");
+                        return super.parse(source, options);
+                    }
+                }));
+        Files.writeString(tempDir.resolve("Bad.java"), "class Bad { boom }");
+        Files.writeString(tempDir.resolve("Good.java"), "class Good { }");
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        CountDownLatch inCallback = new CountDownLatch(1);
+        AtomicBoolean closeReturned = new AtomicBoolean();
+        IndexListener listener = new IndexListener() {
+            @Override
+            public void updated(String path, CodeNode root) {
+                String name = Path.of(path).getFileName().toString();
+                events.add(closeReturned.get() ? name + " after close" : name);
+                if (name.startsWith("Slow")) {
+                    inCallback.countDown();
+                    try {
+                        Thread.sleep(300);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+
+            @Override
+            public void removed(String path) {
+            }
+        };
+
+        LiveIndex index = new LiveIndex(engine, tempDir, 20);
+        index.addListener(listener);
+        index.start();
+        // The failing file is skipped; the rest of the scan still goes through.
+        assertEquals("Good.java", events.poll());
+        assertNull(events.poll());
+        assertNull(index.get(tempDir.resolve("Bad.java").toString()));
+
+        // Moved in as one directory, so both files arrive in one batch.
+        Path staged = Files.createDirectories(tempDir.resolveSibling(tempDir.getFileName() + "-staged"));
+        Files.writeString(staged.resolve("Slow1.java"), "class Slow1 { }");
+        Files.writeString(staged.resolve("Slow2.java"), "class Slow2 { }");
+        Files.move(staged, tempDir.resolve("pkg"));
+        assertTrue(inCallback.await(10, TimeUnit.SECONDS));
+        index.close();
+        closeReturned.set(true);
+
+        Files.writeString(tempDir.resolve("Late.java"), "class Late { }");
+        Thread.sleep(300);
+        for (String event : events) {
+            assertFalse(event.endsWith("after close"), event);
+        }
+    }
+
+    @Test
+    public void testSourceReaderEncodings() throws IOException {
+        SourceReader reader = new SourceReader(64);
+
+        Path ascii = Files.writeString(tempDir.resolve("Ascii.java"), "public class Ascii { }");
+        assertEquals("public class Ascii { }", reader.read(ascii));
+        assertEquals(StandardCharsets.US_ASCII, reader.getLastCharset());
+
+        String text = "public class Caf\u00e9 { String s = \"\u00fcber \u20ac\"; }";
+        Path utf8 = Files.writeString(tempDir.resolve("Utf8.java"), text);
+        assertEquals(text, reader.read(utf8));
+        assertEquals(StandardCharsets.UTF_8, reader.getLastCharset());
+
+        // Not valid UTF-8: decoded as Latin-1 instead of being skipped.
+        Path latin1 = Files.write(tempDir.resolve("Latin1.java"),
+                "public class Caf\u00e9 { }".getBytes(StandardCharsets.ISO_8859_1));
+        assertEquals("public class Caf\u00e9 { }", reader.read(latin1));
+        assertEquals(StandardCharsets.ISO_8859_1, reader.getLastCharset());
+        CodeNode root = new CodeExtractor().extractFromFile(latin1.toString());
+        assertEquals(1, root.getClasses().size());
+        assertTrue(root.getClasses().get(0).getContent().contains("Caf\u00e9"));
+
+        byte[] body = "class Bom { }".getBytes(StandardCharsets.UTF_16LE);
+        byte[] withBom = new byte[body.length + 2];
+        withBom[0] = (byte) 0xFF;
+        withBom[1] = (byte) 0xFE;
+        System.arraycopy(body, 0, withBom, 2, body.length);
+        assertEquals("class Bom { }", reader.read(Files.write(tempDir.resolve("Bom.java"), withBom)));
+
+        // Larger than the threshold, so memory-mapped.
+        String large = text.repeat(100);
+        assertEquals(large, reader.read(Files.writeString(tempDir.resolve("Large.java"), large)));
+        String largeAscii = "class A { }\n".repeat(100);
+        assertEquals(largeAscii, reader.read(Files.writeString(tempDir.resolve("LargeAscii.java"), largeAscii)));
+    }
+
+    @Test
+    public void testBinaryFilesAreSkipped() throws IOException {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n', 0, 0, 0, 13, 'I', 'H', 'D', 'R'};
+        Path logo = Files.write(tempDir.resolve("logo.png"), png);
+        Files.writeString(tempDir.resolve("App.java"), "class App { }");
+
+        SourceReader reader = new SourceReader();
+        IOException e = assertThrows(IOException.class, () -> reader.read(logo));
+        assertTrue(e.getMessage().startsWith("Binary file"), e.getMessage());
+        assertThrows(IOException.class, () -> reader.readUtf8(logo));
+        // A NUL in UTF-16 text is not taken as binary.
+        byte[] body = "class Wide { }".getBytes(StandardCharsets.UTF_16BE);
+        byte[] withBom = new byte[body.length + 2];
+        withBom[0] = (byte) 0xFE;
+        withBom[1] = (byte) 0xFF;
+        System.arraycopy(body, 0, withBom, 2, body.length);
+        assertEquals("class Wide { }", reader.read(Files.write(tempDir.resolve("Wide.java"), withBom)));
+
+        CodeExtractor extractor = new CodeExtractor();
+        for (Map<String, CodeNode> results : List.of(extractor.extractFromDirectory(tempDir.toString()),
+                extractor.extractFromDirectory(tempDir.toString(), 2))) {
+            assertEquals(2, results.size(), results.keySet().toString());
+            assertFalse(results.containsKey(logo.toString()));
+        }
+    }
 }
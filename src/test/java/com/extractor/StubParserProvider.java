@@ -0,0 +1,32 @@
+package com.extractor;
+
+import com.extractor.core.CodeParser;
+import com.extractor.core.ParserProvider;
+import com.extractor.model.CodeNode;
+import com.extractor.model.NodeType;
+
+/**
+ * Registered in test resources to exercise {@link ParserProvider} discovery.
+ */
+public class StubParserProvider implements ParserProvider {
+
+    @Override
+    public String language() {
+        return "stub";
+    }
+
+    @Override
+    public CodeParser create() {
+        return new CodeParser() {
+            @Override
+            public CodeNode parse(String source) {
+                return new CodeNode(NodeType.ROOT, "stub", 0);
+            }
+
+            @Override
+            public boolean supports(String language) {
+                return "stub".equalsIgnoreCase(language);
+            }
+        };
+    }
+}
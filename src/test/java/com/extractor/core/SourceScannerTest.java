@@ -0,0 +1,95 @@
+package com.extractor.core;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SourceScannerTest {
+
+    @Test
+    public void testLookahead() {
+        SourceScanner scanner = new SourceScanner("ab");
+        assertEquals('a', scanner.peekAt(0));
+        assertEquals('b', scanner.peekAt(1));
+        assertEquals('\0', scanner.peekAt(2));
+        assertEquals('\0', scanner.peekAt(-1));
+        scanner.advance();
+        assertEquals('a', scanner.peekAt(-1));
+        assertEquals('\0', scanner.peekAt(1));
+
+        assertTrue(scanner.lookingAt("b"));
+        assertTrue(scanner.lookingAt(""));
+        assertFalse(scanner.lookingAt("bc"));
+        assertEquals(1, scanner.getPos());
+        scanner.advance();
+        assertTrue(scanner.isAtEnd());
+        assertFalse(scanner.lookingAt("b"));
+        assertTrue(scanner.lookingAt(""));
+    }
+
+    @Test
+    public void testDelimiterSearch() {
+        SourceScanner scanner = new SourceScanner("a */ b */ c");
+        assertEquals(2, scanner.findDelimiter("*/"));
+        assertEquals(-1, scanner.findDelimiter("-->"));
+        assertEquals(0, scanner.getPos());
+
+        assertTrue(scanner.skipPast("*/"));
+        assertEquals(4, scanner.getPos());
+        assertEquals(7, scanner.findDelimiter("*/"));
+        scanner.skipTo('c');
+        assertEquals(10, scanner.getPos());
+        assertEquals(10, scanner.findDelimiter("c"));
+
+        scanner.skipTo('z');
+        assertTrue(scanner.isAtEnd());
+        scanner.setPos(5);
+        assertFalse(scanner.skipPast("-->"));
+        assertEquals(11, scanner.getPos());
+        assertFalse(scanner.skipPast("c"));
+    }
+
+    @Test
+    public void testSkipToAny() {
+        SourceScanner.CharSet braces = SourceScanner.CharSet.of("{}");
+        SourceScanner scanner = new SourceScanner("x { y } z");
+        scanner.indexStructural(braces);
+        assertEquals('{', scanner.skipToAny(braces));
+        assertEquals(2, scanner.getPos());
+        assertEquals('{', scanner.skipToAny(braces));
+        scanner.advance();
+        assertEquals('}', scanner.skipToAny(braces));
+        assertEquals(6, scanner.getPos());
+        scanner.advance();
+        assertEquals('\0', scanner.skipToAny(braces));
+        assertTrue(scanner.isAtEnd());
+        assertEquals('\0', scanner.skipToAny(braces));
+
+        SourceScanner.CharSet marks = SourceScanner.CharSet.of("«»;");
+        assertTrue(marks.contains('»'));
+        assertFalse(marks.contains('¬'));
+        assertFalse(marks.contains('a'));
+        SourceScanner quoted = new SourceScanner("café «x»;");
+        assertEquals('«', quoted.skipToAny(marks));
+        assertEquals(5, quoted.getPos());
+        quoted.advance();
+        assertEquals('»', quoted.skipToAny(marks));
+        quoted.advance();
+        assertEquals(';', quoted.skipToAny(marks));
+
+        assertEquals('\0', new SourceScanner("").skipToAny(braces));
+    }
+
+    @Test
+    public void testView() {
+        SourceScanner scanner = new SourceScanner("class A { }");
+        CharSequence view = scanner.view(6, 7);
+        assertEquals("A", view.toString());
+        assertEquals(1, view.length());
+        assertEquals('A', view.charAt(0));
+        assertEquals("", scanner.view(11, 11).toString());
+        assertEquals(scanner.substring(0, 5), scanner.view(0, 5).toString());
+        // Like substring, an end past the source is clamped.
+        assertEquals(" A { }", scanner.view(5, 12).toString());
+    }
+}
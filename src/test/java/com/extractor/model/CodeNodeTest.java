@@ -0,0 +1,145 @@
+package com.extractor.model;
+
+import com.extractor.ExtractionEngine;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodeNodeTest {
+
+    @Test
+    public void testTypeQueriesMatchTreeWalk() {
+        String code = "public class Outer {\n" +
+                      "    void a() { }\n" +
+                      "    class Inner { void b() { } void c() { } }\n" +
+                      "    void d() { { } }\n" +
+                      "}\n" +
+                      "class Second { void e() { } }";
+        CodeNode root = new ExtractionEngine().extract("Outer.java", code);
+
+        for (NodeType type : NodeType.values()) {
+            assertEquals(walk(root, type, new ArrayList<>()), root.findByType(type), type.name());
+        }
+        CodeNode inner = root.getClasses().get(1);
+        assertEquals("Inner", inner.getName());
+        assertEquals(List.of("b", "c"), names(inner.getMethods()));
+        assertEquals(List.of(inner), inner.getClasses());
+        assertEquals(walkAll(root, new ArrayList<>()), root.descendants());
+
+        List<CodeNode> methods = root.getMethods();
+        methods.removeIf(m -> m.getName().equals("a"));
+        methods.sort((x, y) -> y.getName().compareTo(x.getName()));
+        assertEquals(List.of("e", "d", "c", "b"), names(methods));
+        assertEquals(List.of("a", "b", "c", "d", "e"), names(root.getMethods()));
+    }
+
+    @Test
+    public void testTypeIndexFollowsChanges() {
+        CodeNode root = new CodeNode(NodeType.ROOT, "root", 0);
+        CodeNode clazz = new CodeNode(NodeType.CLASS, "A", 0);
+        root.addChild(clazz);
+        clazz.addChild(new CodeNode(NodeType.METHOD, "m1", 1));
+        assertEquals(List.of("m1"), names(root.getMethods()));
+
+        clazz.addChild(new CodeNode(NodeType.METHOD, "m2", 2));
+        assertEquals(List.of("m1", "m2"), names(root.getMethods()));
+        assertEquals(List.of("m1", "m2"), names(clazz.getMethods()));
+
+        clazz.getChildren().get(0).setType(NodeType.FUNCTION);
+        assertEquals(List.of("m2"), names(root.getMethods()));
+        assertEquals(List.of("m1"), names(root.getFunctions()));
+
+        clazz.getChildren().remove(1);
+        assertTrue(root.getMethods().isEmpty());
+
+        CodeNode detached = clazz.getChildren().remove(0);
+        assertNull(detached.getParent());
+        assertEquals(List.of(detached), detached.getFunctions());
+        assertEquals(1, root.descendants().size());
+    }
+
+    @Test
+    public void testSubtreeSharedByTwoTreesStaysCurrentInBoth() throws IOException {
+        CodeNode r1 = new CodeNode(NodeType.ROOT, "r1", 0);
+        CodeNode r2 = new CodeNode(NodeType.ROOT, "r2", 0);
+        CodeNode clazz = new CodeNode(NodeType.CLASS, "A", 0);
+        r1.addChild(clazz);
+        assertTrue(r1.getMethods().isEmpty());
+        r2.addChild(clazz);
+        assertTrue(r2.getMethods().isEmpty());
+
+        clazz.addChild(new CodeNode(NodeType.METHOD, "m", 1));
+        assertEquals(List.of("m"), names(r1.getMethods()));
+        assertEquals(List.of("m"), names(r2.getMethods()));
+        assertEquals(List.of("m"), names(clazz.getMethods()));
+
+        clazz.getChildren().get(0).addChild(new CodeNode(NodeType.COMMENT, "c", 2));
+        assertEquals(List.of("c"), names(r1.getComments()));
+        assertEquals(List.of("A", "m", "c"), names(r2.descendants()));
+
+        StringWriter out = new StringWriter();
+        try (McpJsonWriter writer = new McpJsonWriter(out)) {
+            writer.write(r1, McpBudget.builder().build());
+        }
+        assertTrue(out.toString().contains("\"name\":\"m\""), out.toString());
+    }
+
+    @Test
+    public void testConcurrentFirstQueries() throws Exception {
+        String code = "class A { void a() { } /* c */ class B { void b() { } } }\nclass C { void c() { } }";
+        ExtractionEngine engine = new ExtractionEngine();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            for (int round = 0; round < 300; round++) {
+                CodeNode root = engine.extract("A.java", code);
+                CodeNode child = root.getChildren().get(0);
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<String>> results = new ArrayList<>();
+                for (int t = 0; t < 8; t++) {
+                    boolean onChild = t % 2 == 0;
+                    results.add(pool.submit(() -> {
+                        start.await();
+                        return onChild ? names(child.findByType(NodeType.METHOD)).toString()
+                                : names(root.getMethods()).toString() + root.descendants().size();
+                    }));
+                }
+                start.countDown();
+                for (int t = 0; t < 8; t++) {
+                    assertEquals(t % 2 == 0 ? "[a, b]" : "[a, b, c]" + walkAll(root, new ArrayList<>()).size(),
+                            results.get(t).get());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static List<CodeNode> walk(CodeNode node, NodeType type, List<CodeNode> out) {
+        if (node.getType() == type) out.add(node);
+        for (CodeNode child : node.getChildren()) walk(child, type, out);
+        return out;
+    }
+
+    private static List<CodeNode> walkAll(CodeNode node, List<CodeNode> out) {
+        for (CodeNode child : node.getChildren()) {
+            out.add(child);
+            walkAll(child, out);
+        }
+        return out;
+    }
+
+    private static List<String> names(List<CodeNode> nodes) {
+        List<String> names = new ArrayList<>();
+        for (CodeNode node : nodes) names.add(node.getName());
+        return names;
+    }
+}
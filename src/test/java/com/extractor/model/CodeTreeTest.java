@@ -0,0 +1,294 @@
+package com.extractor.model;
+
+import com.extractor.ExtractionEngine;
+import com.extractor.core.ExtractionOptions;
+import com.extractor.core.Utf8Source;
+import com.extractor.languages.JavaParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CodeTreeTest {
+
+    private final ExtractionEngine engine = new ExtractionEngine();
+
+    @Test
+    public void testRoundTripPreservesMcpContext() {
+        String java = "package com.demo;\n" +
+                      "/** Service */\n" +
+                      "public class UserService {\n" +
+                      "    // lookup\n" +
+                      "    public User getUser(Long id) { return repo.find(id); }\n" +
+                      "}";
+        String html = "<html><style>.a { color: red; }</style><div>x</div></html>";
+        String python = "class App:\n    # run it\n    def run(self):\n        pass";
+
+        for (String[] file : new String[][] {{"UserService.java", java}, {"index.html", html}, {"app.py", python}}) {
+            CodeNode root = engine.extract(file[0], file[1]);
+            CodeTree tree = CodeTree.from(root);
+            assertEquals(root.toMcpContext(), tree.toCodeNode().toMcpContext(), file[0]);
+        }
+    }
+
+    @Test
+    public void testCursorAndVisitor() {
+        String code = "public class A { void one() { } void two() { } }";
+        CodeTree tree = engine.extractTree("A.java", code);
+
+        CodeTree.Cursor cursor = tree.cursor();
+        assertEquals(NodeType.ROOT, cursor.type());
+        assertTrue(cursor.gotoFirstChild());
+        assertEquals(NodeType.CLASS, cursor.type());
+        assertEquals("A", cursor.name());
+        assertTrue(cursor.gotoFirstChild());
+        assertEquals("one", cursor.name());
+        assertTrue(cursor.gotoNextSibling());
+        assertEquals("two", cursor.name());
+        assertEquals("void two() { }", cursor.content().trim());
+        assertFalse(cursor.gotoNextSibling());
+        assertTrue(cursor.gotoParent());
+        assertEquals("A", cursor.name());
+
+        List<String> methods = new ArrayList<>();
+        tree.accept((t, node) -> {
+            if (t.type(node) == NodeType.METHOD) methods.add(t.name(node));
+            return true;
+        });
+        assertEquals(List.of("one", "two"), methods);
+    }
+
+    @Test
+    public void testBuilderEmitsDirectly() {
+        String source = "class A { }";
+        CodeTree.Builder builder = CodeTree.builder(source);
+        builder.enter(NodeType.ROOT, "root", 0);
+        int cls = builder.enter(NodeType.CLASS, "A", 0);
+        builder.setContent(cls, 0, source.length());
+        builder.exit(source.length());
+        builder.exit(source.length());
+        CodeTree tree = builder.build();
+
+        assertEquals(2, tree.size());
+        assertEquals(cls, tree.firstChild(tree.root()));
+        assertEquals(source, tree.content(cls));
+        assertEquals("A", tree.toCodeNode().getClasses().get(0).getName());
+    }
+
+    @Test
+    public void testParseTreeMatchesConvertedParse() throws IOException {
+        String java = "/** Docs */\n" +
+                      "@Service\n" +
+                      "public class UserService {\n" +
+                      "    // lookup\n" +
+                      "    public User getUser(Long id) { return repo.find(id); }\n" +
+                      "}";
+        JavaParser parser = new JavaParser();
+        for (ExtractionOptions options : new ExtractionOptions[] {ExtractionOptions.DEFAULT,
+                ExtractionOptions.OUTLINE, ExtractionOptions.builder().content(false).build()}) {
+            CodeTree direct = parser.parseTree(java, options);
+            CodeTree converted = CodeTree.from(parser.parse(java, options), java);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ByteArrayOutputStream actual = new ByteArrayOutputStream();
+            converted.write(new DataOutputStream(expected));
+            direct.write(new DataOutputStream(actual));
+            assertArrayEquals(expected.toByteArray(), actual.toByteArray(), options.toString());
+        }
+
+        // Content stays a range over the source rather than a copy.
+        CodeTree tree = parser.parseTree(java);
+        int method = -1;
+        for (int i = 0; i < tree.size(); i++) {
+            if (tree.type(i) == NodeType.METHOD) method = i;
+        }
+        assertSame(java, tree.getSource());
+        assertTrue(tree.contentView(method) instanceof CharBuffer);
+        assertTrue(tree.content(method).endsWith("public User getUser(Long id) { return repo.find(id); }"));
+    }
+
+    @Test
+    public void testUtf8SourceMatchesDecodedParse() throws IOException {
+        String java = "// h\u00e9llo w\u00f6rld \ud83d\ude00\n" +
+                      "public class Greeter {\n" +
+                      "    String s = \"\u20acuro\";\n" +
+                      "    void greet() { }\n" +
+                      "}\n";
+        byte[] utf8 = java.getBytes(StandardCharsets.UTF_8);
+        CodeTree tree = engine.extractTree("Greeter.java", Utf8Source.of(utf8));
+        CodeNode expected = engine.extract("Greeter.java", java);
+
+        assertTrue(tree.isUtf8());
+        assertEquals(utf8.length, tree.getSource().length());
+        assertEquals(expected.toMcpContext(), tree.toCodeNode().toMcpContext());
+
+        int cls = -1;
+        int method = -1;
+        for (int i = 0; i < tree.size(); i++) {
+            if (tree.type(i) == NodeType.CLASS) cls = i;
+            if (tree.type(i) == NodeType.METHOD) method = i;
+        }
+        CodeNode expectedMethod = expected.getMethods().get(0);
+        assertEquals("greet", tree.name(method));
+        assertNotEquals(expectedMethod.getStartOffset(), tree.start(method));
+        assertEquals(expectedMethod.getStartOffset(), tree.charOffset(tree.start(method)));
+        assertEquals(java.length(), tree.charOffset(utf8.length));
+        assertTrue(tree.content(cls).contains("\u20acuro"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tree.write(new DataOutputStream(bytes));
+        CodeTree read = CodeTree.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), tree.getSource());
+        assertTrue(read.isUtf8());
+        assertEquals(expected.toMcpContext(), read.toCodeNode().toMcpContext());
+
+        // ASCII input needs no decoding and is parsed as-is.
+        assertFalse(engine.extractTree("A.java", Utf8Source.of("class A { }".getBytes(StandardCharsets.UTF_8))).isUtf8());
+    }
+
+    @Test
+    public void testUtf8SourceMatchesDecodedParseOfNonAsciiIdentifiers() {
+        Map<String, String> sources = new LinkedHashMap<>();
+        sources.put("Café.java", "public class Café { void méthod() { } }");
+        sources.put("Main.java", "class 中 { void €uro() { } void händle(int å) { if (å > 0) { } } }");
+        // U+0445 ends in the byte 0x85 and U+2028 is a line separator; neither may end a line.
+        sources.put("main.go", "package main\n\ntype ха struct {\n\tPort int\n}\n\n" +
+                               "func (s *ха) Stхrt\u2028() error {\n\treturn nil\n}\n");
+        sources.put("user.rb", "class Üser\n  def initiälize(näme)\n    @n = näme\n  end\nend\n");
+        for (Map.Entry<String, String> entry : sources.entrySet()) {
+            CodeTree tree = engine.extractTree(entry.getKey(), Utf8Source.of(entry.getValue().getBytes(StandardCharsets.UTF_8)));
+            assertEquals(engine.extract(entry.getKey(), entry.getValue()).toMcpContext(),
+                    tree.toCodeNode().toMcpContext(), entry.getKey());
+        }
+
+        // A source filling whole offset blocks ends exactly on a block boundary.
+        String aligned = "class Ä { }" + " ".repeat(52);
+        CodeTree tree = engine.extractTree("A.java", Utf8Source.of(aligned.getBytes(StandardCharsets.UTF_8)));
+        assertEquals(64, tree.getSource().length());
+        assertEquals(aligned.length(), tree.charOffset(tree.end(tree.root())));
+    }
+
+    @Test
+    public void testMappedReaderWalksWrittenTree() throws IOException {
+        String java = "/** Docs */\n" +
+                      "public class Greeter {\n" +
+                      "    String s = \"\u20acuro \ud83d\ude00\";\n" +
+                      "    void greet() { }\n" +
+                      "    class Inner { void a() { } }\n" +
+                      "    void last() { }\n" +
+                      "}\n";
+        for (String code : new String[] {java, "class A { void one() { } }"}) {
+            CodeTree tree = engine.extractTree("Greeter.java", code);
+            Path file = Files.createTempFile("tree", ".cxt");
+            try {
+                try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+                    tree.write(out, true);
+                }
+                MappedCodeTree mapped = MappedCodeTree.open(file);
+                assertEquals(tree.size(), mapped.size());
+                assertEquals(walk(tree.cursor()), walk(mapped.cursor()));
+
+                // Skipping from the first child of the class steps over Inner's subtree.
+                MappedCodeTree.Cursor cursor = mapped.cursor();
+                assertTrue(cursor.gotoFirstChild());
+                while (cursor.type() != NodeType.CLASS) assertTrue(cursor.gotoNextSibling());
+                assertTrue(cursor.gotoFirstChild());
+                while (cursor.gotoNextSibling()) { }
+                assertEquals(code.equals(java) ? "last" : "one", cursor.name());
+                assertTrue(cursor.gotoParent());
+                assertTrue(cursor.content().endsWith("}"));
+
+                CodeTree read = CodeTree.read(new DataInputStream(Files.newInputStream(file)), null);
+                assertEquals(tree.toCodeNode().toMcpContext(), read.toCodeNode().toMcpContext());
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        // Written without its source, the tree reads content from the one supplied.
+        CodeTree tree = engine.extractTree("Greeter.java", java);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        tree.write(new DataOutputStream(bytes));
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        assertEquals(walk(tree.cursor()), walk(MappedCodeTree.wrap(buffer, java).cursor()));
+        assertThrows(IOException.class, () -> MappedCodeTree.wrap(buffer, "other"));
+    }
+
+    @Test
+    public void testReadsVersion1() throws IOException {
+        String source = "class A { }";
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0x43585431);
+        out.writeByte(1);
+        out.writeByte(1); // source supplied by the reader
+        out.writeByte(source.length());
+        out.writeByte(2);
+        out.writeByte(4);
+        out.writeBytes("root");
+        out.writeByte(1);
+        out.writeBytes("A");
+        out.writeByte(2);
+        // type, parent + 1, start, end, name id + 1, content start + 1 [, content end]
+        out.write(new byte[] {0, 0, 0, 11, 1, 0});
+        out.write(new byte[] {1, 1, 0, 11, 2, 1, 11});
+        out.writeByte(0);
+        out.writeByte(1);
+        out.write(new byte[] {1, 1});
+        out.writeByte(5);
+        out.writeBytes("lines");
+        out.writeByte(2);
+        out.writeInt(1);
+
+        CodeTree tree = CodeTree.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), source);
+        CodeNode root = tree.toCodeNode();
+        CodeNode cls = root.getClasses().get(0);
+        assertEquals("A", cls.getName());
+        assertEquals(source, cls.getContent());
+        assertEquals(1, cls.getMetadata().get("lines"));
+        assertThrows(IOException.class, () -> MappedCodeTree.wrap(ByteBuffer.wrap(bytes.toByteArray()), source));
+    }
+
+    // Pre-order list of every node's fields, as reached through a cursor.
+    private static List<String> walk(CodeTree.Cursor cursor) {
+        List<String> out = new ArrayList<>();
+        int depth = 0;
+        do {
+            out.add(depth + " " + cursor.type() + " " + cursor.name() + " " + cursor.start() + "-" + cursor.end()
+                    + " " + cursor.content());
+            if (cursor.gotoFirstChild()) {
+                depth++;
+                continue;
+            }
+            while (!cursor.gotoNextSibling() && cursor.gotoParent()) depth--;
+        } while (depth > 0);
+        return out;
+    }
+
+    private static List<String> walk(MappedCodeTree.Cursor cursor) {
+        List<String> out = new ArrayList<>();
+        int depth = 0;
+        do {
+            out.add(depth + " " + cursor.type() + " " + cursor.name() + " " + cursor.start() + "-" + cursor.end()
+                    + " " + cursor.content());
+            if (cursor.gotoFirstChild()) {
+                depth++;
+                continue;
+            }
+            while (!cursor.gotoNextSibling() && cursor.gotoParent()) depth--;
+        } while (depth > 0);
+        return out;
+    }
+}
@@ -0,0 +1,100 @@
+package com.extractor.model;
+
+import com.extractor.ExtractionEngine;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class McpJsonWriterTest {
+
+    @Test
+    public void testWritesMcpStructure() throws IOException {
+        CodeNode root = new CodeNode(NodeType.ROOT, "root", 0, 30);
+        CodeNode clazz = new CodeNode(NodeType.CLASS, "A", 0, 30);
+        clazz.setContent("class A { \"q\" \\ \n\t\u0001 }");
+        clazz.addMetadata("lineStart", 1);
+        root.addChild(clazz);
+        clazz.addChild(new CodeNode(NodeType.METHOD, "m", 10, 20));
+
+        StringWriter out = new StringWriter();
+        try (McpJsonWriter writer = new McpJsonWriter(out)) {
+            writer.write(root);
+        }
+        assertEquals("{\"type\":\"ROOT\",\"name\":\"root\",\"start\":0,\"end\":30,\"children\":["
+                + "{\"type\":\"CLASS\",\"name\":\"A\",\"start\":0,\"end\":30,"
+                + "\"content\":\"class A { \\\"q\\\" \\\\ \\n\\t\\u0001 }\","
+                + "\"metadata\":{\"lineStart\":1},\"children\":["
+                + "{\"type\":\"METHOD\",\"name\":\"m\",\"start\":10,\"end\":20}]}]}", out.toString());
+    }
+
+    @Test
+    public void testNdjsonOneFilePerLine() throws IOException {
+        ExtractionEngine engine = new ExtractionEngine();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (McpJsonWriter writer = new McpJsonWriter(bytes)) {
+            writer.writeLine("a/Main.java", engine.extract("Main.java", "class Main { void run() { } }"));
+            writer.writeLine("b/app.py", engine.extract("app.py", "def f():\n    return \"é\"\n"));
+        }
+        String[] lines = bytes.toString(StandardCharsets.UTF_8).split("\n", -1);
+        assertEquals(3, lines.length);
+        assertEquals("", lines[2]);
+        assertTrue(lines[0].startsWith("{\"path\":\"a/Main.java\",\"context\":{\"type\":\"ROOT\""));
+        assertTrue(lines[0].contains("\"name\":\"run\""));
+        assertTrue(lines[1].contains("\\\"é\\\""));
+        assertTrue(lines[1].endsWith("}}"));
+    }
+
+    @Test
+    public void testBudgetKeepsHighestPriorityParts() throws IOException {
+        StringBuilder code = new StringBuilder();
+        for (int c = 0; c < 20; c++) {
+            code.append("/** Docs for C").append(c).append(" */\n");
+            code.append("public class C").append(c).append(" {\n");
+            code.append("    public int value").append(c).append("(int x) {\n");
+            code.append("        return x * ").append(c).append(" + compute(x, \"long body text here\");\n");
+            code.append("    }\n}\n");
+        }
+        CodeNode root = new ExtractionEngine().extract("All.java", code.toString());
+
+        String full = write(root, null);
+        String unlimited = write(root, McpBudget.builder().build());
+        assertFalse(unlimited.contains("\"omitted\""));
+        assertTrue(unlimited.contains("\"signature\"") || unlimited.contains("\"content\""));
+
+        McpBudget budget = McpBudget.builder().maxChars(full.length() / 4).build();
+        String small = write(root, budget);
+        assertTrue(small.length() <= budget.getMaxChars(), small.length() + " > " + budget.getMaxChars());
+        assertTrue(small.contains("\"omitted\""));
+        // Every class signature fits before any comment or body is given room.
+        for (int c = 0; c < 20; c++) {
+            assertTrue(small.contains("\"signature\":\"public class C" + c + "\""), "C" + c);
+        }
+        assertFalse(small.contains("long body text here"));
+
+        String bodiesFirst = write(root, McpBudget.builder().maxChars(full.length() / 4)
+                .priority(McpBudget.Part.BODIES).build());
+        assertTrue(bodiesFirst.contains("long body text here"));
+        assertFalse(bodiesFirst.contains("\"signature\""));
+        assertFalse(bodiesFirst.contains("Docs for"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> McpBudget.builder().priority(McpBudget.Part.BODIES, McpBudget.Part.BODIES));
+    }
+
+    private static String write(CodeNode root, McpBudget budget) throws IOException {
+        StringWriter out = new StringWriter();
+        try (McpJsonWriter writer = new McpJsonWriter(out)) {
+            if (budget == null) {
+                writer.write(root);
+            } else {
+                writer.write(root, budget);
+            }
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package com.extractor.query;
+
+import com.extractor.ExtractionEngine;
+import com.extractor.model.CodeNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SelectorTest {
+
+    private final ExtractionEngine engine = new ExtractionEngine();
+
+    private final String code = "public class UserService {\n" +
+                                "    @Transactional\n" +
+                                "    void getUser() { }\n" +
+                                "    void saveUser() { }\n" +
+                                "    class Inner { void getInner() { } }\n" +
+                                "}\n" +
+                                "class UserRepo { void getAll() { } }\n" +
+                                "class Other { void getOther() { } }\n";
+
+    @Test
+    public void testCombinatorsAndAttributes() {
+        CodeNode root = engine.extract("UserService.java", code);
+
+        assertEquals(List.of("getUser", "getInner", "getAll"),
+                names(Selector.compile("class[name^=User] method[name~=get]").stream(root)));
+        assertEquals(List.of("getUser", "getAll"),
+                names(Selector.compile("class[name^=User] > method[name~=get]").stream(root)));
+        assertEquals(List.of("UserService", "UserRepo"),
+                names(Selector.compile("CLASS[name*='User']").stream(root)));
+        assertEquals(List.of("saveUser"), names(Selector.compile("method[name$=User]:not([name^=get])").stream(root)));
+        assertEquals(List.of("getOther"),
+                names(Selector.compile("class:not([name^=User]) > method[content*=\"getOther\"]").stream(root)));
+        assertEquals(List.of("Inner"), names(CodeQuery.select(root, "class class")));
+    }
+
+    @Test
+    public void testHasLimitAndManyTrees() {
+        CodeNode root = engine.extract("UserService.java", code);
+        assertEquals(List.of("root", "UserService"),
+                names(Selector.compile("*:has(annotation[name=Transactional])").stream(root)));
+        assertEquals(List.of("UserService"),
+                names(Selector.compile("class:has(annotation[name=Transactional])").stream(root)));
+        assertEquals(List.of("root", "UserService", "Inner"),
+                names(Selector.compile("*:has(method[name=getInner])").stream(root)));
+        assertEquals(List.of("Inner"), names(Selector.compile("class:has(> method[name=getInner])").stream(root)));
+
+        Selector methods = Selector.compile("method");
+        assertEquals(List.of("getUser", "saveUser"), names(methods.find(root, 2).stream()));
+        assertEquals("getUser", methods.first(root).get().getName());
+
+        CodeNode other = engine.extract("app.py", "def run():\n    pass\n");
+        assertEquals(5, Selector.compile("method").stream(List.of(root, other)).count());
+        assertEquals(1, Selector.compile("function[name=run]").stream(List.of(root, other)).count());
+        assertTrue(Selector.compile("class > method").matches(root.getMethods().get(0)));
+    }
+
+    @Test
+    public void testMalformedSelectorsAreRejected() {
+        for (String bad : new String[] {"", "klass", "class[", "class[name]", "class[size=1]", "class >",
+                                        "method:is(x)", "class:has(method", "class,method", "[name='x]"}) {
+            assertThrows(IllegalArgumentException.class, () -> Selector.compile(bad));
+        }
+        assertEquals("class > method", Selector.compile(" class > method ").toString());
+    }
+
+    private static List<String> names(Stream<CodeNode> nodes) {
+        List<String> out = new ArrayList<>();
+        nodes.forEach(node -> out.add(node.getName()));
+        return out;
+    }
+}
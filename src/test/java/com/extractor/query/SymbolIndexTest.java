@@ -0,0 +1,114 @@
+package com.extractor.query;
+
+import com.extractor.ExtractionEngine;
+import com.extractor.model.NodeType;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SymbolIndexTest {
+
+    private final ExtractionEngine engine = new ExtractionEngine();
+
+    @Test
+    public void testExactPrefixAndSubstringLookups() {
+        SymbolIndex index = new SymbolIndex();
+        index.accept("src/UserService.java", engine.extract("UserService.java",
+                "public class UserService {\n    User getUser(Long id) { return null; }\n    void saveUser() { }\n}"));
+        index.accept("src/UserRepo.java", engine.extract("UserRepo.java",
+                "class UserRepo {\n    User getUser(String name) { return null; }\n}"));
+        index.accept("app.py", engine.extract("app.py", "def get_user_name():\n    pass\n"));
+
+        List<SymbolIndex.Symbol> exact = index.exact("getUser");
+        assertEquals(List.of("src/UserRepo.java", "src/UserService.java"), paths(exact));
+        assertEquals(NodeType.METHOD, exact.get(0).getType());
+        assertTrue(exact.get(0).getStartOffset() < exact.get(0).getEndOffset());
+        assertTrue(index.exact("getuser").isEmpty());
+
+        assertEquals(List.of("UserRepo", "UserService"), names(index.prefix("User", 10)));
+        assertEquals(1, index.prefix("User", 1).size());
+        assertEquals(List.of("UserRepo", "UserService", "getUser", "getUser", "saveUser"),
+                names(index.contains("User", 10)));
+        assertEquals(List.of("get_user_name"), names(index.contains("user", 10)));
+        assertEquals(List.of("getUser", "getUser", "get_user_name"), names(index.contains("ge", 10)));
+        assertTrue(index.contains("Userx", 10).isEmpty());
+    }
+
+    @Test
+    public void testUpdatesReplaceSymbolsOfAFile() {
+        SymbolIndex index = new SymbolIndex();
+        index.updated("A.java", engine.extract("A.java", "class A { void oldName() { } void kept() { } }"));
+        index.updated("B.java", engine.extract("B.java", "class B { void kept() { } }"));
+        assertEquals(1, index.exact("oldName").size());
+
+        index.updated("A.java", engine.extract("A.java", "class A { void newName() { } void kept() { } }"));
+        assertTrue(index.exact("oldName").isEmpty());
+        assertTrue(index.contains("oldNa", 10).isEmpty());
+        assertEquals(1, index.contains("newNa", 10).size());
+        assertEquals(2, index.exact("kept").size());
+
+        index.removed("A.java");
+        assertEquals(1, index.fileCount());
+        assertEquals(List.of("B.java"), paths(index.exact("kept")));
+        assertTrue(index.prefix("new", 10).isEmpty());
+        assertEquals(List.of("B", "kept"), names(index.prefix("", 10)));
+        assertEquals(2, index.nameCount());
+    }
+
+    @Test
+    public void testPostingsStaySortedAcrossUpdates() {
+        SymbolIndex index = new SymbolIndex();
+        for (String name : new String[] {"C", "A", "B"}) {
+            index.accept(name + ".java", engine.extract(name + ".java",
+                    "class " + name + " { void run() { } class Inner { void run() { } } }"));
+        }
+        index.updated("B.java", engine.extract("B.java", "class B { void run() { } }"));
+
+        List<SymbolIndex.Symbol> runs = index.exact("run");
+        assertEquals(List.of("A.java", "A.java", "B.java", "C.java", "C.java"), paths(runs));
+        assertTrue(runs.get(0).getStartOffset() < runs.get(1).getStartOffset());
+        assertTrue(runs.get(3).getStartOffset() < runs.get(4).getStartOffset());
+        assertEquals(List.of("A.java", "A.java", "B.java"), paths(index.prefix("ru", 3)));
+    }
+
+    @Test
+    public void testReadersDuringUpdates() throws Exception {
+        SymbolIndex index = new SymbolIndex();
+        index.accept("Stable.java", engine.extract("Stable.java", "class Stable { void lookup() { } }"));
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 500; i++) {
+                index.accept("F" + (i % 20) + ".java", engine.extract("F.java",
+                        "class F" + i + " { void lookup" + (i % 3) + "() { } }"));
+            }
+        });
+        writer.start();
+        List<Throwable> failures = new ArrayList<>();
+        while (writer.isAlive()) {
+            try {
+                assertEquals(1, index.exact("lookup").size());
+                assertFalse(index.contains("ooku", 100).isEmpty());
+            } catch (Throwable t) {
+                failures.add(t);
+                break;
+            }
+        }
+        writer.join();
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(21, index.fileCount());
+    }
+
+    private static List<String> paths(List<SymbolIndex.Symbol> symbols) {
+        List<String> out = new ArrayList<>();
+        for (SymbolIndex.Symbol symbol : symbols) out.add(symbol.getPath());
+        return out;
+    }
+
+    private static List<String> names(List<SymbolIndex.Symbol> symbols) {
+        List<String> out = new ArrayList<>();
+        for (SymbolIndex.Symbol symbol : symbols) out.add(symbol.getName());
+        return out;
+    }
+}
@@ -0,0 +1,86 @@
+package com.extractor.core;
+
+import jdk.incubator.vector.ShortVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementation of {@link StructuralIndex.Indexer}. Chars are copied out of the
+ * source in fixed-size chunks, and each vector of 16 chars is compared against every member
+ * of the set. Only loaded reflectively by {@link StructuralIndex}, so the rest of the code
+ * runs without the incubator module.
+ * <p>
+ * The lane mask is turned into bits by blending per-lane weights and OR-reducing them,
+ * rather than with {@code VectorMask.toLong()}, which JDK 17 does not compile to a single
+ * instruction and which made the vector loop slower than the scalar one.
+ * <p>
+ * The loop is written for 256-bit vectors. On hardware whose preferred vectors are smaller,
+ * such as 128-bit ARM NEON, the Vector API would emulate them far more slowly than the
+ * scalar indexer runs, so the constructor refuses and {@link StructuralIndex} falls back.
+ */
+final class VectorStructuralIndexer implements StructuralIndex.Indexer {
+    private static final VectorSpecies<Short> SPECIES = ShortVector.SPECIES_256;
+    private static final int LANES = 16;
+    // A multiple of 64, so each group of four vectors fills exactly one bitmap word.
+    private static final int CHUNK = 4096;
+    private static final ShortVector LANE_BITS;
+
+    static {
+        short[] bits = new short[LANES];
+        for (int i = 0; i < LANES; i++) {
+            bits[i] = (short) (1 << i);
+        }
+        LANE_BITS = ShortVector.fromArray(SPECIES, bits, 0);
+    }
+
+    private final ThreadLocal<char[]> buffers = ThreadLocal.withInitial(() -> new char[CHUNK]);
+
+    VectorStructuralIndexer() {
+        if (ShortVector.SPECIES_PREFERRED.vectorBitSize() < SPECIES.vectorBitSize()) {
+            throw new UnsupportedOperationException("Preferred vector size is "
+                    + ShortVector.SPECIES_PREFERRED.vectorBitSize() + " bits");
+        }
+    }
+
+    @Override
+    public void index(String source, SourceScanner.CharSet set, long[] words) {
+        short[] members = set.asciiMembers();
+        if (members.length == 0) return;
+        ShortVector[] targets = new ShortVector[members.length];
+        for (int m = 0; m < members.length; m++) {
+            targets[m] = ShortVector.broadcast(SPECIES, members[m]);
+        }
+
+        char[] buffer = buffers.get();
+        int n = source.length();
+        for (int base = 0; base < n; base += CHUNK) {
+            int len = Math.min(CHUNK, n - base);
+            source.getChars(base, base + len, buffer, 0);
+
+            int i = 0;
+            for (; i + 64 <= len; i += 64) {
+                long word = 0;
+                for (int lane = 0; lane < 64; lane += LANES) {
+                    word |= matches(buffer, i + lane, targets) << lane;
+                }
+                words[(base + i) >>> 6] = word;
+            }
+            for (; i < len; i++) {
+                if (set.contains(buffer[i])) {
+                    int pos = base + i;
+                    words[pos >>> 6] |= 1L << (pos & 63);
+                }
+            }
+        }
+    }
+
+    private static long matches(char[] buffer, int offset, ShortVector[] targets) {
+        ShortVector chars = ShortVector.fromCharArray(SPECIES, buffer, offset);
+        VectorMask<Short> hits = chars.compare(VectorOperators.EQ, targets[0]);
+        for (int m = 1; m < targets.length; m++) {
+            hits = hits.or(chars.compare(VectorOperators.EQ, targets[m]));
+        }
+        return LANE_BITS.blend((short) 0, hits.not()).reduceLanes(VectorOperators.OR) & 0xFFFFL;
+    }
+}